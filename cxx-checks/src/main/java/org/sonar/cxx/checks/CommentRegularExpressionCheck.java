@@ -20,9 +20,13 @@
 package org.sonar.cxx.checks;
 
 import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import java.util.regex.Pattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.cxx.checks.utils.MultiPatternMatcher;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.annotations.RuleTemplate;
 import org.sonar.squidbridge.checks.AbstractCommentRegularExpressionCheck;
@@ -37,6 +41,7 @@ public class CommentRegularExpressionCheck extends AbstractCommentRegularExpress
 
   private static final String DEFAULT_REGULAR_EXPRESSION = "";
   private static final String DEFAULT_MESSAGE = "The regular expression matches this comment";
+  private static final int DEFAULT_MATCH_TIMEOUT = 10000;
 
   @RuleProperty(
     key = "regularExpression",
@@ -50,6 +55,15 @@ public class CommentRegularExpressionCheck extends AbstractCommentRegularExpress
     defaultValue = DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
 
+  @RuleProperty(
+    key = "matchTimeout",
+    description = "Time budget of the regular expression per file in milliseconds, 0 for none",
+    defaultValue = "" + DEFAULT_MATCH_TIMEOUT)
+  public int matchTimeout = DEFAULT_MATCH_TIMEOUT;
+
+  private MultiPatternMatcher matcher;
+  private int rule;
+
   @Override
   public String getRegularExpression() {
     return regularExpression;
@@ -60,4 +74,26 @@ public class CommentRegularExpressionCheck extends AbstractCommentRegularExpress
     return message;
   }
 
+  @Override
+  public void init() {
+    super.init();
+    String regEx = getRegularExpression();
+    if (!regEx.isEmpty()) {
+      // comments are evaluated for all comment rules at once
+      matcher = MultiPatternMatcher.shared(getContext(), MultiPatternMatcher.Kind.COMMENT);
+      rule = matcher.add(Pattern.compile(regEx, Pattern.DOTALL), true, matchTimeout);
+    }
+  }
+
+  @Override
+  public void visitToken(Token token) {
+    if (matcher != null) {
+      for (Trivia trivia : token.getTrivia()) {
+        if (trivia.isComment() && matcher.matches(rule, trivia.getToken().getOriginalValue())) {
+          getContext().createLineViolation(this, getMessage(), trivia.getToken());
+        }
+      }
+    }
+  }
+
 }
@@ -23,9 +23,9 @@ import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.Trivia;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Pattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.cxx.api.CppKeyword;
@@ -52,23 +52,32 @@ import org.sonar.squidbridge.recognizer.LanguageFootprint;
 @SqaleConstantRemediation("5min")
 public class CommentedCodeCheck extends SquidCheck<Grammar> implements AstAndTokenVisitor {
 
-  private static final double THRESHOLD = 0.94;
+  static final double THRESHOLD = 0.94;
+
+  /**
+   * Every detector of the CxxRecognizer needs one of these characters to match: the line ends of the end-with
+   * detector, the brace or parenthesis of the contains detector and the first character of the "&&", "||" and
+   * preprocessor directive keywords. A line without them is never recognized as code.
+   */
+  private static final String CODE_CHARACTERS = ";{}(&|#";
 
   private final CodeRecognizer codeRecognizer = new CodeRecognizer(THRESHOLD, new CxxRecognizer());
-  private final Pattern regexpToDivideStringByLine = Pattern.compile("(\r?\n)|(\r)");
 
-  private static class CxxRecognizer implements LanguageFootprint {
+  static class CxxRecognizer implements LanguageFootprint {
 
-    @Override
-    public Set<Detector> getDetectors() {
-      Set<Detector> detectors = new HashSet<>();
+    // the code recognizer asks for the detectors for every line
+    private final Set<Detector> detectors = new HashSet<>();
 
+    CxxRecognizer() {
       detectors.add(new EndWithDetector(0.95, '}', ';', '{'));
       detectors.add(new KeywordsDetector(0.7, "||", "&&"));
       detectors.add(new KeywordsDetector(0.3, CppKeyword.keywordValues()));
       detectors.add(new ContainsDetector(0.95, "for(", "if(", "while(", "catch(", "switch(", "try{", "else{"));
+    }
 
-      return detectors;
+    @Override
+    public Set<Detector> getDetectors() {
+      return Collections.unmodifiableSet(detectors);
     }
 
   }
@@ -84,17 +93,46 @@ public class CommentedCodeCheck extends SquidCheck<Grammar> implements AstAndTok
         && !value.startsWith("/*!")
         && !value.startsWith("/*@")
         && !value.startsWith("//@")) {
-        String[] lines = regexpToDivideStringByLine.split(getContext().getCommentAnalyser().getContents(value));
-
-        for (int lineOffset = 0; lineOffset < lines.length; lineOffset++) {
-          if (codeRecognizer.isLineOfCode(lines[lineOffset])) {
-            getContext().createLineViolation(this, "Remove this commented out code.",
-              trivia.getToken().getLine() + lineOffset);
-            break;
-          }
+        int lineOffset = getFirstLineOfCode(getContext().getCommentAnalyser().getContents(value));
+        if (lineOffset >= 0) {
+          getContext().createLineViolation(this, "Remove this commented out code.",
+            trivia.getToken().getLine() + lineOffset);
         }
       }
     }
   }
 
+  /**
+   * @return offset of the first line of the comment contents recognized as code, -1 if there is none
+   */
+  private int getFirstLineOfCode(String contents) {
+    int length = contents.length();
+    int lineOffset = 0;
+    int start = 0;
+    while (start <= length) {
+      int end = start;
+      while (end < length && contents.charAt(end) != '\n' && contents.charAt(end) != '\r') {
+        end++;
+      }
+      if (mayBeCode(contents, start, end) && codeRecognizer.isLineOfCode(contents.substring(start, end))) {
+        return lineOffset;
+      }
+      if (end + 1 < length && contents.charAt(end) == '\r' && contents.charAt(end + 1) == '\n') {
+        end++;
+      }
+      start = end + 1;
+      lineOffset++;
+    }
+    return -1;
+  }
+
+  static boolean mayBeCode(String contents, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (CODE_CHARACTERS.indexOf(contents.charAt(i)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
 }
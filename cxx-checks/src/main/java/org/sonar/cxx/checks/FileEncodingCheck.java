@@ -21,14 +21,11 @@ package org.sonar.cxx.checks;
 
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import java.io.IOException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
-import org.sonar.api.utils.log.Logger;
-import org.sonar.api.utils.log.Loggers;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxSourceSnapshot;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -44,7 +41,6 @@ import org.sonar.squidbridge.checks.SquidCheck;
 @NoSqale
 public class FileEncodingCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
 
-  private static final Logger LOG = Loggers.get(FileEncodingCheck.class);
   private Charset charset = Charset.forName("UTF-8");
 
   @Override
@@ -54,15 +50,10 @@ public class FileEncodingCheck extends SquidCheck<Grammar> implements CxxCharset
 
   @Override
   public void visitFile(AstNode astNode) {
-    try {
-      Files.readAllLines(getContext().getFile().toPath(), charset);
-    } catch (IOException e) {
+    if (CxxSourceSnapshot.of(getContext(), charset).hasDecodingError()) {
       getContext().createFileViolation(this,
         "Not all characters of the file can be encoded with the predefined charset "
         + charset.name() + ".");
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Cannot Read File", e);
-      }
     }
   }
 
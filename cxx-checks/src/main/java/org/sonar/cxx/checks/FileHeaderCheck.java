@@ -19,10 +19,8 @@
  */
 package org.sonar.cxx.checks;
 
-import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.List;
@@ -32,9 +30,9 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxSourceSnapshot;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
-import org.sonar.squidbridge.api.AnalysisException;
 import org.sonar.squidbridge.checks.SquidCheck;
 
 /**
@@ -100,21 +98,11 @@ public class FileHeaderCheck extends SquidCheck<Grammar> implements CxxCharsetAw
 
   @Override
   public void visitFile(AstNode astNode) {
+    CxxSourceSnapshot source = CxxSourceSnapshot.of(getContext(), charset);
     if (isRegularExpression) {
-      String fileContent;
-      try {
-        fileContent = Files.toString(getContext().getFile(), charset);
-      } catch (IOException e) {
-        throw new AnalysisException(e);
-      }
-      checkRegularExpression(fileContent);
+      checkRegularExpression(source.getText());
     } else {
-      List<String> lines;
-      try {
-        lines = Files.readLines(getContext().getFile(), charset);
-      } catch (IOException e) {
-        throw new IllegalStateException(e);
-      }
+      List<String> lines = source.getLines();
 
       if (!matches(expectedLines, lines)) {
         getContext().createFileViolation(this, MESSAGE);
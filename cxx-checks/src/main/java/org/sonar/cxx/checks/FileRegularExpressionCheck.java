@@ -21,15 +21,7 @@ package org.sonar.cxx.checks;
 
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CodingErrorAction;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import org.sonar.api.utils.PathUtils;
@@ -37,7 +29,9 @@ import org.sonar.api.utils.WildcardPattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.cxx.checks.utils.MultiPatternMatcher;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxSourceSnapshot;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.annotations.RuleTemplate;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -59,10 +53,11 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
   private static final String DEFAULT_REGULAR_EXPRESSION = "";
   private static final boolean DEFAULT_INVERT_REGULAR_EXPRESSION = false;
   private static final String DEFAULT_MESSAGE = "The regular expression matches this file";
+  private static final int DEFAULT_MATCH_TIMEOUT = 10000;
 
   private Charset charset = Charset.forName("UTF-8");
-  private CharsetDecoder decoder;
-  private Pattern pattern;
+  private MultiPatternMatcher matcher;
+  private int rule;
 
   /**
    * matchFilePattern
@@ -109,17 +104,23 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
     defaultValue = DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
 
+  /**
+   * matchTimeout
+   */
+  @RuleProperty(
+    key = "matchTimeout",
+    description = "Time budget of the regular expression per file in milliseconds, 0 for none",
+    defaultValue = "" + DEFAULT_MATCH_TIMEOUT)
+  public int matchTimeout = DEFAULT_MATCH_TIMEOUT;
+
   @Override
   public void init() {
     try {
-      pattern = Pattern.compile(regularExpression);
-      decoder = charset.newDecoder();
-      decoder.onMalformedInput(CodingErrorAction.REPLACE);
-      decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+      Pattern pattern = Pattern.compile(regularExpression);
+      matcher = MultiPatternMatcher.shared(getContext(), MultiPatternMatcher.Kind.FILE);
+      rule = matcher.add(pattern, false, matchTimeout);
     } catch (PatternSyntaxException ex) {
       throw new IllegalStateException(ex);
-    } catch (IllegalArgumentException ex2) {
-      throw new IllegalStateException(ex2);
     }
   }
 
@@ -130,16 +131,13 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
 
   @Override
   public void visitFile(AstNode fileNode) {
-    try {
-      if (!compare(invertFilePattern, matchFile())) {
-        return;
-      }
-      Matcher matcher = pattern.matcher(fromFile(getContext().getFile()));
-      if (compare(invertRegularExpression, matcher.find())) {
-        getContext().createFileViolation(this, message);
-      }
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
+    if (!compare(invertFilePattern, matchFile())) {
+      return;
+    }
+    String text = CxxSourceSnapshot.of(getContext(), charset).getText();
+    boolean matches = matcher.matches(rule, text);
+    if (!matcher.isAborted(rule) && compare(invertRegularExpression, matches)) {
+      getContext().createFileViolation(this, message);
     }
   }
 
@@ -152,14 +150,6 @@ public class FileRegularExpressionCheck extends SquidCheck<Grammar> implements C
     return true;
   }
 
-  private CharSequence fromFile(File file) throws IOException {
-    try (FileInputStream input = new FileInputStream(file)) {
-      FileChannel channel = input.getChannel();
-      ByteBuffer bbuf = channel.map(FileChannel.MapMode.READ_ONLY, 0, (int) channel.size());
-      return decoder.decode(bbuf);
-    }
-  }
-
   private static boolean compare(boolean invert, boolean condition) {
     return invert ? !condition : condition;
   }
@@ -22,11 +22,11 @@ package org.sonar.cxx.checks;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import java.util.Objects;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.cxx.checks.utils.MultiPatternMatcher;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.tag.Tag;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
@@ -54,7 +54,8 @@ public class HardcodedIpCheck extends SquidCheck<Grammar> {
 //  (?:25[0-5]|2[0-4]\d|[01]?\d\d?)\.(?:25[0-5]|2[0-4]\d|[01]?\d\d?))(?::(\d{2,5}))?(?:\s|$)
   private static final String DEFAULT_REGULAR_EXPRESSION
     = "^.*((?<![\\d|\\.])(?:\\b(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\b\\.){3}\\b(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\b(?!\\d|\\.)).*$";
-  private static volatile Matcher IP;
+  private MultiPatternMatcher matcher;
+  private int rule;
 
   @RuleProperty(
     key = "regularExpression",
@@ -66,7 +67,6 @@ public class HardcodedIpCheck extends SquidCheck<Grammar> {
     return regularExpression;
   }
 
-  @SuppressWarnings("squid:S2696") // ... initialize SquidAstVisitor
   @Override
   public void init() {
     String regEx = getRegularExpression();
@@ -74,7 +74,9 @@ public class HardcodedIpCheck extends SquidCheck<Grammar> {
 
     if (!regEx.isEmpty()) {
       try {
-        IP = Pattern.compile(regEx).matcher("");
+        Pattern pattern = Pattern.compile(regEx);
+        matcher = MultiPatternMatcher.shared(getContext(), MultiPatternMatcher.Kind.LITERAL);
+        rule = matcher.add(pattern, false);
       } catch (RuntimeException e) {
         throw new IllegalStateException("Unable to compile regular expression: " + regEx, e);
       }
@@ -85,10 +87,11 @@ public class HardcodedIpCheck extends SquidCheck<Grammar> {
   @Override
   public void visitNode(AstNode node) {
     if (node.is(CxxGrammarImpl.LITERAL)) {
-      IP.reset(node.getTokenOriginalValue());
-      if (IP.find()) {
-        String ip = IP.group(0).replaceAll("\"", "");
-        getContext().createLineViolation(this, "Make this IP \"" + ip + "\" address configurable.", node);
+      String literal = node.getTokenOriginalValue();
+      String address = matcher.matchedText(rule, literal);
+      if (address != null) {
+        address = address.replaceAll("\"", "");
+        getContext().createLineViolation(this, "Make this IP \"" + address + "\" address configurable.", node);
       }
     }
   }
@@ -19,13 +19,10 @@
  */
 package org.sonar.cxx.checks;
 
-import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.List;
-import java.util.regex.Matcher;
+import java.util.BitSet;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import org.sonar.api.utils.PathUtils;
@@ -33,7 +30,9 @@ import org.sonar.api.utils.WildcardPattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.cxx.checks.utils.MultiPatternMatcher;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxSourceSnapshot;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.annotations.RuleTemplate;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -55,9 +54,11 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements C
   private static final String DEFAULT_REGULAR_EXPRESSION = "";
   private static final boolean DEFAULT_INVERT_REGULAR_EXPRESSION = false;
   private static final String DEFAULT_MESSAGE = "The regular expression matches this line";
+  private static final int DEFAULT_MATCH_TIMEOUT = 10000;
 
   private Charset charset = Charset.forName("UTF-8");
-  private Pattern pattern;
+  private MultiPatternMatcher matcher;
+  private int rule;
 
   /**
    * matchFilePattern
@@ -104,10 +105,21 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements C
     defaultValue = DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
 
+  /**
+   * matchTimeout
+   */
+  @RuleProperty(
+    key = "matchTimeout",
+    description = "Time budget of the regular expression per file in milliseconds, 0 for none",
+    defaultValue = "" + DEFAULT_MATCH_TIMEOUT)
+  public int matchTimeout = DEFAULT_MATCH_TIMEOUT;
+
   @Override
   public void init() {
     try {
-      pattern = Pattern.compile(regularExpression);
+      Pattern pattern = Pattern.compile(regularExpression);
+      matcher = MultiPatternMatcher.shared(getContext(), MultiPatternMatcher.Kind.LINE);
+      rule = matcher.add(pattern, false, matchTimeout);
     } catch (PatternSyntaxException e) {
       throw new IllegalStateException(e);
     }
@@ -121,15 +133,13 @@ public class LineRegularExpressionCheck extends SquidCheck<Grammar> implements C
   @Override
   public void visitFile(AstNode fileNode) {
     if (compare(invertFilePattern, matchFile())) {
-      List<String> lines;
-      try {
-        lines = Files.readLines(getContext().getFile(), charset);
-      } catch (IOException e) {
-        throw new IllegalStateException(e);
+      CxxSourceSnapshot source = CxxSourceSnapshot.of(getContext(), charset);
+      BitSet matchingLines = matcher.matchingLines(rule, source);
+      if (matcher.isAborted(rule)) {
+        return;
       }
-      for (int i = 0; i < lines.size(); ++i) {
-        Matcher matcher = pattern.matcher(lines.get(i));
-        if (compare(invertRegularExpression, matcher.find())) {
+      for (int i = 0; i < source.getLineCount(); ++i) {
+        if (compare(invertRegularExpression, matchingLines.get(i))) {
           getContext().createLineViolation(this, message, i + 1);
         }
       }
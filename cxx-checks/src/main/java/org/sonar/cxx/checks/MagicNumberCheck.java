@@ -24,6 +24,7 @@ import com.sonar.sslr.api.Grammar;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
@@ -31,6 +32,7 @@ import org.sonar.cxx.api.CxxKeyword;
 import org.sonar.cxx.api.CxxTokenType;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.tag.Tag;
+import org.sonar.cxx.visitors.CxxAncestors;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -58,10 +60,15 @@ public class MagicNumberCheck extends SquidCheck<Grammar> {
   public String exceptions = DEFAULT_EXCEPTIONS;
 
   private final Set<String> exceptionsSet = new HashSet<>();
+  private CxxAncestors ancestors;
 
   @Override
   public void init() {
     subscribeTo(CxxTokenType.NUMBER);
+    ancestors = CxxAncestors.of(getContext());
+    ancestors.track(CxxGrammarImpl.initDeclarator, CxxGrammarImpl.simpleDeclaration,
+      CxxGrammarImpl.memberDeclarator, CxxGrammarImpl.memberDeclaration,
+      CxxGrammarImpl.enumeratorList, CxxGrammarImpl.bracedInitList);
     for (String magicNumber : Arrays.asList(exceptions.split(","))) {
       magicNumber = magicNumber.trim();
       if (!magicNumber.isEmpty()) {
@@ -72,8 +79,9 @@ public class MagicNumberCheck extends SquidCheck<Grammar> {
 
   @Override
   public void visitNode(AstNode node) {
-    if (!isConstexpr(node)
-      && !isConst(node)
+    AstNode decl = getDeclaration(node);
+    if (!isConstexpr(decl)
+      && !isConst(decl)
       && !isExcluded(node)
       && !isInEnum(node)
       && !isArrayInitializer(node)
@@ -84,29 +92,21 @@ public class MagicNumberCheck extends SquidCheck<Grammar> {
     }
   }
 
-  private static boolean isConstexpr(AstNode node) {
-    AstNode decl = null;
-
-    if (node.hasAncestor(CxxGrammarImpl.initDeclarator)) {
-      decl = node.getFirstAncestor(CxxGrammarImpl.simpleDeclaration);
-    } else if (node.hasAncestor(CxxGrammarImpl.memberDeclarator)) {
-      decl = node.getFirstAncestor(CxxGrammarImpl.memberDeclaration);
+  @Nullable
+  private AstNode getDeclaration(AstNode node) {
+    if (ancestors.hasAncestor(node, CxxGrammarImpl.initDeclarator)) {
+      return ancestors.getFirstAncestor(node, CxxGrammarImpl.simpleDeclaration);
+    } else if (ancestors.hasAncestor(node, CxxGrammarImpl.memberDeclarator)) {
+      return ancestors.getFirstAncestor(node, CxxGrammarImpl.memberDeclaration);
     }
+    return null;
+  }
 
-    if (null != decl) {
-      return null != decl.getFirstDescendant(CxxKeyword.CONSTEXPR);
-    } else {
-      return false;
-    }
+  private static boolean isConstexpr(@Nullable AstNode decl) {
+    return decl != null && decl.getFirstDescendant(CxxKeyword.CONSTEXPR) != null;
   }
 
-  private static boolean isConst(AstNode node) {
-    AstNode decl = null;
-    if (node.hasAncestor(CxxGrammarImpl.initDeclarator)) {
-      decl = node.getFirstAncestor(CxxGrammarImpl.simpleDeclaration);
-    } else if (node.hasAncestor(CxxGrammarImpl.memberDeclarator)) {
-      decl = node.getFirstAncestor(CxxGrammarImpl.memberDeclaration);
-    }
+  private static boolean isConst(@Nullable AstNode decl) {
     if (decl != null) {
       for (AstNode qualifier : decl.getDescendants(CxxGrammarImpl.cvQualifier)) {
         if (qualifier.getToken().getType().equals(CxxKeyword.CONST)) {
@@ -121,12 +121,12 @@ public class MagicNumberCheck extends SquidCheck<Grammar> {
     return exceptionsSet.contains(node.getTokenOriginalValue());
   }
 
-  private static boolean isInEnum(AstNode node) {
-    return node.hasAncestor(CxxGrammarImpl.enumeratorList);
+  private boolean isInEnum(AstNode node) {
+    return ancestors.hasAncestor(node, CxxGrammarImpl.enumeratorList);
   }
 
-  private static boolean isArrayInitializer(AstNode node) {
-    return node.hasAncestor(CxxGrammarImpl.bracedInitList);
+  private boolean isArrayInitializer(AstNode node) {
+    return ancestors.hasAncestor(node, CxxGrammarImpl.bracedInitList);
   }
 
   private static boolean isGenerated(AstNode node) {
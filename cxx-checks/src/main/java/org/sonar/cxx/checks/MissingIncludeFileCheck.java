@@ -41,7 +41,8 @@ public class MissingIncludeFileCheck extends SquidCheck<Grammar> {
 
   @Override
   public void leaveFile(AstNode astNode) {
-    for (CxxPreprocessor.Include missingInclude : CxxParser.getMissingIncludeFiles(getContext().getFile())) {
+    for (CxxPreprocessor.Include missingInclude : CxxParser.getMissingIncludeFiles(getContext(),
+      getContext().getFile())) {
       getContext().createLineViolation(this, "Unable to find the source for '" + missingInclude.getPath() + "'.",
         missingInclude.getLine());
     }
@@ -21,12 +21,12 @@ package org.sonar.cxx.checks;
 
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.charset.StandardCharsets;
+import java.nio.charset.Charset;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.cxx.tag.Tag;
+import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxSourceSnapshot;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -38,32 +38,20 @@ import org.sonar.squidbridge.checks.SquidCheck;
   priority = Priority.MINOR)
 @ActivatedByDefault
 @SqaleConstantRemediation("1min")
-public class MissingNewLineAtEndOfFileCheck extends SquidCheck<Grammar> {
+public class MissingNewLineAtEndOfFileCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
+
+  private Charset charset = Charset.forName("UTF-8");
 
   @Override
-  public void visitFile(AstNode astNode) {
-    try {
-      try (RandomAccessFile randomAccessFile = new RandomAccessFile(getContext().getFile(), "r")) {
-        if (!endsWithNewline(randomAccessFile)) {
-          getContext().createFileViolation(this, "Add a new line at the end of this file.");
-        }
-      }
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
-    }
+  public void setCharset(Charset charset) {
+    this.charset = charset;
   }
 
-  private static boolean endsWithNewline(RandomAccessFile randomAccessFile) throws IOException {
-    if (randomAccessFile.length() < 1) {
-      return false;
-    }
-    randomAccessFile.seek(randomAccessFile.length() - 1);
-    byte[] chars = new byte[1];
-    if (randomAccessFile.read(chars) < 1) {
-      return false;
+  @Override
+  public void visitFile(AstNode astNode) {
+    if (!CxxSourceSnapshot.of(getContext(), charset).endsWithNewline()) {
+      getContext().createFileViolation(this, "Add a new line at the end of this file.");
     }
-    String ch = new String(chars, StandardCharsets.UTF_8);
-    return "\n".equals(ch) || "\r".equals(ch);
   }
 
 }
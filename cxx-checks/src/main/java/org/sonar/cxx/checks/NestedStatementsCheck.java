@@ -29,6 +29,7 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.cxx.api.CxxKeyword;
+import org.sonar.cxx.checks.utils.AstNodeIndex;
 import static org.sonar.cxx.checks.utils.CheckUtils.isIfStatement;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.tag.Tag;
@@ -81,7 +82,7 @@ public class NestedStatementsCheck extends SquidCheck<Grammar> {
       return;
     }
 
-    List<AstNode> watchedDescendants = node.getDescendants(CHECKED_TYPES);
+    List<AstNode> watchedDescendants = AstNodeIndex.of(getContext(), node).getDescendants(node, CHECKED_TYPES);
 
     // In the AST 'else if' blocks are technically nested, but should not increase the nesting level as they are
     // actually flat in terms of 'spaghetti code'. This bypasses the nesting increment/decrement for such blocks.
@@ -26,6 +26,7 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.cxx.api.CppPunctuator;
+import org.sonar.cxx.checks.utils.AstNodeIndex;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.tag.Tag;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
@@ -56,7 +57,8 @@ public class TooManyLinesOfCodeInFunctionCheck extends SquidCheck<Grammar> {
 
   @Override
   public void leaveNode(AstNode node) {
-    int lineCount = getNumberOfLine(node);
+    int lineCount = countLines(node, AstNodeIndex.of(getContext(), node).getDescendants(node, CxxGrammarImpl.statement,
+      CppPunctuator.CURLBR_LEFT, CppPunctuator.CURLBR_RIGHT));
     if (lineCount > max) {
       getContext().createLineViolation(this,
         "The number of code lines in this function is {0,number,integer} which is greater than "
@@ -72,8 +74,11 @@ public class TooManyLinesOfCodeInFunctionCheck extends SquidCheck<Grammar> {
    * @return number of lines
    */
   public static int getNumberOfLine(AstNode node) {
-    List<AstNode> allChilds = node.getDescendants(CxxGrammarImpl.statement, CppPunctuator.CURLBR_LEFT,
-      CppPunctuator.CURLBR_RIGHT);
+    return countLines(node, node.getDescendants(CxxGrammarImpl.statement, CppPunctuator.CURLBR_LEFT,
+      CppPunctuator.CURLBR_RIGHT));
+  }
+
+  private static int countLines(AstNode node, List<AstNode> allChilds) {
     int lines = 1;
     int firstLine = node.getTokenLine();
     if (allChilds != null && !allChilds.isEmpty()) {
@@ -19,17 +19,17 @@
  */
 package org.sonar.cxx.checks;
 
-import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
-import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.List;
+import java.util.BitSet;
 import java.util.regex.Pattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
+import org.sonar.cxx.checks.utils.MultiPatternMatcher;
 import org.sonar.cxx.tag.Tag;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
+import org.sonar.cxx.visitors.CxxSourceSnapshot;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -48,13 +48,16 @@ import org.sonar.squidbridge.checks.SquidCheck;
 public class UseCorrectIncludeCheck extends SquidCheck<Grammar> implements CxxCharsetAwareVisitor {
 
   private static final String REGULAR_EXPRESSION = "#include\\s+(?>\"|\\<)[\\\\/\\.]+";
-  private Pattern pattern;
+  private MultiPatternMatcher matcher;
+  private int rule;
   private Charset charset = Charset.forName("UTF-8");
 
   @Override
   public void init() {
     try {
-      pattern = Pattern.compile(REGULAR_EXPRESSION, Pattern.DOTALL);
+      Pattern pattern = Pattern.compile(REGULAR_EXPRESSION, Pattern.DOTALL);
+      matcher = MultiPatternMatcher.shared(getContext(), MultiPatternMatcher.Kind.LINE);
+      rule = matcher.add(pattern, false);
     } catch (RuntimeException e) {
       throw new IllegalStateException("Unable to compile regular expression: " + REGULAR_EXPRESSION, e);
     }
@@ -62,17 +65,10 @@ public class UseCorrectIncludeCheck extends SquidCheck<Grammar> implements CxxCh
 
   @Override
   public void visitFile(AstNode astNode) {
-    List<String> lines;
-    try {
-      lines = Files.readLines(getContext().getFile(), charset);
-    } catch (IOException e) {
-      throw new IllegalStateException(e);
-    }
-    for (int i = 0; i < lines.size(); i++) {
-      String line = lines.get(i);
-      if (pattern.matcher(line).find()) {
-        getContext().createLineViolation(this, "Do not use relative path for #include directive.", i + 1);
-      }
+    CxxSourceSnapshot source = CxxSourceSnapshot.of(getContext(), charset);
+    BitSet matchingLines = matcher.matchingLines(rule, source);
+    for (int i = matchingLines.nextSetBit(0); i >= 0; i = matchingLines.nextSetBit(i + 1)) {
+      getContext().createLineViolation(this, "Do not use relative path for #include directive.", i + 1);
     }
   }
 
@@ -26,6 +26,7 @@ import org.sonar.api.utils.WildcardPattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.cxx.checks.utils.XPathQueryBatch;
 import org.sonar.squidbridge.annotations.NoSqale;
 import org.sonar.squidbridge.annotations.RuleTemplate;
 import org.sonar.squidbridge.checks.AbstractXPathCheck;
@@ -68,6 +69,10 @@ public class XPathCheck extends AbstractXPathCheck<Grammar> {
     defaultValue = DEFAULT_MESSAGE)
   public String message = DEFAULT_MESSAGE;
 
+  private WildcardPattern pattern;
+  private XPathQueryBatch batch;
+  private int query = -1;
+
   @Override
   public String getXPathQuery() {
     return xpathQuery;
@@ -78,16 +83,52 @@ public class XPathCheck extends AbstractXPathCheck<Grammar> {
     return message;
   }
 
+  /**
+   * The query is evaluated together with the queries of the other XPath rules, see {@link XPathQueryBatch}.
+   */
+  @Override
+  public void init() {
+    pattern = matchFilePattern.isEmpty() ? null : WildcardPattern.create(matchFilePattern);
+    String xpath = getXPathQuery();
+    if (xpath != null && !xpath.isEmpty()) {
+      batch = XPathQueryBatch.shared(getContext());
+      try {
+        query = batch.add(xpath);
+      } catch (RuntimeException e) {
+        throw new IllegalStateException("Unable to initialize the XPath engine, perhaps because of an invalid query: "
+          + xpath, e);
+      }
+    }
+  }
+
   @Override
   public void visitFile(AstNode fileNode) {
-    if (!matchFilePattern.isEmpty()) {
-      WildcardPattern pattern = WildcardPattern.create(matchFilePattern);
+    if (query < 0 || fileNode == null) {
+      return;
+    }
+    if (pattern != null) {
       String path = PathUtils.sanitize(getContext().getFile().getPath());
       if (!compare(invertFilePattern, pattern.match(path))) {
         return;
       }
     }
-    super.visitFile(fileNode);
+    for (Object selected : batch.selectNodes(query, fileNode)) {
+      if (selected instanceof AstNode) {
+        getContext().createLineViolation(this, getMessage(), ((AstNode) selected).getTokenLine());
+      } else if (selected instanceof Boolean && (Boolean) selected) {
+        getContext().createFileViolation(this, getMessage());
+      }
+    }
+  }
+
+  /**
+   * All XPath rules have selected their nodes in visitFile, the nodes of the AST kept by the batch are released.
+   */
+  @Override
+  public void leaveFile(AstNode fileNode) {
+    if (batch != null) {
+      batch.clear();
+    }
   }
 
   private static boolean compare(boolean invert, boolean condition) {
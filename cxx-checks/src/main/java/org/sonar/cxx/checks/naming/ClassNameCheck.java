@@ -25,6 +25,7 @@ import java.util.regex.Pattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.cxx.checks.utils.AstNodeIndex;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.tag.Tag;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
@@ -63,7 +64,7 @@ public class ClassNameCheck extends SquidCheck<Grammar> {
 
   @Override
   public void visitNode(AstNode astNode) {
-    AstNode nameNode = astNode.getFirstDescendant(CxxGrammarImpl.className);
+    AstNode nameNode = AstNodeIndex.of(getContext(), astNode).getFirstDescendant(astNode, CxxGrammarImpl.className);
     if (nameNode != null) {
       String className = nameNode.getTokenValue();
       if (!pattern.matcher(className).matches()) {
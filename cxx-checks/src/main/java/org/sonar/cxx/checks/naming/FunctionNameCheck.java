@@ -25,8 +25,10 @@ import java.util.regex.Pattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.cxx.checks.utils.AstNodeIndex;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.tag.Tag;
+import org.sonar.cxx.visitors.CxxAncestors;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -47,6 +49,7 @@ public class FunctionNameCheck extends SquidCheck<Grammar> {
 
   private static final String DEFAULT = "^[a-z_][a-z0-9_]{2,30}$";
   private Pattern pattern;
+  private CxxAncestors ancestors;
 
   /**
    * format
@@ -60,12 +63,14 @@ public class FunctionNameCheck extends SquidCheck<Grammar> {
   public void init() {
     pattern = Pattern.compile(format);
     subscribeTo(CxxGrammarImpl.functionDefinition);
+    ancestors = CxxAncestors.of(getContext());
+    ancestors.track(CxxGrammarImpl.memberDeclaration);
   }
 
   @Override
   public void visitNode(AstNode astNode) {
-    AstNode declId = astNode.getFirstDescendant(CxxGrammarImpl.declaratorId);
-    if (isFunctionDefinition(declId)) {
+    AstNode declId = AstNodeIndex.of(getContext(), astNode).getFirstDescendant(astNode, CxxGrammarImpl.declaratorId);
+    if (isFunctionDefinition(astNode, declId)) {
       AstNode idNode = declId.getLastChild(CxxGrammarImpl.className);
       if (idNode != null) {
         String identifier = idNode.getTokenValue();
@@ -77,11 +82,11 @@ public class FunctionNameCheck extends SquidCheck<Grammar> {
     }
   }
 
-  private static boolean isFunctionDefinition(AstNode declId) {
+  private boolean isFunctionDefinition(AstNode functionDefinition, AstNode declId) {
     boolean isFunction = false;
     // not method inside of class
     // not a nested name - not method outside of class
-    if ((declId.getFirstAncestor(CxxGrammarImpl.memberDeclaration) == null)
+    if (ancestors.getFirstAncestor(functionDefinition, declId, CxxGrammarImpl.memberDeclaration) == null
       && (!declId.hasDirectChildren(CxxGrammarImpl.nestedNameSpecifier))) {
       isFunction = true;
     }
@@ -26,8 +26,10 @@ import javax.annotation.Nullable;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.cxx.checks.utils.AstNodeIndex;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.tag.Tag;
+import org.sonar.cxx.visitors.CxxAncestors;
 import org.sonar.squidbridge.annotations.ActivatedByDefault;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.checks.SquidCheck;
@@ -47,6 +49,7 @@ public class MethodNameCheck extends SquidCheck<Grammar> {
 
   private static final String DEFAULT = "^[A-Z][A-Za-z0-9]{2,30}$";
   private Pattern pattern;
+  private CxxAncestors ancestors;
 
   /**
    * format
@@ -60,6 +63,8 @@ public class MethodNameCheck extends SquidCheck<Grammar> {
   public void init() {
     pattern = Pattern.compile(format);
     subscribeTo(CxxGrammarImpl.functionDefinition);
+    ancestors = CxxAncestors.of(getContext());
+    ancestors.track(CxxGrammarImpl.memberDeclaration, CxxGrammarImpl.classSpecifier);
   }
 
   @Override
@@ -74,13 +79,14 @@ public class MethodNameCheck extends SquidCheck<Grammar> {
     }
   }
 
-  private static @Nullable
+  private @Nullable
   AstNode getMethodName(AstNode functionDefinition) {
-    AstNode declId = functionDefinition.getFirstDescendant(CxxGrammarImpl.declaratorId);
+    AstNode declId = AstNodeIndex.of(getContext(), functionDefinition).getFirstDescendant(functionDefinition,
+      CxxGrammarImpl.declaratorId);
     AstNode result = null;
     if (declId != null) {
       // method inside of class
-      result = getInsideMemberDeclaration(declId);
+      result = getInsideMemberDeclaration(functionDefinition, declId);
       if (result == null) {
         // a nested name - method outside of class
         result = getOutsideMemberDeclaration(declId);
@@ -89,15 +95,17 @@ public class MethodNameCheck extends SquidCheck<Grammar> {
     return result;
   }
 
-  private static @Nullable
-  AstNode getInsideMemberDeclaration(AstNode declId) {
+  private @Nullable
+  AstNode getInsideMemberDeclaration(AstNode functionDefinition, AstNode declId) {
     AstNode result = null;
-    if (declId.hasAncestor(CxxGrammarImpl.memberDeclaration)) {
+    if (ancestors.getFirstAncestor(functionDefinition, declId, CxxGrammarImpl.memberDeclaration) != null) {
       AstNode idNode = declId.getLastChild(CxxGrammarImpl.className);
       if (idNode != null) {
-        AstNode classSpecifier = declId.getFirstAncestor(CxxGrammarImpl.classSpecifier);
+        AstNode classSpecifier = ancestors.getFirstAncestor(functionDefinition, declId,
+          CxxGrammarImpl.classSpecifier);
         if (classSpecifier != null) {
-          AstNode classHeadName = classSpecifier.getFirstDescendant(CxxGrammarImpl.classHeadName);
+          AstNode classHeadName = AstNodeIndex.of(getContext(), classSpecifier).getFirstDescendant(classSpecifier,
+            CxxGrammarImpl.classHeadName);
           if (classHeadName != null) {
             AstNode className = classHeadName.getLastChild(CxxGrammarImpl.className);
             // if class name is equal to method name then it is a ctor or dtor
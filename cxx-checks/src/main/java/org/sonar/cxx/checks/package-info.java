@@ -19,6 +19,9 @@
  */
 /**
  * Package with Squid based checks for cxx community plug-in.
+ * <p>
+ * A check instance is used by one scan only, see the thread-safety contract of
+ * {@link org.sonar.cxx.CxxAstScanner#create}.
  */
 @ParametersAreNonnullByDefault
 package org.sonar.cxx.checks;
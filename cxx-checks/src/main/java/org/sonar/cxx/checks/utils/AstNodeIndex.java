@@ -0,0 +1,194 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.checks.utils;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Index of an AST: for each node type the nodes in document order, for each node its pre-order number and the
+ * pre-order number of its last descendant. Descendant queries are answered with a binary search instead of walking
+ * the subtree.
+ *
+ * In a CxxAstScanner the index is kept in the data of the current file, so all checks of a file share the same
+ * instance and it is dropped when the visitors left the file.
+ */
+public final class AstNodeIndex {
+
+  private final AstNode root;
+  private final Map<AstNode, int[]> ranges = new IdentityHashMap<>();
+  private final Map<AstNodeType, TypeIndex> types = new HashMap<>();
+
+  private static final class TypeIndex {
+
+    private final List<AstNode> nodes = new ArrayList<>();
+    private int[] pre = new int[16];
+
+    void add(AstNode node, int number) {
+      if (nodes.size() == pre.length) {
+        pre = Arrays.copyOf(pre, pre.length * 2);
+      }
+      pre[nodes.size()] = number;
+      nodes.add(node);
+    }
+
+    /**
+     * @return index of the first node with a pre-order number greater than number
+     */
+    int after(int number) {
+      int low = 0;
+      int high = nodes.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (pre[mid] <= number) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  private AstNodeIndex(AstNode root) {
+    this.root = root;
+    index(root, 0);
+  }
+
+  /**
+   * Returns the index of the AST the node belongs to. The index is created on first use and shared for the current
+   * file of the context. Outside of a CxxAstScanner a new index is created.
+   *
+   * @param context context of the visitor
+   * @param node any node of the AST
+   * @return index of the whole AST
+   */
+  public static AstNodeIndex of(@Nullable SquidAstVisitorContext<?> context, AstNode node) {
+    AstNode root = node;
+    while (root.getParent() != null) {
+      root = root.getParent();
+    }
+    if (context instanceof CxxSquidAstVisitorContext) {
+      final AstNode fileRoot = root;
+      AstNodeIndex index = ((CxxSquidAstVisitorContext<?>) context).getFileData(AstNodeIndex.class,
+        () -> new AstNodeIndex(fileRoot));
+      if (index.root == root) {
+        return index;
+      }
+    }
+    return new AstNodeIndex(root);
+  }
+
+  /**
+   * Same result as {@link AstNode#getDescendants(AstNodeType, AstNodeType...)}: all descendants of the given types in
+   * document order.
+   */
+  public List<AstNode> getDescendants(AstNode node, AstNodeType... nodeTypes) {
+    int[] range = range(node);
+    if (nodeTypes.length == 1) {
+      return slice(range, nodeTypes[0]);
+    }
+    List<AstNode> result = new ArrayList<>();
+    for (AstNodeType type : nodeTypes) {
+      result.addAll(slice(range, type));
+    }
+    result.sort(Comparator.comparingInt(n -> ranges.get(n)[0]));
+    return result;
+  }
+
+  /**
+   * Same result as {@link AstNode#getFirstDescendant(AstNodeType...)}: first descendant of one of the given types in
+   * document order or null.
+   */
+  @CheckForNull
+  public AstNode getFirstDescendant(AstNode node, AstNodeType... nodeTypes) {
+    int[] range = range(node);
+    AstNode first = null;
+    int firstNumber = Integer.MAX_VALUE;
+    for (AstNodeType type : nodeTypes) {
+      TypeIndex typeIndex = types.get(type);
+      if (typeIndex != null) {
+        int i = typeIndex.after(range[0]);
+        if (i < typeIndex.nodes.size() && typeIndex.pre[i] <= range[1] && typeIndex.pre[i] < firstNumber) {
+          first = typeIndex.nodes.get(i);
+          firstNumber = typeIndex.pre[i];
+        }
+      }
+    }
+    return first;
+  }
+
+  /**
+   * Same result as {@link AstNode#hasDescendant(AstNodeType...)}.
+   */
+  public boolean hasDescendant(AstNode node, AstNodeType... nodeTypes) {
+    return getFirstDescendant(node, nodeTypes) != null;
+  }
+
+  /**
+   * @return all nodes of the given type of the AST in document order
+   */
+  public List<AstNode> getNodes(AstNodeType nodeType) {
+    TypeIndex typeIndex = types.get(nodeType);
+    return typeIndex == null ? Collections.emptyList() : Collections.unmodifiableList(typeIndex.nodes);
+  }
+
+  private List<AstNode> slice(int[] range, AstNodeType type) {
+    TypeIndex typeIndex = types.get(type);
+    if (typeIndex == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(typeIndex.nodes.subList(typeIndex.after(range[0]),
+      typeIndex.after(range[1])));
+  }
+
+  private int[] range(AstNode node) {
+    int[] range = ranges.get(node);
+    if (range == null) {
+      throw new IllegalArgumentException("Node '" + node + "' is not part of the indexed AST.");
+    }
+    return range;
+  }
+
+  private int index(AstNode node, int number) {
+    int[] range = new int[]{number, number};
+    ranges.put(node, range);
+    types.computeIfAbsent(node.getType(), t -> new TypeIndex()).add(node, number);
+    int last = number;
+    for (AstNode child : node.getChildren()) {
+      last = index(child, last + 1);
+    }
+    range[1] = last;
+    return last;
+  }
+
+}
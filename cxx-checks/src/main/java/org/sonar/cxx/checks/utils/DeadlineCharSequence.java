@@ -0,0 +1,108 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.checks.utils;
+
+/**
+ * Character sequence which aborts the regular expression matching it once the time budget of a file is used up. A
+ * matcher reads its input through {@link #charAt(int)} at every step; the clock is only read every
+ * {@value #CHECK_INTERVAL} reads, so short matches never read it. The time between two clock reads of the same match
+ * is charged to the budget. A rule keeps one instance, which is reset for every input and every file.
+ */
+final class DeadlineCharSequence implements CharSequence {
+
+  private static final int CHECK_INTERVAL = 4096;
+
+  private final long budget;
+  private CharSequence text = "";
+  private long elapsed;
+  private long lastClockRead;
+  private int steps;
+
+  /**
+   * @param budget matching time per file in nanoseconds
+   */
+  DeadlineCharSequence(long budget) {
+    this.budget = budget;
+  }
+
+  long getBudget() {
+    return budget;
+  }
+
+  /**
+   * Starts the budget of a new file.
+   */
+  void startFile() {
+    elapsed = 0;
+  }
+
+  /**
+   * Wraps the next input to match, the budget used in the file so far is kept.
+   */
+  DeadlineCharSequence reset(CharSequence text) {
+    this.text = text;
+    lastClockRead = 0;
+    return this;
+  }
+
+  @Override
+  public int length() {
+    return text.length();
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (++steps == CHECK_INTERVAL) {
+      steps = 0;
+      long now = System.nanoTime();
+      if (lastClockRead != 0) {
+        elapsed += now - lastClockRead;
+        if (elapsed > budget) {
+          throw new DeadlineExceededException();
+        }
+      }
+      lastClockRead = now;
+    }
+    return text.charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return text.subSequence(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return text.toString();
+  }
+
+  /**
+   * Thrown by {@link DeadlineCharSequence#charAt(int)} once the deadline has passed.
+   */
+  static final class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    DeadlineExceededException() {
+      super("regular expression exceeded its time budget", null, false, false);
+    }
+  }
+
+}
@@ -0,0 +1,471 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.checks.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.checks.utils.DeadlineCharSequence.DeadlineExceededException;
+import org.sonar.cxx.visitors.CxxSourceSnapshot;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Evaluates the regular expressions of several checks in one pass over an input.
+ *
+ * A literal which is part of every match is extracted from each regular expression. One Aho-Corasick scan of the
+ * input finds the literals it contains; only the rules whose literal was found (or which have no literal) are
+ * confirmed with their regular expression. Checks of the same kind share one matcher per scan, see
+ * {@link #shared(SquidAstVisitorContext, Kind)}, and read their own result from it.
+ *
+ * A rule can have a matching time budget per file. A rule exceeding it is aborted, reported as a configuration warning
+ * with the file and skipped for the rest of the file.
+ */
+public final class MultiPatternMatcher {
+
+  /**
+   * Kind of input the rules of a matcher are evaluated on.
+   */
+  public enum Kind {
+    LINE, FILE, COMMENT, LITERAL
+  }
+
+  private static final Logger LOG = Loggers.get(MultiPatternMatcher.class);
+
+  private final List<Matcher> matchers = new ArrayList<>();
+  private final List<String> literals = new ArrayList<>();
+  private boolean[] fullMatch = new boolean[0];
+  private DeadlineCharSequence[] budgets = new DeadlineCharSequence[0];
+
+  @Nullable
+  private final SquidAstVisitorContext<?> context;
+  private Object budgetFile;
+  private boolean[] aborted = new boolean[0];
+
+  private Automaton automaton;
+  private int[] alwaysCandidates;
+
+  // result of the last evaluation: a rule is a candidate or matches if its stamp equals the evaluation counter
+  private int evaluation;
+  private int[] candidateStamp = new int[0];
+  private int[] matchStamp = new int[0];
+  private int[] candidates = new int[0];
+  private int[] matched = new int[0];
+  private int matchedCount;
+  private int[] matchStart = new int[0];
+  private int[] matchEnd = new int[0];
+
+  private CharSequence lastInput;
+  private CxxSourceSnapshot lastSource;
+  private BitSet[] lastLines;
+
+  /**
+   * Returns the matcher shared by all checks of a kind in the scan of the context. Outside of a CxxAstScanner the
+   * check gets a matcher of its own.
+   *
+   * @param context context of the check, can be null
+   * @param kind kind of input
+   * @return matcher to register the rules at
+   */
+  public static MultiPatternMatcher shared(@Nullable SquidAstVisitorContext<?> context, Kind kind) {
+    if (context instanceof CxxSquidAstVisitorContext) {
+      return ((CxxSquidAstVisitorContext<?>) context).getScanData(kind, () -> new MultiPatternMatcher(context));
+    }
+    return new MultiPatternMatcher(context);
+  }
+
+  /**
+   * Creates a matcher outside of a scan: time budgets are not reset per file.
+   */
+  public MultiPatternMatcher() {
+    this(null);
+  }
+
+  private MultiPatternMatcher(@Nullable SquidAstVisitorContext<?> context) {
+    this.context = context;
+  }
+
+  /**
+   * Registers a rule.
+   *
+   * @param pattern regular expression of the rule
+   * @param matchWhole true to use {@link Matcher#matches()}, false to use {@link Matcher#find()}
+   * @return id of the rule
+   */
+  public int add(Pattern pattern, boolean matchWhole) {
+    return add(pattern, matchWhole, 0);
+  }
+
+  /**
+   * Registers a rule with a matching time budget.
+   *
+   * @param pattern regular expression of the rule
+   * @param matchWhole true to use {@link Matcher#matches()}, false to use {@link Matcher#find()}
+   * @param timeout matching time budget of the rule per file in milliseconds, 0 or less for none
+   * @return id of the rule
+   */
+  public int add(Pattern pattern, boolean matchWhole, long timeout) {
+    int rule = matchers.size();
+    int size = rule + 1;
+    matchers.add(pattern.matcher(""));
+    literals.add(RegexLiterals.requiredLiteral(pattern));
+    fullMatch = Arrays.copyOf(fullMatch, size);
+    fullMatch[rule] = matchWhole;
+    budgets = Arrays.copyOf(budgets, size);
+    budgets[rule] = timeout > 0 ? new DeadlineCharSequence(TimeUnit.MILLISECONDS.toNanos(timeout)) : null;
+    aborted = Arrays.copyOf(aborted, size);
+    candidateStamp = Arrays.copyOf(candidateStamp, size);
+    matchStamp = Arrays.copyOf(matchStamp, size);
+    candidates = Arrays.copyOf(candidates, size);
+    matched = Arrays.copyOf(matched, size);
+    matchStart = Arrays.copyOf(matchStart, size);
+    matchEnd = Arrays.copyOf(matchEnd, size);
+    automaton = null;
+    lastInput = null;
+    lastSource = null;
+    return rule;
+  }
+
+  /**
+   * Returns true if the regular expression of a rule matches the input. The input is evaluated for all rules at once;
+   * the result is kept for the next call with the same input object.
+   *
+   * @param rule id of the rule
+   * @param input text to match
+   * @return true if the rule matches
+   */
+  public boolean matches(int rule, CharSequence input) {
+    if (input != lastInput) {
+      evaluate(input);
+      lastInput = input;
+    }
+    return matchStamp[rule] == evaluation;
+  }
+
+  /**
+   * Returns the text the regular expression of a rule matched in the input, without evaluating it again.
+   *
+   * @param rule id of the rule
+   * @param input text to match
+   * @return matched text, null if the rule does not match
+   */
+  @CheckForNull
+  public String matchedText(int rule, CharSequence input) {
+    if (!matches(rule, input)) {
+      return null;
+    }
+    return input.subSequence(matchStart[rule], matchEnd[rule]).toString();
+  }
+
+  /**
+   * Returns the lines of a file the regular expression of a rule matches. The lines are evaluated for all rules at
+   * once; the result is kept until another file is passed.
+   *
+   * @param rule id of the rule
+   * @param source content of the file
+   * @return zero based indexes of the matching lines
+   */
+  public BitSet matchingLines(int rule, CxxSourceSnapshot source) {
+    if (source != lastSource) {
+      BitSet[] lines = new BitSet[matchers.size()];
+      for (int i = 0; i < lines.length; i++) {
+        lines[i] = new BitSet();
+      }
+      for (int line = 0; line < source.getLineCount(); line++) {
+        evaluate(source.getLine(line + 1));
+        for (int i = 0; i < matchedCount; i++) {
+          lines[matched[i]].set(line);
+        }
+      }
+      lastInput = null;
+      lastLines = lines;
+      lastSource = source;
+    }
+    return lastLines[rule];
+  }
+
+  /**
+   * Returns true if a rule exceeded its time budget in the current file. The results of an aborted rule are
+   * incomplete: it matches nothing from the input it was aborted on up to the end of the file.
+   *
+   * @param rule id of the rule
+   * @return true if the rule was aborted
+   */
+  public boolean isAborted(int rule) {
+    startFile();
+    return aborted[rule];
+  }
+
+  private void startFile() {
+    Object file = context != null ? context.getFile() : null;
+    if (file != budgetFile) {
+      budgetFile = file;
+      for (DeadlineCharSequence budget : budgets) {
+        if (budget != null) {
+          budget.startFile();
+        }
+      }
+      Arrays.fill(aborted, false);
+    }
+  }
+
+  /**
+   * Evaluates all rules on the input. The matching rules are stamped with the new evaluation counter and listed in
+   * matched.
+   */
+  private void evaluate(CharSequence input) {
+    startFile();
+    if (automaton == null) {
+      automaton = new Automaton(literals);
+      int[] always = new int[literals.size()];
+      int count = 0;
+      for (int i = 0; i < literals.size(); i++) {
+        String literal = literals.get(i);
+        if (literal == null || literal.isEmpty()) {
+          always[count++] = i;
+        }
+      }
+      alwaysCandidates = Arrays.copyOf(always, count);
+    }
+    if (++evaluation == 0) {
+      Arrays.fill(candidateStamp, 0);
+      Arrays.fill(matchStamp, 0);
+      evaluation = 1;
+    }
+    int count = 0;
+    for (int rule : alwaysCandidates) {
+      candidateStamp[rule] = evaluation;
+      candidates[count++] = rule;
+    }
+    count = automaton.find(input, evaluation, candidateStamp, candidates, count);
+
+    matchedCount = 0;
+    for (int i = 0; i < count; i++) {
+      int rule = candidates[i];
+      if (aborted[rule]) {
+        continue;
+      }
+      DeadlineCharSequence budget = budgets[rule];
+      boolean found = budget != null ? matchWithin(rule, input, budget) : match(rule, input);
+      if (found) {
+        matchStamp[rule] = evaluation;
+        matched[matchedCount++] = rule;
+      }
+    }
+  }
+
+  private boolean match(int rule, CharSequence input) {
+    Matcher matcher = matchers.get(rule).reset(input);
+    boolean found = fullMatch[rule] ? matcher.matches() : matcher.find();
+    if (found) {
+      matchStart[rule] = matcher.start();
+      matchEnd[rule] = matcher.end();
+    }
+    return found;
+  }
+
+  private boolean matchWithin(int rule, CharSequence input, DeadlineCharSequence budget) {
+    try {
+      return match(rule, budget.reset(input));
+    } catch (DeadlineExceededException e) {
+      aborted[rule] = true;
+      LOG.warn("Regular expression '{}' exceeded its time budget of {} ms in file '{}', it is skipped for the rest "
+        + "of the file", matchers.get(rule).pattern(), TimeUnit.NANOSECONDS.toMillis(budget.getBudget()),
+        context != null ? context.getFile() : "");
+      return false;
+    } finally {
+      matchers.get(rule).reset("");
+      budget.reset("");
+    }
+  }
+
+  /**
+   * Aho-Corasick automaton over the literals of the rules, stored as a deterministic transition table over the
+   * characters the literals consist of. Any other character leads back to the initial state.
+   */
+  private static final class Automaton {
+
+    private static final int ASCII = 128;
+
+    private final int[] asciiColumn = new int[ASCII];
+    private final char[] otherChars;
+    private final int width;
+    private int[] transitions;
+    private int states = 1;
+    // rules whose literal ends in a state: outputRules[outputStart[state]] up to outputRules[outputStart[state + 1]]
+    private int[] outputStart;
+    private int[] outputRules;
+
+    Automaton(List<String> literals) {
+      // columns of the transition table: one per distinct character of the literals
+      Arrays.fill(asciiColumn, -1);
+      StringBuilder others = new StringBuilder();
+      int columns = 0;
+      for (String literal : literals) {
+        if (literal == null) {
+          continue;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+          char c = literal.charAt(i);
+          if (c < ASCII) {
+            if (asciiColumn[c] < 0) {
+              asciiColumn[c] = columns++;
+            }
+          } else if (others.indexOf(String.valueOf(c)) < 0) {
+            others.append(c);
+          }
+        }
+      }
+      otherChars = others.toString().toCharArray();
+      Arrays.sort(otherChars);
+      width = columns + otherChars.length;
+
+      // trie of the literals, -1 marks a missing transition
+      int capacity = 16;
+      transitions = new int[capacity * width];
+      Arrays.fill(transitions, -1);
+      int[] literalEnd = new int[literals.size()];
+      for (int rule = 0; rule < literals.size(); rule++) {
+        String literal = literals.get(rule);
+        int state = 0;
+        if (literal != null) {
+          for (int i = 0; i < literal.length(); i++) {
+            int index = state * width + column(literal.charAt(i));
+            if (transitions[index] < 0) {
+              if (states == capacity) {
+                capacity *= 2;
+                transitions = Arrays.copyOf(transitions, capacity * width);
+                Arrays.fill(transitions, states * width, capacity * width, -1);
+              }
+              transitions[index] = states++;
+            }
+            state = transitions[index];
+          }
+        }
+        literalEnd[rule] = state > 0 ? state : -1;
+      }
+      buildTransitions(literals.size(), literalEnd);
+    }
+
+    /**
+     * Completes the trie to a transition table along the failure links and collects the rules of each state, the own
+     * ones and the ones of the failure state. States are processed by increasing depth.
+     */
+    private void buildTransitions(int rules, int[] literalEnd) {
+      int[] failure = new int[states];
+      int[] queue = new int[states];
+      int head = 0;
+      int tail = 0;
+      for (int c = 0; c < width; c++) {
+        int target = transitions[c];
+        if (target < 0) {
+          transitions[c] = 0;
+        } else {
+          queue[tail++] = target;
+        }
+      }
+      while (head < tail) {
+        int state = queue[head++];
+        for (int c = 0; c < width; c++) {
+          int index = state * width + c;
+          int target = transitions[index];
+          if (target < 0) {
+            transitions[index] = transitions[failure[state] * width + c];
+          } else {
+            failure[target] = transitions[failure[state] * width + c];
+            queue[tail++] = target;
+          }
+        }
+      }
+
+      int[] ownCount = new int[states];
+      for (int rule = 0; rule < rules; rule++) {
+        if (literalEnd[rule] >= 0) {
+          ownCount[literalEnd[rule]]++;
+        }
+      }
+      int[] total = new int[states];
+      for (int i = 0; i < tail; i++) {
+        int state = queue[i];
+        total[state] = ownCount[state] + total[failure[state]];
+      }
+      outputStart = new int[states + 1];
+      for (int state = 0; state < states; state++) {
+        outputStart[state + 1] = outputStart[state] + total[state];
+      }
+      outputRules = new int[outputStart[states]];
+      int[] fill = Arrays.copyOf(outputStart, states);
+      for (int rule = 0; rule < rules; rule++) {
+        if (literalEnd[rule] >= 0) {
+          outputRules[fill[literalEnd[rule]]++] = rule;
+        }
+      }
+      for (int i = 0; i < tail; i++) {
+        int state = queue[i];
+        int from = outputStart[failure[state]];
+        int length = total[failure[state]];
+        System.arraycopy(outputRules, from, outputRules, fill[state], length);
+        fill[state] += length;
+      }
+    }
+
+    private int column(char c) {
+      if (c < ASCII) {
+        return asciiColumn[c];
+      }
+      int index = Arrays.binarySearch(otherChars, c);
+      return index < 0 ? -1 : width - otherChars.length + index;
+    }
+
+    /**
+     * Adds the rules whose literal is contained in the input and which are not stamped yet to candidates.
+     *
+     * @return new number of candidates
+     */
+    int find(CharSequence input, int stamp, int[] candidateStamp, int[] candidates, int count) {
+      if (states == 1) {
+        return count;
+      }
+      int result = count;
+      int state = 0;
+      for (int i = 0; i < input.length(); i++) {
+        int column = column(input.charAt(i));
+        state = column < 0 ? 0 : transitions[state * width + column];
+        for (int o = outputStart[state]; o < outputStart[state + 1]; o++) {
+          int rule = outputRules[o];
+          if (candidateStamp[rule] != stamp) {
+            candidateStamp[rule] = stamp;
+            candidates[result++] = rule;
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+}
@@ -0,0 +1,411 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.checks.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+
+/**
+ * Extracts a literal from a regular expression which is part of every match. The analysis is conservative: if a
+ * construct is not understood, it contributes no literal.
+ */
+final class RegexLiterals {
+
+  private static final int UNSUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.CANON_EQ;
+
+  private final String regex;
+  private int pos;
+
+  private RegexLiterals(String regex) {
+    this.regex = regex;
+  }
+
+  /**
+   * @param pattern compiled regular expression
+   * @return longest literal every match contains, or null if there is none
+   */
+  @CheckForNull
+  static String requiredLiteral(Pattern pattern) {
+    int flags = pattern.flags();
+    String regex = pattern.pattern();
+    if ((flags & Pattern.LITERAL) != 0) {
+      return regex.isEmpty() || (flags & UNSUPPORTED_FLAGS) != 0 ? null : regex;
+    }
+    if ((flags & UNSUPPORTED_FLAGS) != 0 || hasInlineFlags(regex)) {
+      return null;
+    }
+    List<String> runs = new ArrayList<>();
+    RegexLiterals parser = new RegexLiterals(regex);
+    if (!parser.sequence(runs) || parser.pos != regex.length()) {
+      return null;
+    }
+    String longest = null;
+    for (String run : runs) {
+      if (!run.isEmpty() && (longest == null || run.length() > longest.length())) {
+        longest = run;
+      }
+    }
+    return longest;
+  }
+
+  private static boolean hasInlineFlags(String regex) {
+    int i = regex.indexOf("(?");
+    while (i >= 0) {
+      if (i + 2 < regex.length() && "=!<>:".indexOf(regex.charAt(i + 2)) < 0 && !isEscaped(regex, i)) {
+        return true;
+      }
+      i = regex.indexOf("(?", i + 1);
+    }
+    return false;
+  }
+
+  private static boolean isEscaped(String regex, int index) {
+    int backslashes = 0;
+    for (int i = index - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+      backslashes++;
+    }
+    return backslashes % 2 != 0;
+  }
+
+  /**
+   * Parses a sequence up to the closing parenthesis of the enclosing group or the end of the expression. Adds the
+   * literal runs which are part of every match of the sequence to result.
+   *
+   * @return false if the expression could not be parsed
+   */
+  private boolean sequence(List<String> result) {
+    List<String> runs = new ArrayList<>();
+    StringBuilder run = new StringBuilder();
+    boolean alternation = false;
+
+    while (pos < regex.length()) {
+      char c = regex.charAt(pos);
+      if (c == ')') {
+        break;
+      }
+      if (c == '|') {
+        alternation = true;
+        pos++;
+        continue;
+      }
+
+      String literal = null;
+      List<String> groupRuns = null;
+      if (c == '\\') {
+        if (pos + 1 >= regex.length()) {
+          return false;
+        }
+        literal = escape();
+        if (literal == null) {
+          return false;
+        }
+      } else if (c == '[') {
+        if (!skipCharacterClass()) {
+          return false;
+        }
+      } else if (c == '(') {
+        groupRuns = new ArrayList<>();
+        if (!group(groupRuns)) {
+          return false;
+        }
+      } else if (c == '.' || c == '^' || c == '$') {
+        pos++;
+      } else {
+        int codePoint = regex.codePointAt(pos);
+        literal = new String(Character.toChars(codePoint));
+        pos += Character.charCount(codePoint);
+      }
+
+      int start = pos;
+      int min = quantifier();
+      if (min < 0) {
+        return false;
+      }
+      boolean quantified = pos != start;
+      if (literal != null && !literal.isEmpty()) {
+        if (quantified) {
+          // a quantifier applies to the last character of a quoted literal only
+          int last = literal.offsetByCodePoints(literal.length(), -1);
+          run.append(literal, 0, last);
+          if (min > 0) {
+            run.append(literal, last, literal.length());
+          }
+          flush(run, runs);
+        } else {
+          run.append(literal);
+        }
+      } else {
+        flush(run, runs);
+        if (groupRuns != null && min > 0) {
+          runs.addAll(groupRuns);
+        }
+      }
+    }
+    flush(run, runs);
+    if (!alternation) {
+      result.addAll(runs);
+    }
+    return true;
+  }
+
+  private static void flush(StringBuilder run, List<String> runs) {
+    if (run.length() > 0) {
+      runs.add(run.toString());
+      run.setLength(0);
+    }
+  }
+
+  private boolean group(List<String> result) {
+    pos++;
+    boolean lookaround = false;
+    if (regex.startsWith("?", pos)) {
+      if (regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+        pos += 2;
+      } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+        lookaround = true;
+        pos += 2;
+      } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+        lookaround = true;
+        pos += 3;
+      } else if (regex.startsWith("?<", pos)) {
+        int end = regex.indexOf('>', pos);
+        if (end < 0) {
+          return false;
+        }
+        pos = end + 1;
+      } else {
+        return false;
+      }
+    }
+    List<String> inner = new ArrayList<>();
+    if (!sequence(inner) || pos >= regex.length() || regex.charAt(pos) != ')') {
+      return false;
+    }
+    pos++;
+    if (!lookaround) {
+      result.addAll(inner);
+    }
+    return true;
+  }
+
+  /**
+   * Parses an escape sequence.
+   *
+   * @return the characters the escape sequence matches, an empty string if it matches no fixed text (a predefined
+   * character class, a boundary or a named back reference), or null if the escape sequence is not supported
+   */
+  @CheckForNull
+  private String escape() {
+    char e = regex.charAt(pos + 1);
+    pos += 2;
+    switch (e) {
+      case 'Q':
+        int end = regex.indexOf("\\E", pos);
+        String quoted = end < 0 ? regex.substring(pos) : regex.substring(pos, end);
+        pos = end < 0 ? regex.length() : end + 2;
+        return quoted;
+      case 't':
+        return "\t";
+      case 'n':
+        return "\n";
+      case 'r':
+        return "\r";
+      case 'f':
+        return "\f";
+      case 'a':
+        return "\u0007";
+      case 'e':
+        return "\u001B";
+      case '0':
+        return octal();
+      case 'x':
+        return hex();
+      case 'u':
+        return codePoint(hexDigits(4));
+      case 'c':
+        if (pos >= regex.length()) {
+          return null;
+        }
+        return String.valueOf((char) (regex.charAt(pos++) ^ 64));
+      case 'k':
+        int close = regex.indexOf('>', pos);
+        if (!regex.startsWith("<", pos) || close < 0) {
+          return null;
+        }
+        pos = close + 1;
+        return "";
+      case 'p':
+      case 'P':
+        skipProperty();
+        return "";
+      default:
+        if ("dDsSwWhHvVRXbBAGZz".indexOf(e) >= 0) {
+          return "";
+        }
+        if (Character.isLetterOrDigit(e) || Character.isSurrogate(e)) {
+          // back references and escapes of other versions of java.util.regex
+          return null;
+        }
+        return String.valueOf(e);
+    }
+  }
+
+  /**
+   * Parses the digits of an octal escape: \0n, \0nn or \0mnn with m less than 4.
+   */
+  @CheckForNull
+  private String octal() {
+    int value = 0;
+    int digits = 0;
+    while (digits < 3 && pos < regex.length()) {
+      int digit = Character.digit(regex.charAt(pos), 8);
+      if (digit < 0 || (digits == 2 && value > 037)) {
+        break;
+      }
+      value = value * 8 + digit;
+      digits++;
+      pos++;
+    }
+    return digits == 0 ? null : String.valueOf((char) value);
+  }
+
+  /**
+   * Parses the digits of a hexadecimal escape: \xhh or \x{h...h}.
+   */
+  @CheckForNull
+  private String hex() {
+    if (!regex.startsWith("{", pos)) {
+      return codePoint(hexDigits(2));
+    }
+    int end = regex.indexOf('}', pos);
+    if (end < 0) {
+      return null;
+    }
+    try {
+      int value = Integer.parseInt(regex.substring(pos + 1, end), 16);
+      pos = end + 1;
+      return codePoint(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private int hexDigits(int count) {
+    int value = 0;
+    for (int i = 0; i < count; i++) {
+      int digit = pos < regex.length() ? Character.digit(regex.charAt(pos), 16) : -1;
+      if (digit < 0) {
+        return -1;
+      }
+      value = value * 16 + digit;
+      pos++;
+    }
+    return value;
+  }
+
+  @CheckForNull
+  private static String codePoint(int value) {
+    return Character.isValidCodePoint(value) ? new String(Character.toChars(value)) : null;
+  }
+
+  private void skipProperty() {
+    if (pos < regex.length() && regex.charAt(pos) == '{') {
+      int end = regex.indexOf('}', pos);
+      pos = end < 0 ? regex.length() : end + 1;
+    } else if (pos < regex.length()) {
+      pos++;
+    }
+  }
+
+  private boolean skipCharacterClass() {
+    int depth = 0;
+    pos++;
+    if (pos < regex.length() && regex.charAt(pos) == '^') {
+      pos++;
+    }
+    if (pos < regex.length() && regex.charAt(pos) == ']') {
+      pos++;
+    }
+    while (pos < regex.length()) {
+      char c = regex.charAt(pos);
+      if (regex.startsWith("\\Q", pos)) {
+        int end = regex.indexOf("\\E", pos + 2);
+        pos = end < 0 ? regex.length() : end + 2;
+        continue;
+      }
+      if (c == '\\') {
+        pos += 2;
+        continue;
+      }
+      pos++;
+      if (c == '[') {
+        depth++;
+      } else if (c == ']') {
+        if (depth == 0) {
+          return true;
+        }
+        depth--;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Parses an optional quantifier.
+   *
+   * @return minimum number of repetitions (1 without quantifier), -1 for a malformed quantifier
+   */
+  private int quantifier() {
+    if (pos >= regex.length()) {
+      return 1;
+    }
+    int min;
+    char c = regex.charAt(pos);
+    if (c == '?' || c == '*') {
+      min = 0;
+      pos++;
+    } else if (c == '+') {
+      min = 1;
+      pos++;
+    } else if (c == '{') {
+      int end = regex.indexOf('}', pos);
+      if (end < 0) {
+        return -1;
+      }
+      String bounds = regex.substring(pos + 1, end);
+      int comma = bounds.indexOf(',');
+      try {
+        min = Integer.parseInt(comma < 0 ? bounds : bounds.substring(0, comma));
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+      pos = end + 1;
+    } else {
+      return 1;
+    }
+    if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+      pos++;
+    }
+    return min;
+  }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.checks.utils;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.xpath.api.AstNodeXPathQuery;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Evaluates the XPath queries of several checks with one traversal of the AST.
+ *
+ * Most queries start with a node type step ('//functionDefinition[...]...'). Such a query selects the same nodes as
+ * the relative query ('functionDefinition[...]...') evaluated on every parent of a node of this type, predicates
+ * included, because '//' is the child axis of every node. One traversal per file collects these parents for the
+ * node types of all rules; each rule then evaluates its relative query only on them and merges the results in
+ * document order, as the query on the whole AST returns them. Queries of other forms, and
+ * queries whose node type is the root of the AST, are evaluated on the whole AST. Checks share one batch per scan,
+ * see {@link #shared(SquidAstVisitorContext)}.
+ */
+public final class XPathQueryBatch {
+
+  private static final Pattern LEADING_NODE_TYPE_STEP = Pattern.compile("//([A-Za-z_][A-Za-z0-9_.\\-]*)([\\[/].*)?",
+    Pattern.DOTALL);
+
+  private final List<Query> queries = new ArrayList<>();
+  private final Map<String, Parents> parentsByName = new HashMap<>();
+  private AstNode lastRoot;
+
+  private static final class Query {
+
+    private final AstNodeXPathQuery<Object> query;
+    @Nullable
+    private final AstNodeXPathQuery<Object> relativeQuery;
+    @Nullable
+    private final Parents parents;
+
+    Query(AstNodeXPathQuery<Object> query, @Nullable AstNodeXPathQuery<Object> relativeQuery,
+      @Nullable Parents parents) {
+      this.query = query;
+      this.relativeQuery = relativeQuery;
+      this.parents = parents;
+    }
+  }
+
+  /**
+   * Parents of the nodes of one type in the current file, in order of their first visit.
+   */
+  private static final class Parents {
+
+    private final Set<AstNode> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<AstNode> ordered = new ArrayList<>();
+    private boolean root;
+
+    void clear() {
+      nodes.clear();
+      ordered.clear();
+      root = false;
+    }
+
+    void add(AstNode parent) {
+      if (nodes.add(parent)) {
+        ordered.add(parent);
+      }
+    }
+  }
+
+  /**
+   * Returns the batch shared by all checks in the scan of the context. Outside of a CxxAstScanner the check gets a
+   * batch of its own.
+   *
+   * @param context context of the check, can be null
+   * @return batch to register the queries at
+   */
+  public static XPathQueryBatch shared(@Nullable SquidAstVisitorContext<?> context) {
+    if (context instanceof CxxSquidAstVisitorContext) {
+      return ((CxxSquidAstVisitorContext<?>) context).getScanData(XPathQueryBatch.class, XPathQueryBatch::new);
+    }
+    return new XPathQueryBatch();
+  }
+
+  /**
+   * Compiles and registers a query.
+   *
+   * @param xpath XPath query
+   * @return id of the query
+   * @throws RuntimeException if the query is invalid
+   */
+  public int add(String xpath) {
+    AstNodeXPathQuery<Object> query = AstNodeXPathQuery.create(xpath);
+    AstNodeXPathQuery<Object> relativeQuery = null;
+    Parents parents = null;
+    String relative = relativeQuery(xpath);
+    if (relative != null) {
+      relativeQuery = AstNodeXPathQuery.create(relative);
+      parents = parentsByName.computeIfAbsent(leadingNodeType(xpath), k -> new Parents());
+      lastRoot = null;
+    }
+    queries.add(new Query(query, relativeQuery, parents));
+    return queries.size() - 1;
+  }
+
+  /**
+   * Returns the result of a query on an AST, in the same form as {@link AstNodeXPathQuery#selectNodes(AstNode)}. The
+   * nodes of the AST are collected for all queries at once; they are kept for the next call with the same AST until
+   * {@link #clear()} is called.
+   *
+   * @param id id of the query
+   * @param root root of the AST
+   * @return selected objects
+   */
+  public List<Object> selectNodes(int id, AstNode root) {
+    Query query = queries.get(id);
+    if (query.parents == null || query.relativeQuery == null) {
+      return query.query.selectNodes(root);
+    }
+    if (root != lastRoot) {
+      collect(root);
+      lastRoot = root;
+    }
+    if (query.parents.root) {
+      return query.query.selectNodes(root);
+    }
+
+    Set<Object> result = Collections.newSetFromMap(new IdentityHashMap<>());
+    List<Object> ordered = new ArrayList<>();
+    boolean nodesOnly = true;
+    for (AstNode parent : query.parents.ordered) {
+      for (Object selected : query.relativeQuery.selectNodes(parent)) {
+        if (result.add(selected)) {
+          ordered.add(selected);
+          nodesOnly &= selected instanceof AstNode;
+        }
+      }
+    }
+    // the results of nested parents interleave, the parents are in document order but their results are not
+    if (nodesOnly && query.parents.ordered.size() > 1) {
+      ordered.sort((a, b) -> compareDocumentOrder((AstNode) a, (AstNode) b));
+    }
+    return ordered;
+  }
+
+  /**
+   * Releases the nodes collected for the last AST, e.g. when the checks leave a file.
+   */
+  public void clear() {
+    for (Parents parents : parentsByName.values()) {
+      parents.clear();
+    }
+    lastRoot = null;
+  }
+
+  private void collect(AstNode root) {
+    clear();
+    Parents rootParents = parentsByName.get(root.getName());
+    if (rootParents != null) {
+      rootParents.root = true;
+    }
+
+    Deque<AstNode> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      AstNode node = stack.pop();
+      List<AstNode> children = node.getChildren();
+      for (int i = children.size() - 1; i >= 0; i--) {
+        AstNode child = children.get(i);
+        Parents parents = parentsByName.get(child.getName());
+        if (parents != null) {
+          parents.add(node);
+        }
+        stack.push(child);
+      }
+    }
+  }
+
+  /**
+   * Compares two nodes of an AST by their position in a pre-order traversal: an ancestor precedes its descendants,
+   * siblings are in the order of their parent's children.
+   */
+  static int compareDocumentOrder(AstNode a, AstNode b) {
+    if (a == b) {
+      return 0;
+    }
+    int depthA = depth(a);
+    int depthB = depth(b);
+    AstNode x = a;
+    AstNode y = b;
+    for (; depthA > depthB; depthA--) {
+      x = x.getParent();
+    }
+    for (; depthB > depthA; depthB--) {
+      y = y.getParent();
+    }
+    if (x == y) {
+      return a == x ? -1 : 1;
+    }
+    while (x.getParent() != y.getParent()) {
+      x = x.getParent();
+      y = y.getParent();
+    }
+    AstNode parent = x.getParent();
+    if (parent == null) {
+      return 0;
+    }
+    return Integer.compare(indexOfChild(parent, x), indexOfChild(parent, y));
+  }
+
+  private static int depth(AstNode node) {
+    int depth = 0;
+    for (AstNode parent = node.getParent(); parent != null; parent = parent.getParent()) {
+      depth++;
+    }
+    return depth;
+  }
+
+  private static int indexOfChild(AstNode parent, AstNode child) {
+    List<AstNode> children = parent.getChildren();
+    for (int i = 0; i < children.size(); i++) {
+      if (children.get(i) == child) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the query relative to the parents of its leading node type step, or null if the query does not start
+   * with such a step or is not a plain location path (unions, operators or functions on the path).
+   */
+  @CheckForNull
+  static String relativeQuery(String xpath) {
+    Matcher matcher = LEADING_NODE_TYPE_STEP.matcher(xpath.trim());
+    if (!matcher.matches()) {
+      return null;
+    }
+    String rest = matcher.group(2) == null ? "" : matcher.group(2);
+    int depth = 0;
+    for (int i = 0; i < rest.length(); i++) {
+      char c = rest.charAt(i);
+      if (c == '\'' || c == '"') {
+        int end = rest.indexOf(c, i + 1);
+        if (end < 0 || depth == 0) {
+          return null;
+        }
+        i = end;
+      } else if (c == '[' || c == '(') {
+        depth++;
+      } else if (c == ']' || c == ')') {
+        if (--depth < 0) {
+          return null;
+        }
+      } else if (depth == 0 && !isPathCharacter(c)) {
+        return null;
+      }
+    }
+    return depth == 0 ? matcher.group(1) + rest : null;
+  }
+
+  private static String leadingNodeType(String xpath) {
+    Matcher matcher = LEADING_NODE_TYPE_STEP.matcher(xpath.trim());
+    return matcher.matches() ? matcher.group(1) : "";
+  }
+
+  private static boolean isPathCharacter(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == '/' || c == '@' || c == '*'
+      || c == ':';
+  }
+
+}
@@ -19,14 +19,23 @@
  */
 package org.sonar.cxx.checks;
 
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-
+import java.util.ArrayList;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.cxx.CxxAstScanner;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.checks.CheckMessagesVerifierRule;
+import org.sonar.squidbridge.checks.SquidCheck;
+import org.sonar.squidbridge.recognizer.CodeRecognizer;
 
 public class CommentedCodeCheckTest {
 
@@ -44,4 +53,70 @@ public class CommentedCodeCheckTest {
       .next().atLine(15);
   }
 
+  @Test
+  @SuppressWarnings("squid:S2699") // ... verify contains the assertion
+  public void lineAfterProse() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/checks/commentedCodeHeader.cc",
+      ".");
+    SourceFile file = CxxAstScanner.scanSingleFile(tester.cxxFile, tester.sensorContext,
+      CxxFileTesterHelper.mockCxxLanguage(), new CommentedCodeCheck());
+
+    checkMessagesVerifier.verify(file.getCheckMessages())
+      .next().atLine(7).withMessage("Remove this commented out code.")
+      .noMore();
+  }
+
+  @Test
+  public void linesWithoutCodeCharactersAreNotRecognized() throws UnsupportedEncodingException, IOException {
+    CodeRecognizer recognizer = new CodeRecognizer(CommentedCodeCheck.THRESHOLD,
+      new CommentedCodeCheck.CxxRecognizer());
+    int rejected = 0;
+    for (String line : commentLines(new File("src/test/resources/checks"))) {
+      if (!CommentedCodeCheck.mayBeCode(line, 0, line.length())) {
+        assertThat(recognizer.recognition(line)).as(line).isZero();
+        rejected++;
+      }
+    }
+    assertThat(rejected).isPositive();
+  }
+
+  @Test
+  public void preprocessorKeywordsAreCodeCharacters() {
+    String line = "#pragma once";
+    assertThat(CommentedCodeCheck.mayBeCode(line, 0, line.length())).isTrue();
+  }
+
+  private static List<String> commentLines(File dir) throws UnsupportedEncodingException, IOException {
+    List<String> lines = new ArrayList<>();
+    File[] files = dir.listFiles((d, name) -> name.endsWith(".cc") || name.endsWith(".h"));
+    assertThat(files).isNotEmpty();
+    for (File file : files) {
+      CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester(
+        "src/test/resources/checks/" + file.getName(), ".");
+      CommentCollector collector = new CommentCollector();
+      CxxAstScanner.scanSingleFile(tester.cxxFile, tester.sensorContext, CxxFileTesterHelper.mockCxxLanguage(),
+        collector);
+      lines.addAll(collector.lines);
+    }
+    return lines;
+  }
+
+  private static class CommentCollector extends SquidCheck<Grammar> implements AstAndTokenVisitor {
+
+    private final List<String> lines = new ArrayList<>();
+
+    @Override
+    public void visitToken(Token token) {
+      for (Trivia trivia : token.getTrivia()) {
+        if (trivia.isComment()) {
+          String contents = getContext().getCommentAnalyser().getContents(trivia.getToken().getOriginalValue());
+          for (String line : contents.split("\\r\\n|\\r|\\n", -1)) {
+            lines.add(line);
+          }
+        }
+      }
+    }
+
+  }
+
 }
@@ -0,0 +1,104 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.checks;
+
+import com.sonar.sslr.api.Grammar;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.checks.naming.FunctionNameCheck;
+import org.sonar.cxx.checks.naming.MethodNameCheck;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.indexer.QueryByType;
+
+/**
+ * Stress test of the thread-safety contract: scans with their own scanner and check instances run in parallel report
+ * the same measures and issues as a sequential scan.
+ */
+public class ConcurrentScanTest {
+
+  private static final int THREADS = 4;
+  private static final int SCANS = 2 * THREADS;
+
+  @Test
+  public void parallel_scans_report_the_same_results() throws Exception {
+    List<File> files = new ArrayList<>(Arrays.asList(new File("src/test/resources/checks").listFiles(File::isFile)));
+    Collections.sort(files);
+    String expected = scan(files);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < SCANS; i++) {
+        results.add(executor.submit(() -> scan(files)));
+      }
+      for (Future<String> result : results) {
+        assertThat(result.get()).isEqualTo(expected);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static String scan(List<File> files) {
+    HardcodedIpCheck hardcodedIp = new HardcodedIpCheck();
+    LineRegularExpressionCheck lineRegularExpression = new LineRegularExpressionCheck();
+    lineRegularExpression.regularExpression = "stdio|#include";
+    CommentRegularExpressionCheck commentRegularExpression = new CommentRegularExpressionCheck();
+    commentRegularExpression.regularExpression = "(?i).*TODO.*";
+    AstScanner<Grammar> scanner = CxxAstScanner.create(CxxFileTesterHelper.mockCxxLanguage(), new CxxConfiguration(),
+      hardcodedIp, lineRegularExpression, commentRegularExpression, new MissingIncludeFileCheck(),
+      new CommentedCodeCheck(), new MagicNumberCheck(), new FunctionNameCheck(), new MethodNameCheck(),
+      new UndocumentedApiCheck(), new NestedStatementsCheck(), new StringLiteralDuplicatedCheck(),
+      new FunctionCognitiveComplexityCheck(), new TooManyStatementsPerLineCheck());
+    scanner.scanFiles(files);
+
+    List<String> lines = new ArrayList<>();
+    for (SourceCode file : scanner.getIndex().search(new QueryByType(SourceFile.class))) {
+      StringBuilder measures = new StringBuilder(file.getKey());
+      for (CxxMetric metric : CxxMetric.values()) {
+        measures.append(' ').append(file.getDouble(metric));
+      }
+      lines.add(measures.toString());
+      for (CheckMessage message : file.getCheckMessages()) {
+        lines.add(file.getKey() + ":" + message.getLine() + ":" + message.getCheck().getClass().getSimpleName() + ":"
+          + message.getText(Locale.ENGLISH));
+      }
+    }
+    Collections.sort(lines);
+    return String.join("\n", lines);
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.checks.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.sonar.cxx.api.CxxPunctuator;
+import org.sonar.cxx.checks.CxxFileTesterHelper;
+import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.cxx.parser.CxxParser;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
+import org.sonar.squidbridge.api.SourceProject;
+
+public class AstNodeIndexTest {
+
+  private static final AstNodeType[][] QUERIES = {
+    {CxxGrammarImpl.statement},
+    {CxxGrammarImpl.selectionStatement, CxxGrammarImpl.iterationStatement, CxxGrammarImpl.tryBlock},
+    {CxxPunctuator.CURLBR_LEFT, CxxGrammarImpl.statement},
+    {GenericTokenType.IDENTIFIER},
+    {CxxGrammarImpl.tryBlock}
+  };
+
+  @Test
+  public void same_results_as_ast_node() {
+    Parser<Grammar> p = CxxParser.create(CxxFileTesterHelper.mockCxxLanguage());
+    AstNode root = p.parse(new File("src/test/resources/checks/NestedStatementsCheck.cc"));
+    AstNodeIndex index = AstNodeIndex.of(null, root);
+    verify(root, index);
+  }
+
+  @Test
+  public void index_is_reused_for_same_tree() {
+    Parser<Grammar> p = CxxParser.create(CxxFileTesterHelper.mockCxxLanguage());
+    AstNode root = p.parse("void f() { if (a) { b(); } }");
+    AstNode statement = root.getFirstDescendant(CxxGrammarImpl.statement);
+    CxxSquidAstVisitorContext<Grammar> context = new CxxSquidAstVisitorContext<>(new SourceProject(""),
+      StandardCharsets.UTF_8);
+    AstNodeIndex index = AstNodeIndex.of(context, root);
+    assertThat(AstNodeIndex.of(context, statement)).isSameAs(index);
+    assertThat(index.getNodes(CxxGrammarImpl.selectionStatement)).hasSize(1);
+
+    // dropped after the file, not shared without context
+    context.clearFileData();
+    assertThat(AstNodeIndex.of(context, root)).isNotSameAs(index);
+    assertThat(AstNodeIndex.of(null, root)).isNotSameAs(AstNodeIndex.of(null, root));
+
+    // another tree gets an index of its own
+    AstNode other = p.parse("void g() {}");
+    assertThat(AstNodeIndex.of(context, other).getNodes(CxxGrammarImpl.selectionStatement)).isEmpty();
+  }
+
+  private static void verify(AstNode node, AstNodeIndex index) {
+    for (AstNodeType[] query : QUERIES) {
+      assertThat(index.getDescendants(node, query)).containsExactlyElementsOf(node.getDescendants(query));
+      assertThat(index.getFirstDescendant(node, query)).isSameAs(node.getFirstDescendant(query));
+      assertThat(index.hasDescendant(node, query)).isEqualTo(node.hasDescendant(query));
+    }
+    for (AstNode child : node.getChildren()) {
+      verify(child, index);
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.checks.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class MultiPatternMatcherTest {
+
+  @Test
+  public void required_literals() {
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("TODO"))).isEqualTo("TODO");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("\\bmalloc\\s*\\("))).isEqualTo("malloc");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("FIX(ME)?"))).isEqualTo("FIX");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("(?:foo|bar)baz"))).isEqualTo("baz");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("\\Qa.b\\E+c"))).isEqualTo("a.b");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("ab*c"))).isEqualTo("a");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("a.b", Pattern.LITERAL))).isEqualTo("a.b");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("a|b"))).isNull();
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("(?i)todo"))).isNull();
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("todo", Pattern.CASE_INSENSITIVE))).isNull();
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("[a-z]*"))).isNull();
+  }
+
+  @Test
+  public void required_literals_of_escapes() {
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("\\x41BC"))).isEqualTo("ABC");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("\\x{41}BC"))).isEqualTo("ABC");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("\\u0041BC"))).isEqualTo("ABC");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("\\0101BC"))).isEqualTo("ABC");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("\\0401"))).isEqualTo(" 1");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("\\cAB"))).isEqualTo("\u0001B");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("a\\tb"))).isEqualTo("a\tb");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("(?<n>ab)\\k<n>cd"))).isEqualTo("ab");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("[\\Q]\\E]xyz"))).isEqualTo("xyz");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("ab\\x41*"))).isEqualTo("ab");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("\\p{Alpha}+ok"))).isEqualTo("ok");
+    assertThat(RegexLiterals.requiredLiteral(Pattern.compile("(a)bc\\1"))).isNull();
+  }
+
+  @Test
+  public void same_results_as_regular_expressions_with_escapes() {
+    String[] regexs = {"\\x41BC", "\\u0041BC", "\\0101BC", "\\cABC", "(?<n>[AB])\\k<n>C", "\\x{1F600}+x"};
+    String[] inputs = {"ABC", "BC", "xABCx", "\u0001BC", "AAC", "BBC", "ABC", "\uD83D\uDE00x", "\uD83Dx"};
+
+    MultiPatternMatcher matcher = new MultiPatternMatcher();
+    Pattern[] patterns = new Pattern[regexs.length];
+    for (int i = 0; i < regexs.length; i++) {
+      patterns[i] = Pattern.compile(regexs[i]);
+      matcher.add(patterns[i], false);
+    }
+    for (String input : inputs) {
+      for (int i = 0; i < regexs.length; i++) {
+        assertThat(matcher.matches(i, input)).as(regexs[i] + " on " + input)
+          .isEqualTo(patterns[i].matcher(input).find());
+      }
+    }
+  }
+
+  @Test
+  public void matched_text() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher();
+    int rule = matcher.add(Pattern.compile("\\d+\\.\\d+"), false);
+    assertThat(matcher.matchedText(rule, "ip 10.20 here")).isEqualTo("10.20");
+    assertThat(matcher.matchedText(rule, "none")).isNull();
+  }
+
+  @Test
+  public void same_results_as_regular_expressions() {
+    String[] regexs = {"TODO", "std::(cout|cerr)", "FIX(ME)?", "a|b", "(?i)todo", "[0-9]+", "\\.\\.", "^#"};
+    String[] inputs = {"", "// TODO fix", "std::cout << x;", "std::string", "FIXME", "ab", "x = 1;", "a..b", "#if",
+      "todo"};
+
+    MultiPatternMatcher matcher = new MultiPatternMatcher();
+    Pattern[] patterns = new Pattern[regexs.length];
+    for (int i = 0; i < regexs.length; i++) {
+      patterns[i] = Pattern.compile(regexs[i]);
+      assertThat(matcher.add(patterns[i], false)).isEqualTo(i);
+    }
+    for (String input : inputs) {
+      for (int i = 0; i < regexs.length; i++) {
+        assertThat(matcher.matches(i, input)).as(regexs[i] + " on " + input)
+          .isEqualTo(patterns[i].matcher(input).find());
+      }
+    }
+  }
+
+  @Test
+  public void full_match() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher();
+    int rule = matcher.add(Pattern.compile("//.*TODO.*", Pattern.DOTALL), true);
+    assertThat(matcher.matches(rule, "// TODO")).isTrue();
+    assertThat(matcher.matches(rule, "/* TODO */")).isFalse();
+  }
+
+  @Test
+  public void runaway_rule_is_aborted() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher();
+    int runaway = matcher.add(Pattern.compile("(.*a){20}b"), false, 100);
+    int simple = matcher.add(Pattern.compile("a!"), false, 100);
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 60; i++) {
+      input.append('a');
+    }
+    input.append("!b");
+
+    assertThat(matcher.matches(runaway, input)).isFalse();
+    assertThat(matcher.isAborted(runaway)).isTrue();
+    assertThat(matcher.matches(simple, input)).isTrue();
+    assertThat(matcher.isAborted(simple)).isFalse();
+    // skipped for the rest of the file
+    assertThat(matcher.matches(runaway, "aab")).isFalse();
+  }
+
+  @Test
+  public void not_shared_without_cxx_context() {
+    assertThat(MultiPatternMatcher.shared(null, MultiPatternMatcher.Kind.LINE))
+      .isNotSameAs(MultiPatternMatcher.shared(null, MultiPatternMatcher.Kind.LINE));
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.checks.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.xpath.api.AstNodeXPathQuery;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.sonar.cxx.checks.CxxFileTesterHelper;
+import org.sonar.cxx.parser.CxxParser;
+
+public class XPathQueryBatchTest {
+
+  private static final String[] QUERIES = {
+    "//declaration",
+    "//statement[2]",
+    "//declaration[last()]",
+    "//compoundStatement//statement",
+    "//selectionStatement/condition",
+    "//functionDefinition[count(.//statement) > 2]",
+    "//statement/..",
+    "//statement/*[1]",
+    "//IDENTIFIER",
+    "//translationUnit",
+    "count(//statement) > 3",
+    "//jumpStatement | //iterationStatement"
+  };
+
+  @Test
+  public void relative_queries() {
+    assertThat(XPathQueryBatch.relativeQuery("//declaration")).isEqualTo("declaration");
+    assertThat(XPathQueryBatch.relativeQuery("//statement[2]/..")).isEqualTo("statement[2]/..");
+    assertThat(XPathQueryBatch.relativeQuery("//IDENTIFIER[@tokenValue = 'a b']")).isEqualTo(
+      "IDENTIFIER[@tokenValue = 'a b']");
+    assertThat(XPathQueryBatch.relativeQuery("//*[@tokenValue='x']")).isNull();
+    assertThat(XPathQueryBatch.relativeQuery("//node()")).isNull();
+    assertThat(XPathQueryBatch.relativeQuery("//a | //b")).isNull();
+    assertThat(XPathQueryBatch.relativeQuery("count(//a) > 1")).isNull();
+    assertThat(XPathQueryBatch.relativeQuery("/translationUnit//a")).isNull();
+    assertThat(XPathQueryBatch.relativeQuery("//a[1")).isNull();
+  }
+
+  @Test
+  public void same_results_as_single_queries() {
+    Parser<Grammar> p = CxxParser.create(CxxFileTesterHelper.mockCxxLanguage());
+    AstNode root = p.parse(new File("src/test/resources/checks/NestedStatementsCheck.cc"));
+
+    XPathQueryBatch batch = XPathQueryBatch.shared(null);
+    int[] ids = new int[QUERIES.length];
+    for (int i = 0; i < QUERIES.length; i++) {
+      ids[i] = batch.add(QUERIES[i]);
+    }
+    for (int i = 0; i < QUERIES.length; i++) {
+      List<Object> expected = AstNodeXPathQuery.create(QUERIES[i]).selectNodes(root);
+      List<Object> actual = batch.selectNodes(ids[i], root);
+      assertThat(actual).as(QUERIES[i]).containsExactlyElementsOf(expected);
+    }
+  }
+
+  @Test
+  public void document_order() {
+    Parser<Grammar> p = CxxParser.create(CxxFileTesterHelper.mockCxxLanguage());
+    AstNode root = p.parse(new File("src/test/resources/checks/NestedStatementsCheck.cc"));
+    List<AstNode> preOrder = new ArrayList<>();
+    preOrder(root, preOrder);
+
+    for (int i = 1; i < preOrder.size(); i++) {
+      assertThat(XPathQueryBatch.compareDocumentOrder(preOrder.get(i - 1), preOrder.get(i))).isNegative();
+      assertThat(XPathQueryBatch.compareDocumentOrder(preOrder.get(i), preOrder.get(i - 1))).isPositive();
+    }
+    AstNode last = preOrder.get(preOrder.size() - 1);
+    assertThat(XPathQueryBatch.compareDocumentOrder(root, last)).isNegative();
+    assertThat(XPathQueryBatch.compareDocumentOrder(last, root)).isPositive();
+    assertThat(XPathQueryBatch.compareDocumentOrder(last, last)).isZero();
+  }
+
+  private static void preOrder(AstNode node, List<AstNode> nodes) {
+    nodes.add(node);
+    for (AstNode child : node.getChildren()) {
+      preOrder(child, nodes);
+    }
+  }
+
+  @Test
+  public void clear() {
+    Parser<Grammar> p = CxxParser.create(CxxFileTesterHelper.mockCxxLanguage());
+    AstNode root = p.parse(new File("src/test/resources/checks/NestedStatementsCheck.cc"));
+
+    XPathQueryBatch batch = XPathQueryBatch.shared(null);
+    int id = batch.add("//statement");
+    List<Object> selected = batch.selectNodes(id, root);
+    assertThat(selected).isNotEmpty();
+    batch.clear();
+    assertThat(batch.selectNodes(id, root)).containsExactlyElementsOf(selected);
+  }
+
+}
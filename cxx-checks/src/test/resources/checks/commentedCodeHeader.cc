@@ -0,0 +1,16 @@
+/*
+ * Licensed to the project under one or more agreements
+ * you may not use this file except in compliance with the License
+ *
+ * Copyright 2018 - all rights reserved
+ *
+ * counter = counter + 1;
+ */
+
+// prose without any code characters, #if but not the start of a directive: a || b
+// if a and b are set then return
+
+int main()
+{
+  return 0;
+}
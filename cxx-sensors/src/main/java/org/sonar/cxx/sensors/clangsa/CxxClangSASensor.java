@@ -31,6 +31,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummary;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 
 /**
@@ -49,7 +50,17 @@ public class CxxClangSASensor extends CxxReportSensor {
    * @param language defines settings C or C++
    */
   public CxxClangSASensor(CxxLanguage language) {
-    super(language);
+    this(new CxxPerformanceSummary(), language);
+  }
+
+  /**
+   * CxxClangSASensor for Clang Static Analyzer Sensor
+   *
+   * @param summary performance summary of the analysis
+   * @param language defines settings C or C++
+   */
+  public CxxClangSASensor(CxxPerformanceSummary summary, CxxLanguage language) {
+    super(summary, language);
   }
 
   @Override
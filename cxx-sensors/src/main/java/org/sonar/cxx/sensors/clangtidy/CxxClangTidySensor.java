@@ -29,6 +29,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummary;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 
 /**
@@ -48,7 +49,17 @@ public class CxxClangTidySensor extends CxxReportSensor {
    * @param language defines settings C or C++
    */
   public CxxClangTidySensor(CxxLanguage language) {
-    super(language);
+    this(new CxxPerformanceSummary(), language);
+  }
+
+  /**
+   * CxxClangTidySensor for clang-tidy Sensor
+   *
+   * @param summary performance summary of the analysis
+   * @param language defines settings C or C++
+   */
+  public CxxClangTidySensor(CxxPerformanceSummary summary, CxxLanguage language) {
+    super(summary, language);
   }
 
   @Override
@@ -30,6 +30,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummary;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 
 /**
@@ -57,7 +58,17 @@ public class CxxCompilerSensor extends CxxReportSensor {
    * @param language defines settings C or C++
    */
   public CxxCompilerSensor(CxxLanguage language) {
-    super(language);
+    this(new CxxPerformanceSummary(), language);
+  }
+
+  /**
+   * CxxCompilerSensor for Visual Studio C++ Compiler Sensor
+   *
+   * @param summary performance summary of the analysis
+   * @param language defines settings C or C++
+   */
+  public CxxCompilerSensor(CxxPerformanceSummary summary, CxxLanguage language) {
+    super(summary, language);
 
     addCompilerParser(new CxxCompilerVcParser());
     addCompilerParser(new CxxCompilerGccParser());
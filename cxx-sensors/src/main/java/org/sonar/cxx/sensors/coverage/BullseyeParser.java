@@ -40,9 +40,6 @@ import org.sonar.cxx.sensors.utils.StaxParser;
 public class BullseyeParser extends CxxCoverageParser {
 
   private static final Logger LOG = Loggers.get(BullseyeParser.class);
-  private static volatile String prevLine;
-  private static int totalconditions;
-  private static int totalcoveredconditions;
 
   public BullseyeParser() {
     // no operation but necessary for list of coverage parsers 
@@ -55,6 +52,7 @@ public class BullseyeParser extends CxxCoverageParser {
   public void processReport(final SensorContext context, File report, final Map<String, CoverageMeasures> coverageData)
     throws XMLStreamException {
     LOG.debug("Parsing 'Bullseye' format");
+    final ProbeState state = new ProbeState();
     StaxParser topLevelparser = new StaxParser(new StaxParser.XmlStreamHandler() {
       /**
        * {@inheritDoc}
@@ -62,7 +60,8 @@ public class BullseyeParser extends CxxCoverageParser {
       @Override
       public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
         rootCursor.advance();
-        collectCoverageLeafNodes(rootCursor.getAttrValue("dir"), rootCursor.childElementCursor("src"), coverageData);
+        collectCoverageLeafNodes(rootCursor.getAttrValue("dir"), rootCursor.childElementCursor("src"), coverageData,
+          state);
       }
     });
 
@@ -73,7 +72,7 @@ public class BullseyeParser extends CxxCoverageParser {
       @Override
       public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
         rootCursor.advance();
-        collectCoverage2(rootCursor.getAttrValue("dir"), rootCursor.childElementCursor("folder"), coverageData);
+        collectCoverage2(rootCursor.getAttrValue("dir"), rootCursor.childElementCursor("folder"), coverageData, state);
       }
     });
 
@@ -82,31 +81,31 @@ public class BullseyeParser extends CxxCoverageParser {
   }
 
   private static void collectCoverageLeafNodes(String refPath, SMInputCursor folder,
-    final Map<String, CoverageMeasures> coverageData)
+    final Map<String, CoverageMeasures> coverageData, ProbeState state)
     throws XMLStreamException {
 
     String correctPath = ensureRefPathIsCorrect(refPath);
 
     while (folder.getNext() != null) {
       File fileName = new File(correctPath, folder.getAttrValue("name"));
-      recTreeTopWalk(fileName, folder, coverageData);
+      recTreeTopWalk(fileName, folder, coverageData, state);
     }
   }
 
   private static void recTreeTopWalk(File fileName, SMInputCursor folder,
-    final Map<String, CoverageMeasures> coverageData)
+    final Map<String, CoverageMeasures> coverageData, ProbeState state)
     throws XMLStreamException {
     SMInputCursor child = folder.childElementCursor();
     while (child.getNext() != null) {
       CoverageMeasures fileMeasuresBuilderIn = CoverageMeasures.create();
 
-      funcWalk(child, fileMeasuresBuilderIn);
+      funcWalk(child, fileMeasuresBuilderIn, state);
       coverageData.put(fileName.getPath(), fileMeasuresBuilderIn);
     }
   }
 
   private static void collectCoverage2(String refPath, SMInputCursor folder,
-    final Map<String, CoverageMeasures> coverageData)
+    final Map<String, CoverageMeasures> coverageData, ProbeState state)
     throws XMLStreamException {
 
     String correctPath = ensureRefPathIsCorrect(refPath);
@@ -115,39 +114,42 @@ public class BullseyeParser extends CxxCoverageParser {
     while (folder.getNext() != null) {
       String folderName = folder.getAttrValue("name");
       path.add(folderName);
-      recTreeWalk(correctPath, folder, path, coverageData);
+      recTreeWalk(correctPath, folder, path, coverageData, state);
       path.removeLast();
     }
   }
 
-  private static void probWalk(SMInputCursor prob, CoverageMeasures fileMeasuresBuilderIn) throws XMLStreamException {
+  private static void probWalk(SMInputCursor prob, CoverageMeasures fileMeasuresBuilderIn, ProbeState state)
+    throws XMLStreamException {
     String line = prob.getAttrValue("line");
     String kind = prob.getAttrValue("kind");
     String event = prob.getAttrValue("event");
-    if (!line.equals(prevLine)) {
-      saveConditions(fileMeasuresBuilderIn);
+    if (!line.equals(state.prevLine)) {
+      saveConditions(fileMeasuresBuilderIn, state);
     }
-    updateMeasures(kind, event, line, fileMeasuresBuilderIn);
-    prevLine = line;
+    updateMeasures(kind, event, line, fileMeasuresBuilderIn, state);
+    state.prevLine = line;
   }
 
-  private static void funcWalk(SMInputCursor func, CoverageMeasures fileMeasuresBuilderIn) throws XMLStreamException {
+  private static void funcWalk(SMInputCursor func, CoverageMeasures fileMeasuresBuilderIn, ProbeState state)
+    throws XMLStreamException {
     SMInputCursor prob = func.childElementCursor();
     while (prob.getNext() != null) {
-      probWalk(prob, fileMeasuresBuilderIn);
+      probWalk(prob, fileMeasuresBuilderIn, state);
     }
-    saveConditions(fileMeasuresBuilderIn);
+    saveConditions(fileMeasuresBuilderIn, state);
   }
 
-  private static void fileWalk(SMInputCursor file, CoverageMeasures fileMeasuresBuilderIn) throws XMLStreamException {
+  private static void fileWalk(SMInputCursor file, CoverageMeasures fileMeasuresBuilderIn, ProbeState state)
+    throws XMLStreamException {
     SMInputCursor func = file.childElementCursor();
     while (func.getNext() != null) {
-      funcWalk(func, fileMeasuresBuilderIn);
+      funcWalk(func, fileMeasuresBuilderIn, state);
     }
   }
 
   private static void recTreeWalk(String refPath, SMInputCursor folder, List<String> path,
-    final Map<String, CoverageMeasures> coverageData)
+    final Map<String, CoverageMeasures> coverageData, ProbeState state)
     throws XMLStreamException {
 
     String correctPath = ensureRefPathIsCorrect(refPath);
@@ -160,47 +162,49 @@ public class BullseyeParser extends CxxCoverageParser {
       if ("src".equalsIgnoreCase(folderChildName)) {
         String filePath = buildPath(path, correctPath);
         CoverageMeasures fileMeasuresBuilderIn = CoverageMeasures.create();
-        fileWalk(child, fileMeasuresBuilderIn);
+        fileWalk(child, fileMeasuresBuilderIn, state);
         if (LOG.isDebugEnabled()) {
           LOG.debug("lines covered: '{}':'{}'", filePath, fileMeasuresBuilderIn.getCoveredLines());
           LOG.debug("condition covered: '{}':'{}'", filePath, fileMeasuresBuilderIn.getCoveredConditions());
         }
         coverageData.put(filePath, fileMeasuresBuilderIn);
       } else {
-        recTreeWalk(correctPath, child, path, coverageData);
+        recTreeWalk(correctPath, child, path, coverageData, state);
       }
       path.remove(path.size() - 1);
     }
   }
 
-  private static void saveConditions(CoverageMeasures fileMeasuresBuilderIn) {
-    if (totalconditions > 0) {
-      if (totalcoveredconditions == 0) {
-        fileMeasuresBuilderIn.setHits(Integer.parseInt(prevLine), 0);
+  private static void saveConditions(CoverageMeasures fileMeasuresBuilderIn, ProbeState state) {
+    if (state.conditions > 0) {
+      if (state.coveredConditions == 0) {
+        fileMeasuresBuilderIn.setHits(Integer.parseInt(state.prevLine), 0);
       } else {
-        fileMeasuresBuilderIn.setHits(Integer.parseInt(prevLine), 1);
+        fileMeasuresBuilderIn.setHits(Integer.parseInt(state.prevLine), 1);
       }
-      fileMeasuresBuilderIn.setConditions(Integer.parseInt(prevLine), totalconditions, totalcoveredconditions);
+      fileMeasuresBuilderIn.setConditions(Integer.parseInt(state.prevLine), state.conditions,
+        state.coveredConditions);
     }
-    totalconditions = 0;
-    totalcoveredconditions = 0;
+    state.conditions = 0;
+    state.coveredConditions = 0;
   }
 
-  private static void updateMeasures(String kind, String event, String line, CoverageMeasures fileMeasuresBuilderIn) {
+  private static void updateMeasures(String kind, String event, String line, CoverageMeasures fileMeasuresBuilderIn,
+    ProbeState state) {
 
     switch (kind.toLowerCase(Locale.ENGLISH)) {
       case "decision":
       case "condition":
-        totalconditions += 2;
-        setTotalCoveredConditions(event);
+        state.conditions += 2;
+        setTotalCoveredConditions(event, state);
         break;
       case "catch":
       case "for-range-body":
       case "switch-label":
       case "try":
-        totalconditions++;
+        state.conditions++;
         if ("full".equalsIgnoreCase(event)) {
-          totalcoveredconditions++;
+          state.coveredConditions++;
         }
         break;
       case "function":
@@ -219,15 +223,16 @@ public class BullseyeParser extends CxxCoverageParser {
 
   /**
    * @param event
+   * @param state
    */
-  private static void setTotalCoveredConditions(String event) {
+  private static void setTotalCoveredConditions(String event, ProbeState state) {
     switch (event.toLowerCase(Locale.ENGLISH)) {
       case "full":
-        totalcoveredconditions += 2;
+        state.coveredConditions += 2;
         break;
       case "true":
       case "false":
-        totalcoveredconditions++;
+        state.coveredConditions++;
         break;
       case "none":
         // do nothing
@@ -237,6 +242,16 @@ public class BullseyeParser extends CxxCoverageParser {
     }
   }
 
+  /**
+   * Conditions of the probes of the current line, one instance per report.
+   */
+  private static final class ProbeState {
+
+    private String prevLine;
+    private int conditions;
+    private int coveredConditions;
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
@@ -19,24 +19,27 @@
  */
 package org.sonar.cxx.sensors.coverage;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.sonar.api.batch.InstantiationStrategy;
 import org.sonar.api.batch.ScannerSide;
 
 /**
+ * Coverage measures per report, shared by the modules of one analysis.
  *
  * @author jocs
  */
 @ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 public class CxxCoverageCache {
 
-  private static final Map<String, Map<String, CoverageMeasures>> CACHE_UNIT = new HashMap<>();
+  private final Map<String, Map<String, CoverageMeasures>> cacheUnit = new ConcurrentHashMap<>();
 
   public CxxCoverageCache() {
   }
 
   public Map<String, Map<String, CoverageMeasures>> unitCoverageCache() {
-    return CACHE_UNIT;
+    return cacheUnit;
   }
 
 }
@@ -35,7 +35,9 @@ import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.PathUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.CxxEvents;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummary;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 import org.sonar.cxx.sensors.utils.CxxUtils;
 import org.sonar.cxx.sensors.utils.EmptyReportException;
@@ -62,7 +64,20 @@ public class CxxCoverageSensor extends CxxReportSensor {
    * @param context for current file
    */
   public CxxCoverageSensor(CxxCoverageCache cache, CxxLanguage language, SensorContext context) {
-    super(language);
+    this(cache, new CxxPerformanceSummary(), language, context);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param cache for all coverage data
+   * @param summary performance summary of the analysis
+   * @param language for current analysis
+   * @param context for current file
+   */
+  public CxxCoverageSensor(CxxCoverageCache cache, CxxPerformanceSummary summary, CxxLanguage language,
+    SensorContext context) {
+    super(summary, language);
     this.cache = cache;
     parsers.add(new CoberturaParser());
     parsers.add(new BullseyeParser());
@@ -102,9 +117,11 @@ public class CxxCoverageSensor extends CxxReportSensor {
         LOG.debug("Parsing unit test coverage reports");
       }
 
+      long start = System.nanoTime();
       List<File> reports = getReports(context.config(), context.fileSystem().baseDir(), getReportPathKey());
       coverageMeasures = processReports(context, reports, this.cache.unitCoverageCache());
       saveMeasures(context, coverageMeasures);
+      performanceSummary.addSensor(getSensorKey(), System.nanoTime() - start);
     }
   }
 
@@ -151,10 +168,13 @@ public class CxxCoverageSensor extends CxxReportSensor {
   private static void parseCoverageReport(CoverageParser parser, final SensorContext context, File report,
     Map<String, CoverageMeasures> measuresTotal) {
     Map<String, CoverageMeasures> measuresForReport = new HashMap<>();
+    CxxEvents.Event event = CxxEvents.begin(CxxEvents.Type.REPORT);
     try {
       parser.processReport(context, report, measuresForReport);
     } catch (XMLStreamException e) {
       throw new EmptyReportException("Coverage report" + report + "cannot be parsed by" + parser, e);
+    } finally {
+      event.commit(parser.toString(), report.getPath());
     }
 
     if (measuresForReport.isEmpty()) {
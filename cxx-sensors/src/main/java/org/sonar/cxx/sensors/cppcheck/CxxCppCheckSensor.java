@@ -28,6 +28,7 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummary;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 
 /**
@@ -50,7 +51,17 @@ public class CxxCppCheckSensor extends CxxReportSensor {
    * @param language defines settings C or C++
    */
   public CxxCppCheckSensor(CxxLanguage language) {
-    super(language);
+    this(new CxxPerformanceSummary(), language);
+  }
+
+  /**
+   * CxxCppCheckSensor for CppCheck Sensor
+   *
+   * @param summary performance summary of the analysis
+   * @param language defines settings C or C++
+   */
+  public CxxCppCheckSensor(CxxPerformanceSummary summary, CxxLanguage language) {
+    super(summary, language);
     parsers.add(new CppcheckParserV2(this));
     parsers.add(new CppcheckParserV1(this));
   }
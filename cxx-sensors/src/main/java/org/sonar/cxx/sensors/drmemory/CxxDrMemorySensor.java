@@ -29,6 +29,7 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxLanguage;
 import org.sonar.cxx.sensors.drmemory.DrMemoryParser.DrMemoryError;
 import org.sonar.cxx.sensors.drmemory.DrMemoryParser.DrMemoryError.Location;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummary;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 import org.sonar.cxx.sensors.utils.CxxUtils;
 
@@ -53,7 +54,17 @@ public class CxxDrMemorySensor extends CxxReportSensor {
    * @param language defines settings C or C++
    */
   public CxxDrMemorySensor(CxxLanguage language) {
-    super(language);
+    this(new CxxPerformanceSummary(), language);
+  }
+
+  /**
+   * CxxDrMemorySensor for Doctor Memory Sensor
+   *
+   * @param summary performance summary of the analysis
+   * @param language defines settings C or C++
+   */
+  public CxxDrMemorySensor(CxxPerformanceSummary summary, CxxLanguage language) {
+    super(summary, language);
   }
 
   @Override
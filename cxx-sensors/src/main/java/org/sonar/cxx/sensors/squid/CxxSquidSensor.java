@@ -19,16 +19,14 @@
  */
 package org.sonar.cxx.sensors.squid;
 
+import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Set;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
@@ -47,19 +45,25 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxAstScanner;
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.CxxScanStatistics;
 import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.preprocessor.CxxIncludeProfiler;
 import org.sonar.cxx.sensors.compiler.CxxCompilerSensor;
 import org.sonar.cxx.sensors.utils.CxxMetrics;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummary;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 import org.sonar.cxx.sensors.utils.JsonCompilationDatabase;
 import org.sonar.cxx.sensors.visitors.CxxCpdVisitor;
 import org.sonar.cxx.sensors.visitors.CxxFileLinesVisitor;
 import org.sonar.cxx.sensors.visitors.CxxHighlighterVisitor;
+import org.sonar.cxx.sensors.visitors.CxxTokenMetricsVisitor;
+import org.sonar.cxx.visitors.CxxLeaveFileLastVisitor;
 import org.sonar.squidbridge.AstScanner;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.api.CheckMessage;
 import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.measures.MetricDef;
 import org.sonar.squidbridge.indexer.QueryByType;
 
 /**
@@ -82,10 +86,26 @@ public class CxxSquidSensor implements Sensor {
   public static final String CPD_IGNORE_LITERALS_KEY = "cpd.ignoreLiterals";
   public static final String CPD_IGNORE_IDENTIFIERS_KEY = "cpd.ignoreIdentifiers";
 
+  public static final String FILE_TOKEN_BUDGET_KEY = "fileTokenBudget";
+  public static final String FILE_TIME_BUDGET_KEY = "fileTimeBudget";
+  public static final String LEXER_ONLY_FILES_PATTERNS_KEY = "lexerOnlyFilesPatterns";
+  public static final String STREAMING_SAVE_KEY = "streamingSave";
+  public static final String VISITOR_PROFILE_REPORT_KEY = "visitorProfileReportPath";
+  public static final String GENERATED_FILES_MAX_SIZE_KEY = "generatedFiles.maxSize";
+  public static final String GENERATED_FILES_MARKERS_KEY = "generatedFiles.markers";
+  public static final String GENERATED_FILES_MAX_TOKENS_PER_LINE_KEY = "generatedFiles.maxTokensPerLine";
+  public static final String GENERATED_FILES_CPD_KEY = "generatedFiles.cpd";
+  public static final String INCLUDE_PROFILE_REPORT_KEY = "includeProfileReportPath";
+  public static final String INCLUDE_PROFILE_TOP_COUNT_KEY = "includeProfileTopCount";
+  public static final String MACRO_EXPANSION_MAX_DEPTH_KEY = "macroExpansion.maxDepth";
+  public static final String MACRO_EXPANSION_MAX_TOKENS_KEY = "macroExpansion.maxTokens";
+  public static final String MACRO_EXPANSION_TIME_BUDGET_KEY = "macroExpansion.timeBudget";
+
   public static final String KEY = "Squid";
 
   private final FileLinesContextFactory fileLinesContextFactory;
   private final CxxChecks checks;
+  private final CxxPerformanceSummary performanceSummary;
 
   private final CxxLanguage language;
 
@@ -105,6 +125,18 @@ public class CxxSquidSensor implements Sensor {
     FileLinesContextFactory fileLinesContextFactory,
     CheckFactory checkFactory,
     @Nullable CustomCxxRulesDefinition[] customRulesDefinition) {
+    this(new CxxPerformanceSummary(), language, fileLinesContextFactory, checkFactory, customRulesDefinition);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CxxSquidSensor(CxxPerformanceSummary summary,
+    CxxLanguage language,
+    FileLinesContextFactory fileLinesContextFactory,
+    CheckFactory checkFactory,
+    @Nullable CustomCxxRulesDefinition[] customRulesDefinition) {
+    this.performanceSummary = summary;
     this.checks = CxxChecks.createCxxCheck(checkFactory)
       .addChecks(language.getRepositoryKey(), language.getChecks())
       .addCustomChecks(customRulesDefinition);
@@ -129,19 +161,27 @@ public class CxxSquidSensor implements Sensor {
    */
   @Override
   public void execute(SensorContext context) {
-    Map<InputFile, Set<Integer>> linesOfCodeByFile = new HashMap<>();
-
+    long start = System.nanoTime();
     List<SquidAstVisitor<Grammar>> visitors = new ArrayList<>((Collection) checks.all());
-    visitors.add(new CxxHighlighterVisitor(context));
-    visitors.add(new CxxFileLinesVisitor(language, fileLinesContextFactory, context, linesOfCodeByFile));
-
-    visitors.add(
+    // highlighting, file lines and CPD tokens in one token pass
+    CxxTokenMetricsVisitor tokenMetrics = new CxxTokenMetricsVisitor(
+      new CxxFileLinesVisitor(language, fileLinesContextFactory, context),
+      new CxxHighlighterVisitor(context),
       new CxxCpdVisitor(
         context,
         this.language.getBooleanOption(CPD_IGNORE_LITERALS_KEY).orElse(Boolean.FALSE),
-        this.language.getBooleanOption(CPD_IGNORE_IDENTIFIERS_KEY).orElse(Boolean.FALSE)));
+        this.language.getBooleanOption(CPD_IGNORE_IDENTIFIERS_KEY).orElse(Boolean.FALSE),
+        this.language.getBooleanOption(GENERATED_FILES_CPD_KEY).orElse(Boolean.TRUE)));
+    visitors.add(tokenMetrics);
 
     CxxConfiguration cxxConf = createConfiguration(context.fileSystem(), context);
+    StreamingSaveVisitor streamingSave = null;
+    if (this.language.getBooleanOption(STREAMING_SAVE_KEY).orElse(Boolean.FALSE)) {
+      // leaves a file after all other visitors, see CxxLeaveFileLastVisitor
+      streamingSave = new StreamingSaveVisitor(context);
+      visitors.add(streamingSave);
+    }
+
     AstScanner<Grammar> scanner = CxxAstScanner.create(this.language, cxxConf,
       visitors.toArray(new SquidAstVisitor[visitors.size()]));
 
@@ -165,9 +205,16 @@ public class CxxSquidSensor implements Sensor {
     }
 
     scanner.scanFiles(files);
+    // the statistics are data of the scan, kept by the visitor context
+    performanceSummary.addScan(CxxScanStatistics.of(tokenMetrics.getContext()), System.nanoTime() - start);
 
-    Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
-    save(squidSourceFiles, context);
+    if (streamingSave != null) {
+      saveViolationsCount(streamingSave.violationsCount, context);
+    } else {
+      Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
+      save(squidSourceFiles, context);
+    }
+    performanceSummary.addSensor(KEY, System.nanoTime() - start);
   }
 
   private CxxConfiguration createConfiguration(FileSystem fs, SensorContext context) {
@@ -186,6 +233,34 @@ public class CxxSquidSensor implements Sensor {
       .orElse(null));
     cxxConf.setScanOnlySpecifiedSources(this.language.getBooleanOption(SCAN_ONLY_SPECIFIED_SOURCES_KEY)
       .orElse(Boolean.FALSE));
+    cxxConf.setFileTokenBudget(this.language.getIntegerOption(FILE_TOKEN_BUDGET_KEY).orElse(0));
+    cxxConf.setFileTimeBudget(this.language.getLongOption(FILE_TIME_BUDGET_KEY).orElse(0L));
+    cxxConf.setMacroExpansionMaxDepth(this.language.getIntegerOption(MACRO_EXPANSION_MAX_DEPTH_KEY).orElse(0));
+    cxxConf.setMacroExpansionMaxTokens(this.language.getIntegerOption(MACRO_EXPANSION_MAX_TOKENS_KEY).orElse(0));
+    cxxConf.setMacroExpansionTimeBudget(this.language.getLongOption(MACRO_EXPANSION_TIME_BUDGET_KEY).orElse(0L));
+    cxxConf.setLexerOnlyFilesPatterns(this.language.getStringArrayOption(LEXER_ONLY_FILES_PATTERNS_KEY));
+    cxxConf.setGeneratedFileMaxSize(this.language.getLongOption(GENERATED_FILES_MAX_SIZE_KEY).orElse(0L) * 1024);
+    cxxConf.setGeneratedCodeMarkers(this.language.getStringArrayOption(GENERATED_FILES_MARKERS_KEY));
+    cxxConf.setGeneratedFileMaxTokensPerLine(this.language.getIntegerOption(GENERATED_FILES_MAX_TOKENS_PER_LINE_KEY)
+      .orElse(0));
+    String visitorProfile = this.language.getStringOption(VISITOR_PROFILE_REPORT_KEY).orElse("");
+    if (!visitorProfile.isEmpty()) {
+      File report = new File(visitorProfile);
+      if (!report.isAbsolute()) {
+        report = new File(fs.workDir(), visitorProfile);
+      }
+      cxxConf.setVisitorProfileReportFile(report.getAbsolutePath());
+    }
+    String includeProfile = this.language.getStringOption(INCLUDE_PROFILE_REPORT_KEY).orElse("");
+    if (!includeProfile.isEmpty()) {
+      File report = new File(includeProfile);
+      if (!report.isAbsolute()) {
+        report = new File(fs.workDir(), includeProfile);
+      }
+      cxxConf.setIncludeProfileReportFile(report.getAbsolutePath());
+      cxxConf.setIncludeProfileTopCount(this.language.getIntegerOption(INCLUDE_PROFILE_TOP_COUNT_KEY)
+        .orElse(CxxIncludeProfiler.DEFAULT_TOP_COUNT));
+    }
 
     if (cxxConf.getJsonCompilationDatabaseFile() != null) {
       try {
@@ -212,14 +287,21 @@ public class CxxSquidSensor implements Sensor {
     int violationsCount = 0;
 
     for (SourceCode squidSourceFile : squidSourceFiles) {
-      SourceFile squidFile = (SourceFile) squidSourceFile;
-      File ioFile = new File(squidFile.getKey());
-      InputFile inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().is(ioFile));
-
-      saveMeasures(inputFile, squidFile, context);
-      violationsCount += saveViolations(inputFile, squidFile, context);
+      violationsCount += saveFile((SourceFile) squidSourceFile, context);
     }
 
+    saveViolationsCount(violationsCount, context);
+  }
+
+  private int saveFile(SourceFile squidFile, SensorContext context) {
+    File ioFile = new File(squidFile.getKey());
+    InputFile inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().is(ioFile));
+
+    saveMeasures(inputFile, squidFile, context);
+    return saveViolations(inputFile, squidFile, context);
+  }
+
+  private void saveViolationsCount(int violationsCount, SensorContext context) {
     String metricKey = CxxMetrics.getKey(KEY, language);
     Metric metric = this.language.getMetric(metricKey);
 
@@ -296,6 +378,66 @@ public class CxxSquidSensor implements Sensor {
     return violationsCount;
   }
 
+  /**
+   * Aggregates the measures of the functions and classes of a file into the file, the same way the scanner does for
+   * the whole project at the end of the analysis.
+   */
+  private static void decorate(SourceCode sourceCode, MetricDef... metrics) {
+    if (!sourceCode.hasChildren()) {
+      return;
+    }
+    for (SourceCode child : sourceCode.getChildren()) {
+      decorate(child, metrics);
+    }
+    for (MetricDef metric : metrics) {
+      if (metric.isCalculatedMetric() || !metric.isThereAggregationFormula()
+        || (!metric.aggregateIfThereIsAlreadyAValue()
+        && Double.doubleToRawLongBits(sourceCode.getDouble(metric)) != 0L)) {
+        continue;
+      }
+      for (SourceCode child : sourceCode.getChildren()) {
+        sourceCode.add(metric, child);
+      }
+    }
+  }
+
+  /**
+   * Saves measures and issues of a file as soon as all visitors have left it and releases its source code tree. The
+   * scanner index only keeps an empty SourceFile, so memory does not grow with the number of files.
+   */
+  private class StreamingSaveVisitor extends SquidAstVisitor<Grammar> implements CxxLeaveFileLastVisitor {
+
+    private final SensorContext context;
+    private int violationsCount;
+
+    StreamingSaveVisitor(SensorContext context) {
+      this.context = context;
+    }
+
+    @Override
+    public void leaveFile(@Nullable AstNode astNode) {
+      SourceCode sourceCode = getContext().peekSourceCode();
+      if (!(sourceCode instanceof SourceFile)) {
+        return;
+      }
+      SourceFile squidFile = (SourceFile) sourceCode;
+      decorate(squidFile, CxxMetric.values());
+      violationsCount += saveFile(squidFile, context);
+
+      // release the file subtree
+      squidFile.getCheckMessages().clear();
+      if (squidFile.hasChildren()) {
+        squidFile.getChildren().clear();
+      }
+      for (CxxMetric metric : CxxMetric.values()) {
+        squidFile.removeMeasure(metric);
+      }
+      if (squidFile.getParent() != null) {
+        squidFile.getParent().getChildren().remove(squidFile);
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
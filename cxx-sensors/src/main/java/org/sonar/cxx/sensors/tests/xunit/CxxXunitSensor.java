@@ -34,7 +34,9 @@ import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.utils.ParsingUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.CxxEvents;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummary;
 import org.sonar.cxx.sensors.utils.CxxReportSensor;
 import org.sonar.cxx.sensors.utils.CxxUtils;
 import org.sonar.cxx.sensors.utils.EmptyReportException;
@@ -58,7 +60,16 @@ public class CxxXunitSensor extends CxxReportSensor {
    * @param language for C or C++
    */
   public CxxXunitSensor(CxxLanguage language) {
-    super(language);
+    this(new CxxPerformanceSummary(), language);
+  }
+
+  /**
+   * CxxXunitSensor
+   * @param summary performance summary of the analysis
+   * @param language for C or C++
+   */
+  public CxxXunitSensor(CxxPerformanceSummary summary, CxxLanguage language) {
+    super(summary, language);
     if (language.getStringOption(XSLT_URL_KEY).isPresent()) {
       xsltURL = language.getStringOption(XSLT_URL_KEY).orElse("xunit-report.xslt");
     }
@@ -90,6 +101,7 @@ public class CxxXunitSensor extends CxxReportSensor {
 
     LOG.debug("Root module imports test metrics: Module Key = '{}'", context.module());
 
+    long start = System.nanoTime();
     try {
       List<File> reports = getReports(context.config(), context.fileSystem().baseDir(), getReportPathKey());
       if (!reports.isEmpty()) {
@@ -109,6 +121,8 @@ public class CxxXunitSensor extends CxxReportSensor {
         .toString();
       LOG.error(msg);
       CxxUtils.validateRecovery(e, this.language);
+    } finally {
+      performanceSummary.addSensor(getSensorKey(), System.nanoTime() - start);
     }
   }
 
@@ -125,6 +139,7 @@ public class CxxXunitSensor extends CxxReportSensor {
     StaxParser parser = new StaxParser(parserHandler, false);
     for (File report : reports) {
       LOG.info("Processing report '{}'", report);
+      CxxEvents.Event event = CxxEvents.begin(CxxEvents.Type.REPORT);
       try {
         parser.parse(transformReport(report));
       } catch (EmptyReportException e) {
@@ -132,6 +147,8 @@ public class CxxXunitSensor extends CxxReportSensor {
         if (LOG.isDebugEnabled()) {
           LOG.debug("{}", e);
         }
+      } finally {
+        event.commit(getSensorKey(), report.getPath());
       }
     }
     return parserHandler;
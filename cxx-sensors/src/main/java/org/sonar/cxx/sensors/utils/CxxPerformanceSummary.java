@@ -0,0 +1,201 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.cxx.CxxScanStatistics;
+
+/**
+ * Totals of an analysis: scan statistics of the squid sensor and the execution time of each sensor, summed up over all
+ * modules.
+ * <p>
+ * There is one summary per analysis and language. Sensors add their numbers while they execute, the
+ * {@link CxxPerformanceSummaryPostJob} writes the summary at the end of the analysis and resets it.
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class CxxPerformanceSummary {
+
+  private static final Logger LOG = Loggers.get(CxxPerformanceSummary.class);
+  private static final double NANOS_PER_SECOND = 1000000000.0;
+
+  private final Map<String, Long> sensorNanos = new TreeMap<>();
+  private long scanNanos;
+  private long files;
+  private long lines;
+  private long lexNanos;
+  private long preprocessNanos;
+  private long parseNanos;
+  private long visitorNanos;
+  private long includeHits;
+  private long includeMisses;
+  private long macroExpansions;
+  private long parseErrors;
+
+  public CxxPerformanceSummary() {
+  }
+
+  /**
+   * Adds the execution time of a sensor.
+   *
+   * @param sensorKey key of the sensor
+   * @param nanos execution time in nanoseconds
+   */
+  public synchronized void addSensor(String sensorKey, long nanos) {
+    sensorNanos.merge(sensorKey, nanos, Long::sum);
+  }
+
+  /**
+   * Adds the statistics of a scan of the squid sensor.
+   *
+   * @param statistics statistics of the scan
+   * @param nanos time of the scan in nanoseconds
+   */
+  public synchronized void addScan(CxxScanStatistics statistics, long nanos) {
+    scanNanos += nanos;
+    files += statistics.getFiles();
+    lines += statistics.getLines();
+    lexNanos += statistics.getLexNanos();
+    preprocessNanos += statistics.getPreprocessNanos();
+    parseNanos += statistics.getParseNanos();
+    visitorNanos += statistics.getVisitorNanos();
+    includeHits += statistics.getIncludeHits();
+    includeMisses += statistics.getIncludeMisses();
+    macroExpansions += statistics.getMacroExpansions();
+    parseErrors += statistics.getParseErrors();
+  }
+
+  public synchronized boolean isEmpty() {
+    return sensorNanos.isEmpty() && files == 0;
+  }
+
+  public synchronized long getFiles() {
+    return files;
+  }
+
+  public synchronized long getLines() {
+    return lines;
+  }
+
+  /**
+   * @return lines scanned per second of scan time, 0 if nothing was scanned
+   */
+  public synchronized double getLinesPerSecond() {
+    return scanNanos > 0 ? lines * NANOS_PER_SECOND / scanNanos : 0.0;
+  }
+
+  /**
+   * @return cumulative execution time in nanoseconds of the sensor, 0 if it did not run
+   */
+  public synchronized long getSensorNanos(String sensorKey) {
+    return sensorNanos.getOrDefault(sensorKey, 0L);
+  }
+
+  /**
+   * @return sum of the peak usage of the heap memory pools since the start of the JVM
+   */
+  public static long getPeakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  /**
+   * Write the summary in JSON format.
+   *
+   * @param writer target of the summary
+   */
+  public synchronized void writeJson(Writer writer) {
+    JsonWriter json = JsonWriter.of(writer);
+    json.beginObject()
+      .prop("files", files)
+      .prop("lines", lines)
+      .prop("linesPerSecond", Math.round(getLinesPerSecond()))
+      .name("timeNanos").beginObject()
+      .prop("lex", lexNanos)
+      .prop("preprocess", preprocessNanos)
+      .prop("parse", parseNanos)
+      .prop("visitors", visitorNanos)
+      .endObject()
+      .name("sensorTimeNanos").beginObject();
+    for (Map.Entry<String, Long> entry : sensorNanos.entrySet()) {
+      json.prop(entry.getKey(), entry.getValue().longValue());
+    }
+    json.endObject()
+      .name("includes").beginObject()
+      .prop("hits", includeHits)
+      .prop("misses", includeMisses)
+      .endObject()
+      .prop("macroExpansions", macroExpansions)
+      .prop("parseErrors", parseErrors)
+      .prop("peakHeapBytes", getPeakHeap())
+      .endObject();
+    json.close();
+  }
+
+  /**
+   * Write the summary in JSON format to a file and start over.
+   *
+   * @param report path of the JSON summary
+   * @throws IOException in case of write errors
+   */
+  public synchronized void writeReport(Path report) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+      writeJson(writer);
+    }
+    LOG.info("Performance summary written to '{}': {} files, {} lines, {} lines/s", report, files, lines,
+      Math.round(getLinesPerSecond()));
+    reset();
+  }
+
+  synchronized void reset() {
+    sensorNanos.clear();
+    scanNanos = 0;
+    files = 0;
+    lines = 0;
+    lexNanos = 0;
+    preprocessNanos = 0;
+    parseNanos = 0;
+    visitorNanos = 0;
+    includeHits = 0;
+    includeMisses = 0;
+    macroExpansions = 0;
+    parseErrors = 0;
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import java.io.File;
+import java.io.IOException;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.postjob.PostJob;
+import org.sonar.api.batch.postjob.PostJobContext;
+import org.sonar.api.batch.postjob.PostJobDescriptor;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.CxxLanguage;
+
+/**
+ * Writes the {@link CxxPerformanceSummary} of the analysis to the working directory.
+ */
+public class CxxPerformanceSummaryPostJob implements PostJob {
+
+  private static final Logger LOG = Loggers.get(CxxPerformanceSummaryPostJob.class);
+  public static final String REPORT_SUFFIX = "-performance-summary.json";
+
+  private final CxxPerformanceSummary summary;
+  private final CxxLanguage language;
+  private final FileSystem fs;
+
+  public CxxPerformanceSummaryPostJob(CxxPerformanceSummary summary, CxxLanguage language, FileSystem fs) {
+    this.summary = summary;
+    this.language = language;
+    this.fs = fs;
+  }
+
+  @Override
+  public void describe(PostJobDescriptor descriptor) {
+    descriptor.name(language.getName() + " PerformanceSummary");
+  }
+
+  @Override
+  public void execute(PostJobContext context) {
+    if (summary.isEmpty()) {
+      return;
+    }
+    File report = new File(fs.workDir(), language.getPropertiesKey() + REPORT_SUFFIX);
+    try {
+      summary.writeReport(report.toPath());
+    } catch (IOException e) {
+      LOG.warn("Cannot write performance summary '{}': {}", report, e.getMessage());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+
+}
@@ -43,6 +43,7 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.CxxEvents;
 import org.sonar.cxx.CxxLanguage;
 
 /**
@@ -57,11 +58,23 @@ public abstract class CxxReportSensor implements Sensor {
   private final Map<InputFile, Integer> violationsPerFileCount = new HashMap<>();
   private int violationsPerModuleCount;
   protected final CxxLanguage language;
+  protected final CxxPerformanceSummary performanceSummary;
 
   /**
    * {@inheritDoc}
    */
   protected CxxReportSensor(CxxLanguage language) {
+    this(new CxxPerformanceSummary(), language);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param summary performance summary of the analysis
+   * @param language C or C++
+   */
+  protected CxxReportSensor(CxxPerformanceSummary summary, CxxLanguage language) {
+    this.performanceSummary = summary;
     this.language = language;
   }
 
@@ -86,6 +99,7 @@ public abstract class CxxReportSensor implements Sensor {
    */
   @Override
   public void execute(SensorContext context) {
+    long start = System.nanoTime();
     try {
       LOG.info("Searching reports by relative path with basedir '{}' and search prop '{}'",
         context.fileSystem().baseDir(), getReportPathKey());
@@ -126,6 +140,8 @@ public abstract class CxxReportSensor implements Sensor {
         .toString();
       LOG.error(msg);
       CxxUtils.validateRecovery(e, this.language);
+    } finally {
+      performanceSummary.addSensor(getSensorKey(), System.nanoTime() - start);
     }
   }
 
@@ -136,6 +152,7 @@ public abstract class CxxReportSensor implements Sensor {
    * @throws Exception
    */
   private void executeReport(SensorContext context, File report, int prevViolationsCount) throws Exception {
+    CxxEvents.Event event = CxxEvents.begin(CxxEvents.Type.REPORT);
     try {
       processReport(context, report);
       if (LOG.isDebugEnabled()) {
@@ -148,6 +165,8 @@ public abstract class CxxReportSensor implements Sensor {
         LOG.debug("Cannot read report", e);
       }
       CxxUtils.validateRecovery(e, language);
+    } finally {
+      event.commit(getSensorKey(), report.getPath());
     }
   }
 
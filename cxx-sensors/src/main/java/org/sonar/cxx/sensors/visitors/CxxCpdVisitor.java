@@ -27,12 +27,12 @@ import com.sonar.sslr.api.Token;
 import java.io.File;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.fs.TextRange;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.cpd.NewCpdTokens;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.api.CxxTokenType;
+import org.sonar.cxx.parser.CxxFallbackParser;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.squidbridge.SquidAstVisitor;
 
@@ -43,14 +43,25 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
   private final SensorContext sensorContext;
   private final Boolean ignoreLiterals;
   private final Boolean ignoreIdentifiers;
-  private InputFile inputFile;
+  private final boolean generatedFilesEnabled;
   private NewCpdTokens cpdTokens;
   private int isFunctionDefinition;
+  private boolean lexerOnly;
+  private boolean skipFile;
 
   public CxxCpdVisitor(SensorContext sensorContext, Boolean ignoreLiterals, Boolean ignoreIdentifiers) {
+    this(sensorContext, ignoreLiterals, ignoreIdentifiers, true);
+  }
+
+  /**
+   * @param generatedFilesEnabled false to skip the CPD tokens of files classified as generated code
+   */
+  public CxxCpdVisitor(SensorContext sensorContext, Boolean ignoreLiterals, Boolean ignoreIdentifiers,
+    boolean generatedFilesEnabled) {
     this.sensorContext = sensorContext;
     this.ignoreLiterals = ignoreLiterals;
     this.ignoreIdentifiers = ignoreIdentifiers;
+    this.generatedFilesEnabled = generatedFilesEnabled;
   }
 
   @Override
@@ -61,8 +72,10 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
   @Override
   public void visitFile(@Nullable AstNode astNode) {
     File file = getContext().getFile();
-    inputFile = sensorContext.fileSystem().inputFile(sensorContext.fileSystem().predicates().is(file));
+    InputFile inputFile = sensorContext.fileSystem().inputFile(sensorContext.fileSystem().predicates().is(file));
     cpdTokens = sensorContext.newCpdTokens().onFile(inputFile);
+    lexerOnly = CxxFallbackParser.isLexerOnly(astNode);
+    skipFile = !generatedFilesEnabled && CxxFallbackParser.isGenerated(astNode);
   }
 
   @Override
@@ -82,7 +95,16 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
 
   @Override
   public void visitToken(Token token) {
-    if (isFunctionDefinition > 0 && !token.isGeneratedCode()) {
+    if (!token.isGeneratedCode()) {
+      addToken(token);
+    }
+  }
+
+  /**
+   * Adds a token which is not generated code to the CPD tokens.
+   */
+  void addToken(Token token) {
+    if (!skipFile && (isFunctionDefinition > 0 || lexerOnly)) {
       String text;
       if (ignoreIdentifiers && token.getType().equals(GenericTokenType.IDENTIFIER)) {
         text = "_I";
@@ -99,9 +121,9 @@ public class CxxCpdVisitor extends SquidAstVisitor<Grammar> implements AstAndTok
       }
 
       try {
-        TextRange range = inputFile.newRange(token.getLine(), token.getColumn(),
-          token.getLine(), token.getColumn() + token.getValue().length());
-        cpdTokens.addToken(range, text);
+        int line = token.getLine();
+        int column = token.getColumn();
+        cpdTokens.addToken(line, column, line, column + token.getValue().length(), text);
       } catch (IllegalArgumentException | IllegalStateException e) {
         // ignore range errors: parsing errors could lead to wrong location data
         if (LOG.isDebugEnabled()) {
@@ -28,9 +28,11 @@ import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.Trivia;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
@@ -42,6 +44,7 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxLanguage;
 import org.sonar.cxx.api.CxxKeyword;
 import org.sonar.cxx.api.CxxPunctuator;
+import org.sonar.cxx.parser.CxxFallbackParser;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.sensors.utils.CxxUtils;
 import org.sonar.squidbridge.SquidAstVisitor;
@@ -56,12 +59,14 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
 
   private final CxxLanguage language;
   private final FileLinesContextFactory fileLinesContextFactory;
-  private static final Set<Integer> linesOfCode = Sets.newHashSet();
-  private static final Set<Integer> linesOfComments = Sets.newHashSet();
-  private static final Set<Integer> executableLines = Sets.newHashSet();
+  private final BitSet linesOfCode = new BitSet();
+  private final BitSet linesOfComments = new BitSet();
+  private final BitSet executableLines = new BitSet();
   private final FileSystem fileSystem;
+  @Nullable
   private final Map<InputFile, Set<Integer>> allLinesOfCode;
-  private static int isWithinFunctionDefinition;
+  private int isWithinFunctionDefinition;
+  private boolean lexerOnly;
   private static final Set<String> ignoreToken = Sets.newHashSet(";", "{", "}", "(", ")", "[", "]");
   private static final AstNodeType[] nodesToVisit = {
     CxxGrammarImpl.labeledStatement,
@@ -76,11 +81,23 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
    *
    * @param context for coverage analysis
    * @param fileLinesContextFactory container for linesOfCode, linesOfComments, executableLines
-   * @param allLinesOfCode set of lines for a source file
    * @param language properties
    */
-  public CxxFileLinesVisitor(CxxLanguage language, FileLinesContextFactory fileLinesContextFactory, 
-      SensorContext context, Map<InputFile, Set<Integer>> allLinesOfCode) {
+  public CxxFileLinesVisitor(CxxLanguage language, FileLinesContextFactory fileLinesContextFactory,
+      SensorContext context) {
+    this(language, fileLinesContextFactory, context, null);
+  }
+
+  /**
+   * CxxFileLinesVisitor generates sets for linesOfCode, linesOfComments, executableLines
+   *
+   * @param context for coverage analysis
+   * @param fileLinesContextFactory container for linesOfCode, linesOfComments, executableLines
+   * @param allLinesOfCode receives the lines of code of each source file, null to keep them only for the current file
+   * @param language properties
+   */
+  public CxxFileLinesVisitor(CxxLanguage language, FileLinesContextFactory fileLinesContextFactory,
+      SensorContext context, @Nullable Map<InputFile, Set<Integer>> allLinesOfCode) {
     this.language = language;
     this.fileLinesContextFactory = fileLinesContextFactory;
     this.fileSystem = context.fileSystem();
@@ -101,18 +118,36 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
       return;
     }
 
-    if ((isWithinFunctionDefinition != 0) && !ignoreToken.contains(token.getType().getValue())) {
-      linesOfCode.add(token.getLine());
-    }
+    addLineOfCode(token);
 
     List<Trivia> trivias = token.getTrivia();
     for (Trivia trivia : trivias) {
       if (trivia.isComment()) {
-        linesOfComments.add(trivia.getToken().getLine());
+        addLineOfComment(trivia.getToken());
       }
     }
   }
 
+  /**
+   * Token part of {@link #visitToken(Token)}, without EOF token and trivia.
+   */
+  void addLineOfCode(Token token) {
+    if ((isWithinFunctionDefinition != 0 || lexerOnly) && !ignoreToken.contains(token.getType().getValue())) {
+      linesOfCode.set(token.getLine());
+    }
+  }
+
+  /**
+   * Comment trivia part of {@link #visitToken(Token)}.
+   */
+  void addLineOfComment(Token comment) {
+    linesOfComments.set(comment.getLine());
+  }
+
+  static AstNodeType[] getNodesToVisit() {
+    return nodesToVisit.clone();
+  }
+
   @Override
   public void visitNode(AstNode astNode) {
     switch ((CxxGrammarImpl) astNode.getType()) {
@@ -138,14 +173,14 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
   /**
    * @param astNode
    */
-  private static void visitStatement(AstNode astNode) {
+  private void visitStatement(AstNode astNode) {
     if (astNode.hasDirectChildren(CxxGrammarImpl.declarationStatement)
       && !astNode.hasDescendant(CxxGrammarImpl.initializer)) {
       return;
     }
     String value = astNode.getTokenValue();
     if (value != null && !"{".equals(value) && !"default".equals(value) && !"case".equals(value)) {
-      executableLines.add(astNode.getTokenLine());
+      executableLines.set(astNode.getTokenLine());
     }
   }
 
@@ -159,14 +194,14 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
   /**
    * 
    */
-  private static void increaseFunctionDefinition() {
+  private void increaseFunctionDefinition() {
     isWithinFunctionDefinition++;
   }
 
   /**
    * 
    */
-  private static void decreaseFunctionDefinitions() {
+  private void decreaseFunctionDefinitions() {
     isWithinFunctionDefinition--;
   }
 
@@ -193,6 +228,8 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
     linesOfCode.clear();
     linesOfComments.clear();
     executableLines.clear();
+    // without AST there are no function definitions: count all tokens
+    lexerOnly = CxxFallbackParser.isLexerOnly(astNode);
   }
 
   @Override
@@ -228,7 +265,9 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
       CxxUtils.validateRecovery(e, language);
     }
     fileLinesContext.save();
-    this.allLinesOfCode.put(inputFile, Sets.newHashSet(linesOfCode));
+    if (allLinesOfCode != null) {
+      allLinesOfCode.put(inputFile, getLinesOfCode());
+    }
 
     if (LOG.isDebugEnabled()) {
       LOG.debug("CxxFileLinesVisitor: '{}'", inputFile.uri().getPath());
@@ -240,15 +279,19 @@ public class CxxFileLinesVisitor extends SquidAstVisitor<Grammar> implements Ast
   }
 
   public Set<Integer> getLinesOfCode() {
-    return ImmutableSet.copyOf(linesOfCode);
+    return toSet(linesOfCode);
   }
 
   public Set<Integer> getLinesOfComments() {
-    return ImmutableSet.copyOf(linesOfComments);
+    return toSet(linesOfComments);
   }
 
   public Set<Integer> getExecutableLines() {
-    return ImmutableSet.copyOf(executableLines);
+    return toSet(executableLines);
+  }
+
+  private static Set<Integer> toSet(BitSet lines) {
+    return ImmutableSet.copyOf(lines.stream().iterator());
   }
 
 }
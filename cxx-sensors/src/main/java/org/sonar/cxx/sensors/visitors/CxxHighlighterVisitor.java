@@ -24,8 +24,7 @@ import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.Trivia;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
@@ -41,78 +40,32 @@ public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements A
 
   private static final Logger LOG = Loggers.get(CxxHighlighterVisitor.class);
 
-  private NewHighlighting newHighlighting;
-  private final SensorContext context;
-
-  private static class TokenLocation {
-
-    protected int startLine;
-    protected int startLineOffset;
-    protected int endLine;
-    protected int endLineOffset;
-
-    public TokenLocation(Token token) {
-      startLine = token.getLine();
-      startLineOffset = token.getColumn();
-      endLine = this.startLine;
-      endLineOffset = startLineOffset + token.getValue().length();
-    }
-
-    public int startLine() {
-      return startLine;
-    }
+  private static final TypeOfText[] TYPES_OF_TEXT = TypeOfText.values();
+  private static final int SPAN_SIZE = 5;
+  private static final int INITIAL_SPANS = 256;
 
-    public int startLineOffset() {
-      return startLineOffset;
-    }
-
-    public int endLine() {
-      return endLine;
-    }
-
-    public int endLineOffset() {
-      return endLineOffset;
-    }
-
-    public boolean overlaps(@Nullable TokenLocation other) {
-      if (other != null) {
-        return !(startLineOffset() > other.endLineOffset()
-          || other.startLineOffset() > endLineOffset()
-          || startLine() > other.endLine()
-          || other.startLine() > endLine());
-      }
-      return false;
-    }
+  /**
+   * Buffer size kept for the next file, the buffer grown by a larger file is released in leaveFile.
+   */
+  private static final int MAX_RETAINED_SPANS = 16 * 1024;
 
-  }
-
-  private static class CommentLocation extends TokenLocation {
-
-    public CommentLocation(Token token) {
-      super(token);
-      String value = token.getValue();
-      String[] lines = value.split("\r\n|\n|\r", -1);
-
-      if (lines.length > 1) {
-        endLine = token.getLine() + lines.length - 1;
-        endLineOffset = lines[lines.length - 1].length();
-      }
-    }
-  }
-
-  private static class PreprocessorDirectiveLocation extends TokenLocation {
+  private NewHighlighting newHighlighting;
+  private final SensorContext context;
 
-    PreprocessorDirectiveLocation(Token token) {
-      super(token);
-      Pattern r = Pattern.compile("^[ \t]*#[ \t]*\\w+");
-      Matcher m = r.matcher(token.getValue());
-      if (m.find()) {
-        endLineOffset = startLineOffset + (m.end() - m.start());
-      } else {
-        endLineOffset = startLineOffset;
-      }
-    }
-  }
+  /**
+   * Highlighted spans of the current file: start line, start line offset, end line, end line offset and ordinal of
+   * the type of text per span. Flushed once in leaveFile.
+   */
+  private int[] spans = new int[SPAN_SIZE * INITIAL_SPANS];
+  private int spanCount;
+
+  /**
+   * Location of the last highlighted token, comments and directives overlapping it are not highlighted.
+   */
+  private boolean hasLast;
+  private int lastStartLine;
+  private int lastStartLineOffset;
+  private int lastEndLineOffset;
 
   public CxxHighlighterVisitor(SensorContext context) {
     this.context = context;
@@ -126,10 +79,19 @@ public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements A
     if (inputFile != null) {
       newHighlighting.onFile(inputFile);
     }
+    spanCount = 0;
+    hasLast = false;
   }
 
   @Override
   public void leaveFile(@Nullable AstNode astNode) {
+    for (int i = 0; i < spanCount; i++) {
+      flush(i * SPAN_SIZE);
+    }
+    spanCount = 0;
+    if (spans.length > SPAN_SIZE * MAX_RETAINED_SPANS) {
+      spans = new int[SPAN_SIZE * INITIAL_SPANS];
+    }
     try {
       newHighlighting.save();
     } catch (IllegalStateException e) {
@@ -141,41 +103,150 @@ public class CxxHighlighterVisitor extends SquidAstVisitor<Grammar> implements A
   @Override
   public void visitToken(Token token) {
     if (!token.isGeneratedCode()) {
-      TokenLocation last = null;
-      if (token.getType().equals(CxxTokenType.NUMBER)) {
-        last = highlight(last, new TokenLocation(token), TypeOfText.CONSTANT);
-      } else if (token.getType() instanceof CxxKeyword) {
-        last = highlight(last, new TokenLocation(token), TypeOfText.KEYWORD);
-      } else if (token.getType().equals(CxxTokenType.STRING) || token.getType().equals(CxxTokenType.CHARACTER)) {
-        last = highlight(last, new TokenLocation(token), TypeOfText.STRING);
+      highlightToken(token);
+      for (Trivia trivia : token.getTrivia()) {
+        highlightTrivia(trivia);
       }
+    }
+  }
 
-      for (Trivia trivia : token.getTrivia()) {
-        if (trivia.isComment()) {
-          highlight(last, new CommentLocation(trivia.getToken()), TypeOfText.COMMENT);
-        } else if (trivia.isSkippedText()
-          && trivia.getToken().getType().equals(CxxTokenType.PREPROCESSOR)) {
-          highlight(last, new PreprocessorDirectiveLocation(trivia.getToken()), TypeOfText.PREPROCESS_DIRECTIVE);
+  /**
+   * Highlights a token which is not generated code and remembers its location for the trivia of the token.
+   */
+  void highlightToken(Token token) {
+    hasLast = false;
+    TypeOfText typeOfText = null;
+    if (token.getType().equals(CxxTokenType.NUMBER)) {
+      typeOfText = TypeOfText.CONSTANT;
+    } else if (token.getType() instanceof CxxKeyword) {
+      typeOfText = TypeOfText.KEYWORD;
+    } else if (token.getType().equals(CxxTokenType.STRING) || token.getType().equals(CxxTokenType.CHARACTER)) {
+      typeOfText = TypeOfText.STRING;
+    }
+    if (typeOfText != null) {
+      int line = token.getLine();
+      int column = token.getColumn();
+      int endLineOffset = column + token.getValue().length();
+      add(line, column, line, endLineOffset, typeOfText);
+      hasLast = true;
+      lastStartLine = line;
+      lastStartLineOffset = column;
+      lastEndLineOffset = endLineOffset;
+    }
+  }
+
+  /**
+   * Highlights a trivia of the token last passed to {@link #highlightToken(Token)}.
+   */
+  void highlightTrivia(Trivia trivia) {
+    Token token = trivia.getToken();
+    if (trivia.isComment()) {
+      highlightComment(token);
+    } else if (trivia.isSkippedText() && token.getType().equals(CxxTokenType.PREPROCESSOR)) {
+      int length = directiveLength(token.getValue());
+      if (length > 0) {
+        int column = token.getColumn();
+        highlightIfFree(token.getLine(), column, token.getLine(), column + length, TypeOfText.PREPROCESS_DIRECTIVE);
+      }
+    }
+  }
+
+  private void highlightComment(Token token) {
+    String value = token.getValue();
+    int line = token.getLine();
+    int endLine = line;
+    int lastLineStart = -1;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '\n' || c == '\r') {
+        if (c == '\r' && i + 1 < length && value.charAt(i + 1) == '\n') {
+          i++;
         }
+        endLine++;
+        lastLineStart = i + 1;
       }
     }
+    int column = token.getColumn();
+    int endLineOffset = lastLineStart < 0 ? column + length : length - lastLineStart;
+    highlightIfFree(line, column, endLine, endLineOffset, TypeOfText.COMMENT);
+  }
+
+  /**
+   * Length of the leading "#directive" of a preprocessor line, the same as a match of "^[ \t]*#[ \t]*\\w+".
+   *
+   * @return length of the directive, 0 if the value does not start with a directive
+   */
+  static int directiveLength(String value) {
+    int length = value.length();
+    int i = skipBlanks(value, 0);
+    if (i >= length || value.charAt(i) != '#') {
+      return 0;
+    }
+    i = skipBlanks(value, i + 1);
+    int nameStart = i;
+    while (i < length && isWordChar(value.charAt(i))) {
+      i++;
+    }
+    return i > nameStart ? i : 0;
+  }
+
+  private static int skipBlanks(String value, int from) {
+    int i = from;
+    while (i < value.length() && (value.charAt(i) == ' ' || value.charAt(i) == '\t')) {
+      i++;
+    }
+    return i;
   }
 
-  private TokenLocation highlight(TokenLocation last, TokenLocation current, TypeOfText typeOfText) {
+  private static boolean isWordChar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  private void highlightIfFree(int startLine, int startLineOffset, int endLine, int endLineOffset,
+    TypeOfText typeOfText) {
+    boolean overlaps = hasLast
+      && !(startLineOffset > lastEndLineOffset
+      || lastStartLineOffset > endLineOffset
+      || startLine > lastStartLine
+      || lastStartLine > endLine);
+    if (!overlaps) {
+      add(startLine, startLineOffset, endLine, endLineOffset, typeOfText);
+    }
+  }
+
+  private void add(int startLine, int startLineOffset, int endLine, int endLineOffset, TypeOfText typeOfText) {
+    int offset = spanCount * SPAN_SIZE;
+    if (offset + SPAN_SIZE > spans.length) {
+      spans = Arrays.copyOf(spans, spans.length * 2);
+    }
+    spans[offset] = startLine;
+    spans[offset + 1] = startLineOffset;
+    spans[offset + 2] = endLine;
+    spans[offset + 3] = endLineOffset;
+    spans[offset + 4] = typeOfText.ordinal();
+    spanCount++;
+  }
+
+  /**
+   * @return number of spans the buffer holds without growing
+   */
+  int getSpanCapacity() {
+    return spans.length / SPAN_SIZE;
+  }
+
+  private void flush(int offset) {
     try {
-      if (!current.overlaps(last)) {
-        newHighlighting.highlight(current.startLine(), current.startLineOffset(),
-          current.endLine(), current.endLineOffset(), typeOfText);
-      }
+      newHighlighting.highlight(spans[offset], spans[offset + 1], spans[offset + 2], spans[offset + 3],
+        TYPES_OF_TEXT[spans[offset + 4]]);
     } catch (IllegalArgumentException ex) {
       // ignore highlight errors: parsing errors could lead to wrong location data
       LOG.warn("Highligthing error in file '{}' at line:{}, column:{}", getContext().getFile().getAbsoluteFile(),
-        current.startLine(), current.startLineOffset());
+        spans[offset], spans[offset + 1]);
       if (LOG.isDebugEnabled()) {
         LOG.debug("highlighing exception {}", ex);
       }
     }
-    return current;
   }
 
 }
@@ -0,0 +1,94 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.coverage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+/**
+ * Stress test of the coverage parsers: reports parsed in parallel into their own maps give the same measures as a
+ * sequential parse, the results are shared by a CxxCoverageCache.
+ */
+public class ConcurrentCoverageParserTest {
+
+  private static final int THREADS = 4;
+  private static final int PARSES = 2 * THREADS;
+  private static final File REPORTS = new File(
+    "src/test/resources/org/sonar/cxx/sensors/reports-project/coverage-reports/bullseye");
+
+  @Test
+  public void parallel_bullseye_parses_report_the_same_results() throws Exception {
+    List<File> reports = new ArrayList<>(Arrays.asList(REPORTS.listFiles(File::isFile)));
+    Collections.sort(reports);
+    SensorContextTester context = SensorContextTester.create(REPORTS);
+    String expected = parse(context, reports, new CxxCoverageCache(), "expected");
+
+    CxxCoverageCache cache = new CxxCoverageCache();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < PARSES; i++) {
+        String key = "parse" + i;
+        results.add(executor.submit(() -> parse(context, reports, cache, key)));
+      }
+      for (Future<String> result : results) {
+        assertThat(result.get()).isEqualTo(expected);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(cache.unitCoverageCache()).hasSize(PARSES * reports.size());
+  }
+
+  private static String parse(SensorContextTester context, List<File> reports, CxxCoverageCache cache, String key)
+    throws Exception {
+    BullseyeParser parser = new BullseyeParser();
+    List<String> lines = new ArrayList<>();
+    for (File report : reports) {
+      Map<String, CoverageMeasures> coverageData = new HashMap<>();
+      parser.processReport(context, report, coverageData);
+      cache.unitCoverageCache().put(key + ":" + report.getName(), coverageData);
+    }
+    for (File report : reports) {
+      Map<String, CoverageMeasures> coverageData = cache.unitCoverageCache().get(key + ":" + report.getName());
+      for (Map.Entry<String, CoverageMeasures> file : coverageData.entrySet()) {
+        for (CoverageMeasure measure : file.getValue().getCoverageMeasures()) {
+          lines.add(report.getName() + ":" + file.getKey() + ":" + measure.getLine() + ":" + measure.getHits() + ":"
+            + measure.getConditions() + ":" + measure.getCoveredConditions());
+        }
+      }
+    }
+    assertThat(lines).isNotEmpty();
+    Collections.sort(lines);
+    return String.join("\n", lines);
+  }
+
+}
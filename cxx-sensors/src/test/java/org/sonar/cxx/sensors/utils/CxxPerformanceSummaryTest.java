@@ -0,0 +1,104 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.postjob.PostJobContext;
+import org.sonar.cxx.CxxScanStatistics;
+
+public class CxxPerformanceSummaryTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static CxxScanStatistics statistics() {
+    CxxScanStatistics statistics = new CxxScanStatistics();
+    statistics.startPreprocessing(200);
+    statistics.endPreprocessing(600);
+    statistics.addParse(100, 1000);
+    statistics.addFile(500, 50);
+    statistics.addIncludeHit();
+    statistics.addIncludeMiss();
+    statistics.addMacroExpansion();
+    return statistics;
+  }
+
+  @Test
+  public void totals() {
+    CxxPerformanceSummary summary = new CxxPerformanceSummary();
+    assertThat(summary.isEmpty()).isTrue();
+    summary.addScan(statistics(), 500000000L);
+    summary.addScan(statistics(), 500000000L);
+    summary.addSensor("CppCheck", 10);
+    summary.addSensor("CppCheck", 20);
+
+    assertThat(summary.isEmpty()).isFalse();
+    assertThat(summary.getFiles()).isEqualTo(2);
+    assertThat(summary.getLines()).isEqualTo(1000);
+    assertThat(summary.getLinesPerSecond()).isEqualTo(1000.0);
+    assertThat(summary.getSensorNanos("CppCheck")).isEqualTo(30);
+    assertThat(summary.getSensorNanos("Squid")).isEqualTo(0);
+  }
+
+  @Test
+  public void json() {
+    CxxPerformanceSummary summary = new CxxPerformanceSummary();
+    summary.addScan(statistics(), 1000000000L);
+    summary.addSensor("Squid", 1000000000L);
+
+    StringWriter writer = new StringWriter();
+    summary.writeJson(writer);
+    assertThat(writer.toString())
+      .contains("\"files\":1,\"lines\":500,\"linesPerSecond\":500")
+      .contains("\"timeNanos\":{\"lex\":100,\"preprocess\":400,\"parse\":400,\"visitors\":50}")
+      .contains("\"sensorTimeNanos\":{\"Squid\":1000000000}")
+      .contains("\"includes\":{\"hits\":1,\"misses\":1}")
+      .contains("\"macroExpansions\":1,\"parseErrors\":0,\"peakHeapBytes\":");
+  }
+
+  @Test
+  public void postJobWritesSummary() throws IOException {
+    DefaultFileSystem fs = new DefaultFileSystem(tmp.getRoot());
+    fs.setWorkDir(tmp.newFolder("work").toPath());
+    CxxPerformanceSummary summary = new CxxPerformanceSummary();
+    CxxPerformanceSummaryPostJob postJob = new CxxPerformanceSummaryPostJob(summary, TestUtils.mockCxxLanguage(), fs);
+    File report = new File(fs.workDir(), "cxx" + CxxPerformanceSummaryPostJob.REPORT_SUFFIX);
+
+    postJob.execute(Mockito.mock(PostJobContext.class));
+    assertThat(report).doesNotExist();
+
+    summary.addSensor("Squid", 42);
+    postJob.execute(Mockito.mock(PostJobContext.class));
+    assertThat(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8))
+      .contains("\"sensorTimeNanos\":{\"Squid\":42}");
+    assertThat(summary.isEmpty()).isTrue();
+  }
+
+}
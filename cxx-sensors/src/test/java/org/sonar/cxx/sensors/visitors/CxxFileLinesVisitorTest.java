@@ -34,12 +34,14 @@ import org.assertj.core.api.SoftAssertions;
 import org.junit.Before;
 import org.junit.Test;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.cxx.CxxAstScanner;
@@ -137,4 +139,26 @@ public class CxxFileLinesVisitorTest {
     assertThat(visitor.getExecutableLines()).containsExactlyInAnyOrder(10, 26, 34, 35, 56, 59, 69, 70, 72, 73,
       75, 76, 79, 87, 90, 98, 102, 118, 119, 126);
   }
+
+  @Test
+  public void TestLinesOfCodeWithoutRetention() throws UnsupportedEncodingException, IOException {
+    String content = new String(Files.readAllBytes(target.toPath()), "UTF-8");
+    DefaultInputFile inputFile = TestInputFileBuilder.create("ProjectKey", baseDir, target).setContents(content)
+      .setCharset(Charset.forName("UTF-8")).setLanguage(language.getKey())
+      .setType(InputFile.Type.MAIN).build();
+
+    SensorContextTester sensorContext = SensorContextTester.create(baseDir);
+    sensorContext.fileSystem().add(inputFile);
+
+    when(fileLinesContextFactory.createFor(inputFile)).thenReturn(fileLinesContext);
+
+    CxxFileLinesVisitor visitor = new CxxFileLinesVisitor(language, fileLinesContextFactory, sensorContext);
+
+    CxxAstScanner.scanSingleFile(inputFile, sensorContext, TestUtils.mockCxxLanguage(), visitor);
+
+    assertThat(visitor.getLinesOfCode()).containsExactlyInAnyOrderElementsOf(testLines);
+    verify(fileLinesContext).setIntValue(CoreMetrics.NCLOC_DATA_KEY, 8, 1);
+    verify(fileLinesContext).save();
+  }
+
 }
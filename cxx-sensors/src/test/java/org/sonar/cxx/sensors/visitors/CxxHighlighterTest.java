@@ -19,6 +19,11 @@
  */
 package org.sonar.cxx.sensors.visitors;
 
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -32,7 +37,12 @@ import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.batch.sensor.highlighting.TypeOfText;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
 import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.api.CxxKeyword;
+import org.sonar.cxx.api.CxxTokenType;
 import org.sonar.cxx.sensors.utils.TestUtils;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class CxxHighlighterTest {
 
@@ -151,6 +161,116 @@ public class CxxHighlighterTest {
     checkOnRange(20, 0, 7, TypeOfText.PREPROCESS_DIRECTIVE); // #define
   }
 
+  @Test
+  public void directiveLength() {
+    assertThat(CxxHighlighterVisitor.directiveLength("#include <a.h>")).isEqualTo(8);
+    assertThat(CxxHighlighterVisitor.directiveLength(" \t#  define A 1")).isEqualTo(11);
+    assertThat(CxxHighlighterVisitor.directiveLength("#if_1")).isEqualTo(5);
+    assertThat(CxxHighlighterVisitor.directiveLength("#")).isEqualTo(0);
+    assertThat(CxxHighlighterVisitor.directiveLength("# !")).isEqualTo(0);
+    assertThat(CxxHighlighterVisitor.directiveLength("x #define")).isEqualTo(0);
+  }
+
+  @Test
+  @SuppressWarnings("squid:S2699") // ... checkMultiLineComment contains the assertion
+  public void multiLineCommentWithCrLf() {
+    CxxHighlighterVisitor visitor = visit("crlf.cc", "/*x\r\n yy\r\n*/ int a;\r\n");
+    visitor.highlightTrivia(Trivia.createComment(token(GenericTokenType.COMMENT, "/*x\r\n yy\r\n*/", 1, 0)));
+    visitor.leaveFile(null);
+
+    checkMultiLineComment();
+  }
+
+  @Test
+  @SuppressWarnings("squid:S2699") // ... checkMultiLineComment contains the assertion
+  public void multiLineCommentWithCr() {
+    CxxHighlighterVisitor visitor = visit("cr.cc", "/*x\r yy\r*/ int a;\r");
+    visitor.highlightTrivia(Trivia.createComment(token(GenericTokenType.COMMENT, "/*x\r yy\r*/", 1, 0)));
+    visitor.leaveFile(null);
+
+    checkMultiLineComment();
+  }
+
+  @Test
+  @SuppressWarnings("squid:S2699") // ... checkOnRange contains the assertion
+  public void directiveOverlappingToken() {
+    CxxHighlighterVisitor visitor = visit("overlap.cc", "#if A\n");
+    visitor.highlightToken(token(CxxKeyword.IF, "if", 1, 1));
+    visitor.highlightTrivia(Trivia.createSkippedText(token(CxxTokenType.PREPROCESSOR, "#if A", 1, 0)));
+    visitor.leaveFile(null);
+
+    checkOnRange(1, 1, 2, TypeOfText.KEYWORD);
+  }
+
+  @Test
+  @SuppressWarnings("squid:S2699") // ... check contains the assertion
+  public void directiveWithoutName() {
+    CxxHighlighterVisitor visitor = visit("noname.cc", "#\n# !\n");
+    visitor.highlightTrivia(Trivia.createSkippedText(token(CxxTokenType.PREPROCESSOR, "#", 1, 0)));
+    visitor.highlightTrivia(Trivia.createSkippedText(token(CxxTokenType.PREPROCESSOR, "# !", 2, 0)));
+    visitor.leaveFile(null);
+
+    for (int column = 0; column < 3; column++) {
+      check(1, column, null);
+      check(2, column, null);
+    }
+  }
+
+  @Test
+  public void bufferReleasedAfterLargeFile() {
+    int lines = 20_000;
+    StringBuilder content = new StringBuilder();
+    for (int line = 0; line < lines; line++) {
+      content.append("//\n");
+    }
+    CxxHighlighterVisitor visitor = visit("large.cc", content.toString());
+    int initialCapacity = visitor.getSpanCapacity();
+    for (int line = 1; line <= lines; line++) {
+      visitor.highlightTrivia(Trivia.createComment(token(GenericTokenType.COMMENT, "//", line, 0)));
+    }
+    assertThat(visitor.getSpanCapacity()).isGreaterThanOrEqualTo(lines);
+    visitor.leaveFile(null);
+
+    assertThat(visitor.getSpanCapacity()).isEqualTo(initialCapacity);
+    checkOnRange(lines, 0, 2, TypeOfText.COMMENT);
+  }
+
+  /**
+   * Checks the highlighting of the three line comment at the start of the file.
+   */
+  private void checkMultiLineComment() {
+    for (int column = 0; column < 3; column++) {
+      check(1, column, TypeOfText.COMMENT);
+      check(2, column, TypeOfText.COMMENT);
+    }
+    checkOnRange(3, 0, 2, TypeOfText.COMMENT);
+  }
+
+  /**
+   * Starts the highlighting of a file with the given content, the checks of the test run on this file.
+   */
+  @SuppressWarnings("unchecked")
+  private CxxHighlighterVisitor visit(String fileName, String content) {
+    File baseDir = target.getParentFile();
+    target = new File(baseDir, fileName);
+    DefaultInputFile inputFile = TestInputFileBuilder.create("ProjectKey", baseDir, target)
+      .setContents(content).setCharset(Charset.forName("UTF-8")).build();
+    context = SensorContextTester.create(baseDir);
+    context.fileSystem().add(inputFile);
+
+    SquidAstVisitorContext<Grammar> squidContext = mock(SquidAstVisitorContext.class);
+    when(squidContext.getFile()).thenReturn(target);
+    CxxHighlighterVisitor visitor = new CxxHighlighterVisitor(context);
+    visitor.setContext(squidContext);
+    visitor.visitFile(null);
+    return visitor;
+  }
+
+  private Token token(TokenType type, String value, int line, int column) {
+    return Token.builder().setType(type).setValueAndOriginalValue(value).setURI(target.toURI())
+      .setLine(line).setColumn(column).build();
+  }
+
   /**
    * Checks the highlighting of a range of columns. The first column of a line has index 0. The range is the columns of
    * the token.
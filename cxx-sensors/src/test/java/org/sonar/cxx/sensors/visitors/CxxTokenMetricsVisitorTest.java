@@ -0,0 +1,118 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.sensors.visitors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.sensors.utils.TestUtils;
+import org.sonar.duplications.internal.pmd.TokensLine;
+
+public class CxxTokenMetricsVisitorTest {
+
+  private CxxLanguage language;
+  private File baseDir;
+  private File target;
+
+  @Before
+  public void setUp() {
+    language = TestUtils.mockCxxLanguage();
+    baseDir = TestUtils.loadResource("/org/sonar/cxx/sensors");
+    target = new File(baseDir, "highlighter.cc");
+  }
+
+  private static class Result {
+
+    Set<Integer> linesOfCode;
+    Set<Integer> linesOfComments;
+    Set<Integer> executableLines;
+    List<String> cpdTokens = new ArrayList<>();
+    List<String> highlighting = new ArrayList<>();
+  }
+
+  private Result scan(boolean fused) throws IOException {
+    String content = new String(Files.readAllBytes(target.toPath()), "UTF-8");
+    DefaultInputFile inputFile = TestInputFileBuilder.create("ProjectKey", baseDir, target).setContents(content)
+      .setCharset(Charset.forName("UTF-8")).setLanguage(language.getKey())
+      .setType(InputFile.Type.MAIN).build();
+
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    context.fileSystem().add(inputFile);
+
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(inputFile)).thenReturn(mock(FileLinesContext.class));
+
+    CxxFileLinesVisitor fileLines = new CxxFileLinesVisitor(language, fileLinesContextFactory, context);
+    CxxHighlighterVisitor highlighter = new CxxHighlighterVisitor(context);
+    CxxCpdVisitor cpd = new CxxCpdVisitor(context, false, false);
+    if (fused) {
+      CxxAstScanner.scanSingleFile(inputFile, context, language,
+        new CxxTokenMetricsVisitor(fileLines, highlighter, cpd));
+    } else {
+      CxxAstScanner.scanSingleFile(inputFile, context, language, highlighter, fileLines, cpd);
+    }
+
+    Result result = new Result();
+    result.linesOfCode = fileLines.getLinesOfCode();
+    result.linesOfComments = fileLines.getLinesOfComments();
+    result.executableLines = fileLines.getExecutableLines();
+    for (TokensLine line : context.cpdTokens(inputFile.key())) {
+      result.cpdTokens.add(line.getStartLine() + ":" + line.getValue());
+    }
+    String[] lines = content.split("\r\n|\n|\r", -1);
+    for (int line = 1; line <= lines.length; line++) {
+      for (int offset = 0; offset < lines[line - 1].length(); offset++) {
+        result.highlighting.add(line + ":" + offset + ":" + context.highlightingTypeAt(inputFile.key(), line, offset));
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void same_results_as_single_visitors() throws IOException {
+    Result single = scan(false);
+    Result fused = scan(true);
+
+    assertThat(fused.linesOfCode).isEqualTo(single.linesOfCode);
+    assertThat(fused.linesOfComments).isEqualTo(single.linesOfComments).isNotEmpty();
+    assertThat(fused.executableLines).isEqualTo(single.executableLines);
+    assertThat(fused.cpdTokens).isEqualTo(single.cpdTokens).isNotEmpty();
+    assertThat(fused.highlighting).isEqualTo(single.highlighting);
+  }
+
+}
@@ -21,10 +21,18 @@ package org.sonar.plugins.cxx.squid;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.Before;
 import org.junit.Test;
@@ -36,13 +44,18 @@ import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
 import org.sonar.api.batch.sensor.measure.Measure;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.rule.RuleKey;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.checks.FunctionComplexityCheck;
+import org.sonar.cxx.checks.TooManyLinesOfCodeInFileCheck;
 import org.sonar.cxx.sensors.coverage.CxxCoverageSensor;
 import org.sonar.cxx.sensors.squid.CxxSquidSensor;
 import org.sonar.cxx.sensors.utils.TestUtils;
@@ -211,6 +224,93 @@ public class CxxSquidSensorTest {
     assertThat(GetIntegerMeasureByKey(measures, CoreMetrics.NCLOC).value()).isEqualTo(1);
   }
 
+  @Test
+  public void testStreamingSave() throws UnsupportedEncodingException, IOException {
+    when(this.language.getBooleanOption(CxxSquidSensor.STREAMING_SAVE_KEY)).thenReturn(Optional.of(Boolean.TRUE));
+    File baseDir = TestUtils.loadResource("/org/sonar/cxx/sensors/complexity-project");
+    File target = new File(baseDir, "complexity.cc");
+
+    String content = new String(Files.readAllBytes(target.toPath()), "UTF-8");
+    DefaultInputFile inputFile = TestInputFileBuilder.create("ProjectKey", baseDir, target).setContents(content)
+      .setLanguage(language.getKey()).setType(InputFile.Type.MAIN).build();
+
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    context.fileSystem().add(inputFile);
+    sensor.execute(context);
+
+    // function and class measures are aggregated into the file before it is released
+    Collection<Measure> measures = context.measures("ProjectKey:complexity.cc");
+
+    assertThat(GetIntegerMeasureByKey(measures, CoreMetrics.FILES).value()).isEqualTo(1);
+    assertThat(GetIntegerMeasureByKey(measures, CoreMetrics.FUNCTIONS).value()).isEqualTo(22);
+    assertThat(GetIntegerMeasureByKey(measures, CoreMetrics.CLASSES).value()).isEqualTo(2);
+    assertThat(GetIntegerMeasureByKey(measures, CoreMetrics.COMPLEXITY).value()).isEqualTo(38);
+  }
+
+  @Test
+  public void testStreamingSaveMatchesSaveAfterScan() throws IOException {
+    File baseDir = TestUtils.loadResource("/org/sonar/cxx/sensors/codechunks-project");
+    File target = new File(baseDir, "code_chunks.cc");
+
+    SensorContextTester afterScan = scanWithChecks(baseDir, target, false);
+    SensorContextTester streaming = scanWithChecks(baseDir, target, true);
+
+    Map<String, Serializable> measures = measuresByMetric(afterScan.measures("ProjectKey:code_chunks.cc"));
+    assertThat(measures).containsEntry(CoreMetrics.COMMENT_LINES_KEY, 15).containsEntry(CoreMetrics.NCLOC_KEY, 54);
+    assertThat(measuresByMetric(streaming.measures("ProjectKey:code_chunks.cc"))).isEqualTo(measures);
+
+    // TooManyLinesOfCodeInFile raises its issue in leaveFile, FunctionComplexity in leaveNode
+    List<String> issues = issues(afterScan);
+    assertThat(issues).hasSize(2)
+      .contains("TooManyLinesOfCodeInFile:1:This file has 54 lines of code, which is greater than 10 authorized. "
+        + "Split it into smaller files.");
+    assertThat(issues(streaming)).isEqualTo(issues);
+  }
+
+  private SensorContextTester scanWithChecks(File baseDir, File target, boolean streamingSave) throws IOException {
+    CxxLanguage checkedLanguage = TestUtils.mockCxxLanguage();
+    when(checkedLanguage.getChecks()).thenReturn(
+      Arrays.<Class>asList(TooManyLinesOfCodeInFileCheck.class, FunctionComplexityCheck.class));
+    when(checkedLanguage.getBooleanOption(CxxSquidSensor.STREAMING_SAVE_KEY))
+      .thenReturn(Optional.of(streamingSave));
+    ActiveRules rules = new ActiveRulesBuilder()
+      .create(RuleKey.of("cxx", "TooManyLinesOfCodeInFile")).setParam("max", "10").activate()
+      .create(RuleKey.of("cxx", "FunctionComplexity")).setParam("max", "4").activate()
+      .build();
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(Mockito.any(InputFile.class))).thenReturn(mock(FileLinesContext.class));
+    CxxSquidSensor checkedSensor = new CxxSquidSensor(checkedLanguage, fileLinesContextFactory,
+      new CheckFactory(rules), null);
+
+    String content = new String(Files.readAllBytes(target.toPath()), "UTF-8");
+    DefaultInputFile inputFile = TestInputFileBuilder.create("ProjectKey", baseDir, target).setContents(content)
+      .setCharset(Charset.forName("UTF-8")).setLanguage(checkedLanguage.getKey())
+      .setType(InputFile.Type.MAIN).build();
+
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    context.fileSystem().add(inputFile);
+    checkedSensor.execute(context);
+    return context;
+  }
+
+  private static Map<String, Serializable> measuresByMetric(Collection<Measure> measures) {
+    Map<String, Serializable> values = new TreeMap<>();
+    for (Measure measure : measures) {
+      values.put(measure.metric().key(), measure.value());
+    }
+    return values;
+  }
+
+  private static List<String> issues(SensorContextTester context) {
+    List<String> issues = new ArrayList<>();
+    for (Issue issue : context.allIssues()) {
+      issues.add(issue.ruleKey().rule() + ":" + issue.primaryLocation().textRange().start().line() + ":"
+        + issue.primaryLocation().message());
+    }
+    Collections.sort(issues);
+    return issues;
+  }
+
   private Measure GetIntegerMeasureByKey(Collection<Measure> measures, Metric<Integer> metric) {
     for (Measure measure : measures) {
       if (measure.metric().equals(metric)) {
@@ -19,32 +19,51 @@
  */
 package org.sonar.cxx;
 
+import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.AstNodeType;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.Token;
-import com.sonar.sslr.impl.Parser;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.utils.AnnotationUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.check.Rule;
 import org.sonar.cxx.api.CxxKeyword;
 import org.sonar.cxx.api.CxxMetric;
 import org.sonar.cxx.api.CxxPunctuator;
+import org.sonar.cxx.parser.CxxFallbackParser;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.cxx.parser.CxxParser;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.cxx.visitors.CxxAncestors;
 import org.sonar.cxx.visitors.CxxCharsetAwareVisitor;
 import org.sonar.cxx.visitors.CxxCognitiveComplexityVisitor;
 import org.sonar.cxx.visitors.CxxFileVisitor;
+import org.sonar.cxx.visitors.CxxGrammarProfilerVisitor;
+import org.sonar.cxx.visitors.CxxLeaveFileLastVisitor;
 import org.sonar.cxx.visitors.CxxLinesOfCodeVisitor;
 import org.sonar.cxx.visitors.CxxParseErrorLoggerVisitor;
 import org.sonar.cxx.visitors.CxxPublicApiVisitor;
+import org.sonar.cxx.visitors.CxxSkippedTextAwareVisitor;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
+import org.sonar.cxx.visitors.CxxVisitorProfiler;
 import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.AstScannerExceptionHandler;
 import org.sonar.squidbridge.CommentAnalyser;
 import org.sonar.squidbridge.SourceCodeBuilderCallback;
 import org.sonar.squidbridge.SourceCodeBuilderVisitor;
 import org.sonar.squidbridge.SquidAstVisitor;
-import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.SquidAstVisitorContext;
 import org.sonar.squidbridge.api.SourceClass;
 import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
@@ -58,6 +77,8 @@ import org.sonar.squidbridge.metrics.LinesVisitor;
 
 public final class CxxAstScanner {
 
+  private static final Logger LOG = Loggers.get(CxxAstScanner.class);
+
   private CxxAstScanner() {
   }
 
@@ -104,6 +125,12 @@ public final class CxxAstScanner {
   /**
    * Create scanner for language
    *
+   * Thread-safety: a scanner and the visitors registered at it belong to one scan and are used by one thread at a
+   * time. Parallel scans need their own check instances, a check instance must not be registered at several scanners.
+   * Checks keep their state in instance fields; data shared by the checks of a scan, e.g. a batch of patterns of
+   * several checks, is kept in the scan data of the visitor context ({@link CxxSquidAstVisitorContext#getScanData})
+   * and never in static fields.
+   *
    * @param language for sensor
    * @param conf settings for sensor
    * @param sensorContext for sensor
@@ -113,12 +140,53 @@ public final class CxxAstScanner {
   @SafeVarargs
   public static AstScanner<Grammar> create(CxxLanguage language, CxxConfiguration conf,
     SquidAstVisitor<Grammar>... visitors) {
-    final SquidAstVisitorContextImpl<Grammar> context
-      = new SquidAstVisitorContextImpl<>(new SourceProject("Cxx Project"));
-    final Parser<Grammar> parser = CxxParser.create(context, conf, language);
+    final CxxSquidAstVisitorContext<Grammar> context
+      = new CxxSquidAstVisitorContext<>(new SourceProject("Cxx Project"), conf.getCharset());
+
+    // skipped text trivia of inactive code and macro invocations is only kept if a visitor uses it
+    boolean skippedTextNeeded = false;
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      skippedTextNeeded |= visitor instanceof CxxSkippedTextAwareVisitor;
+    }
+    // the grammar profiler collects its statistics during the parse with its own instrumented grammar
+    Grammar grammar = null;
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      if (visitor instanceof CxxGrammarProfilerVisitor) {
+        grammar = ((CxxGrammarProfilerVisitor<?>) visitor).getGrammar();
+      }
+    }
+
+    final CxxFallbackParser parser = CxxFallbackParser.create(context, conf, language, grammar);
+    if (context.getPreprocessor() != null) {
+      context.getPreprocessor().setSkippedTextTriviaEnabled(skippedTextNeeded);
+    }
 
     AstScanner.Builder<Grammar> builder = AstScanner.<Grammar>builder(context).setBaseParser(parser);
 
+    // data of the visitors of a file is dropped after all visitors left the file, they leave it in reverse order
+    builder.withSquidAstVisitor(new SquidAstVisitor<Grammar>() {
+      @Override
+      public void leaveFile(@Nullable AstNode astNode) {
+        context.clearFileData();
+      }
+    });
+
+    // statistics and flight recorder event of the visitor phase, visitors leave a file in reverse order
+    builder.withSquidAstVisitor(new VisitorPhaseVisitor(CxxScanStatistics.of(context)));
+
+    // visitors are only wrapped if profiling is enabled
+    final CxxVisitorProfiler profiler = conf.getVisitorProfileReportFile() != null ? new CxxVisitorProfiler() : null;
+
+    /* Ancestor stacks of the node types tracked by the visitors, visited before all other visitors */
+    register(builder, profiler, CxxAncestors.of(context).getVisitor());
+
+    // visitors which use the results of the other visitors, they leave a file after them
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      if (visitor instanceof CxxLeaveFileLastVisitor) {
+        register(builder, profiler, visitor);
+      }
+    }
+
     /* Metrics */
     builder.withMetrics(CxxMetric.values());
 
@@ -147,7 +215,7 @@ public final class CxxAstScanner {
     });
 
     /* Functions */
-    builder.withSquidAstVisitor(new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
+    register(builder, profiler, new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
       @Override
       public SourceCode createSourceCode(SourceCode parentSourceCode, AstNode astNode) {
         StringBuilder sb = new StringBuilder();
@@ -174,13 +242,13 @@ public final class CxxAstScanner {
       }
     }, CxxGrammarImpl.functionDefinition));
 
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
+    register(builder, profiler, CounterVisitor.<Grammar>builder()
       .setMetricDef(CxxMetric.FUNCTIONS)
       .subscribeTo(CxxGrammarImpl.functionDefinition)
       .build());
 
     /* Classes */
-    builder.withSquidAstVisitor(new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
+    register(builder, profiler, new SourceCodeBuilderVisitor<>(new SourceCodeBuilderCallback() {
       @Override
       public SourceCode createSourceCode(SourceCode parentSourceCode, AstNode astNode) {
         AstNode classNameAst = astNode.getFirstDescendant(CxxGrammarImpl.className);
@@ -191,25 +259,25 @@ public final class CxxAstScanner {
       }
     }, CxxGrammarImpl.classSpecifier));
 
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
+    register(builder, profiler, CounterVisitor.<Grammar>builder()
       .setMetricDef(CxxMetric.CLASSES)
       .subscribeTo(CxxGrammarImpl.classSpecifier)
       .build());
 
     /* Metrics */
-    builder.withSquidAstVisitor(new LinesVisitor<>(CxxMetric.LINES));
-    builder.withSquidAstVisitor(new CxxLinesOfCodeVisitor<>(CxxMetric.LINES_OF_CODE));
-    builder.withSquidAstVisitor(new CxxPublicApiVisitor<>(CxxMetric.PUBLIC_API,
+    register(builder, profiler, new LinesVisitor<>(CxxMetric.LINES));
+    register(builder, profiler, new CxxLinesOfCodeVisitor<>(CxxMetric.LINES_OF_CODE));
+    register(builder, profiler, new CxxPublicApiVisitor<>(CxxMetric.PUBLIC_API,
       CxxMetric.PUBLIC_UNDOCUMENTED_API)
       .withHeaderFileSuffixes(conf.getHeaderFileSuffixes()));
 
-    builder.withSquidAstVisitor(CommentsVisitor.<Grammar>builder().withCommentMetric(CxxMetric.COMMENT_LINES)
+    register(builder, profiler, CommentsVisitor.<Grammar>builder().withCommentMetric(CxxMetric.COMMENT_LINES)
       .withNoSonar(true)
       .withIgnoreHeaderComment(conf.getIgnoreHeaderComments())
       .build());
 
     /* Statements */
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
+    register(builder, profiler, CounterVisitor.<Grammar>builder()
       .setMetricDef(CxxMetric.STATEMENTS)
       .subscribeTo(CxxGrammarImpl.statement)
       .build());
@@ -228,33 +296,86 @@ public final class CxxAstScanner {
       CxxPunctuator.QUEST
     };
 
-    builder.withSquidAstVisitor(ComplexityVisitor.<Grammar>builder()
+    register(builder, profiler, ComplexityVisitor.<Grammar>builder()
       .setMetricDef(CxxMetric.COMPLEXITY)
       .subscribeTo(complexityAstNodeType)
       .build());
 
-    builder.withSquidAstVisitor(CxxCognitiveComplexityVisitor.<Grammar>builder()
+    register(builder, profiler, CxxCognitiveComplexityVisitor.<Grammar>builder()
       .setMetricDef(CxxMetric.COGNITIVE_COMPLEXITY)
       .subscribeTo(CxxGrammarImpl.functionDefinition)
       .build());
 
     // to emit a 'new file' event to the internals of the plugin
-    builder.withSquidAstVisitor(new CxxFileVisitor<>(context));
+    register(builder, profiler, new CxxFileVisitor<>(context));
 
     // log syntax errors
-    builder.withSquidAstVisitor(new CxxParseErrorLoggerVisitor<>(context));
+    register(builder, profiler, new CxxParseErrorLoggerVisitor<>(context));
+
+    // summary of files analyzed in lexer-only mode
+    register(builder, profiler, new SquidAstVisitor<Grammar>() {
+      @Override
+      public void destroy() {
+        parser.logSummary();
+      }
+    });
 
     /* External visitors (typically Check ones) */
     for (SquidAstVisitor<Grammar> visitor : visitors) {
       if (visitor instanceof CxxCharsetAwareVisitor) {
         ((CxxCharsetAwareVisitor) visitor).setCharset(conf.getCharset());
       }
-      builder.withSquidAstVisitor(visitor);
+      if (!(visitor instanceof CxxLeaveFileLastVisitor)) {
+        register(builder, profiler, visitor);
+      }
+    }
+
+    if (profiler != null) {
+      builder.withSquidAstVisitor(new SquidAstVisitor<Grammar>() {
+        @Override
+        public void destroy() {
+          try {
+            profiler.writeReport(Paths.get(conf.getVisitorProfileReportFile()));
+          } catch (IOException | InvalidPathException e) {
+            LOG.warn("Cannot write visitor profile '{}': {}", conf.getVisitorProfileReportFile(), e.getMessage());
+          }
+        }
+      });
+    }
+
+    if (conf.getIncludeProfileReportFile() != null) {
+      builder.withSquidAstVisitor(new SquidAstVisitor<Grammar>() {
+        @Override
+        public void destroy() {
+          CxxPreprocessor cxxpp = CxxParser.getPreprocessor(context);
+          if (cxxpp == null || cxxpp.getIncludeProfiler() == null) {
+            return;
+          }
+          try {
+            cxxpp.getIncludeProfiler().writeReport(Paths.get(conf.getIncludeProfileReportFile()),
+              conf.getIncludeProfileTopCount());
+          } catch (IOException | InvalidPathException e) {
+            LOG.warn("Cannot write include profile '{}': {}", conf.getIncludeProfileReportFile(), e.getMessage());
+          }
+        }
+      });
     }
 
     return builder.build();
   }
 
+  private static void register(AstScanner.Builder<Grammar> builder, @Nullable CxxVisitorProfiler profiler,
+    SquidAstVisitor<Grammar> visitor) {
+    SquidAstVisitor<Grammar> registered = profiler != null ? profiler.wrap(visitor) : visitor;
+    // checks are not run on lexer-only files (e.g. third-party or generated code), they provide metrics only; the
+    // checks are wrapped after the profiler which identifies them by their rule key
+    if (AnnotationUtils.getAnnotation(visitor, Rule.class) != null) {
+      registered = visitor instanceof AstAndTokenVisitor
+        ? new ParsedFileTokenCheck<>(registered) : new ParsedFileCheck<>(registered);
+    }
+    builder.withSquidAstVisitor(registered);
+  }
+
   // Concatenate two strings, but if there is overlap at the intersection,
   // include the intersection/overlap only once.
   public static String intersectingConcatenate(String a, String b) {
@@ -274,4 +395,146 @@ public final class CxxAstScanner {
     // Didn't find any intersection. Fall back to straight concatenation.
     return a + b;
   }
+
+  /**
+   * Measures the visitor phase of a file: registered first, it visits a file before and leaves it after all other
+   * visitors. Declarations skipped by the error recovery are counted as parse errors.
+   */
+  private static class VisitorPhaseVisitor extends SquidAstVisitor<Grammar> {
+
+    private final CxxScanStatistics statistics;
+    private CxxEvents.Event event;
+    private long start;
+
+    VisitorPhaseVisitor(CxxScanStatistics statistics) {
+      this.statistics = statistics;
+    }
+
+    @Override
+    public void init() {
+      subscribeTo(CxxGrammarImpl.recoveredDeclaration);
+    }
+
+    @Override
+    public void visitFile(@Nullable AstNode astNode) {
+      event = CxxEvents.begin(CxxEvents.Type.VISITORS);
+      start = System.nanoTime();
+    }
+
+    @Override
+    public void visitNode(AstNode astNode) {
+      statistics.addParseError();
+    }
+
+    @Override
+    public void leaveFile(@Nullable AstNode astNode) {
+      long nanos = System.nanoTime() - start;
+      int lines = 0;
+      if (astNode != null && astNode.getLastToken() != null) {
+        lines = astNode.getLastToken().getLine();
+      }
+      statistics.addFile(lines, nanos);
+      if (event != null) {
+        event.commit(getContext().getFile().getPath());
+        event = null;
+      }
+    }
+  }
+
+  /**
+   * Checks are not run on lexer-only files (third-party code, generated code, files exceeding their budget): all
+   * calls for a lexer-only AST are dropped instead of being forwarded to the wrapped check.
+   */
+  private static class ParsedFileCheck<G extends Grammar> extends SquidAstVisitor<G>
+    implements AstScannerExceptionHandler {
+
+    protected final SquidAstVisitor<G> delegate;
+    protected boolean lexerOnly;
+
+    ParsedFileCheck(SquidAstVisitor<G> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void setContext(SquidAstVisitorContext<G> context) {
+      super.setContext(context);
+      delegate.setContext(context);
+    }
+
+    @Override
+    public List<AstNodeType> getAstNodeTypesToVisit() {
+      return delegate.getAstNodeTypesToVisit();
+    }
+
+    @Override
+    public void init() {
+      delegate.init();
+    }
+
+    @Override
+    public void visitFile(@Nullable AstNode astNode) {
+      lexerOnly = CxxFallbackParser.isLexerOnly(astNode);
+      if (!lexerOnly) {
+        delegate.visitFile(astNode);
+      }
+    }
+
+    @Override
+    public void visitNode(AstNode astNode) {
+      if (!lexerOnly) {
+        delegate.visitNode(astNode);
+      }
+    }
+
+    @Override
+    public void leaveNode(AstNode astNode) {
+      if (!lexerOnly) {
+        delegate.leaveNode(astNode);
+      }
+    }
+
+    @Override
+    public void leaveFile(@Nullable AstNode astNode) {
+      if (!lexerOnly) {
+        delegate.leaveFile(astNode);
+      }
+    }
+
+    @Override
+    public void destroy() {
+      delegate.destroy();
+    }
+
+    @Override
+    public void processException(Exception e) {
+      if (delegate instanceof AstScannerExceptionHandler) {
+        ((AstScannerExceptionHandler) delegate).processException(e);
+      }
+    }
+
+    @Override
+    public void processRecognitionException(RecognitionException e) {
+      if (delegate instanceof AstScannerExceptionHandler) {
+        ((AstScannerExceptionHandler) delegate).processRecognitionException(e);
+      }
+    }
+  }
+
+  /**
+   * Wrapper of checks which are also visiting tokens.
+   */
+  private static class ParsedFileTokenCheck<G extends Grammar> extends ParsedFileCheck<G>
+    implements AstAndTokenVisitor {
+
+    ParsedFileTokenCheck(SquidAstVisitor<G> delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public void visitToken(Token token) {
+      if (!lexerOnly) {
+        ((AstAndTokenVisitor) delegate).visitToken(token);
+      }
+    }
+  }
 }
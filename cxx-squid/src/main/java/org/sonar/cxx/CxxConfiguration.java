@@ -23,14 +23,17 @@ import java.io.File;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.utils.WildcardPattern;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.preprocessor.CxxIncludeProfiler;
 import org.sonar.squidbridge.api.SquidConfiguration;
 
 public class CxxConfiguration extends SquidConfiguration {
@@ -47,11 +50,23 @@ public class CxxConfiguration extends SquidConfiguration {
   private String baseDir;
   private boolean errorRecoveryEnabled = true;
   private List<String> cFilesPatterns = new ArrayList<>();
+  private List<WildcardPattern> lexerOnlyFilesPatterns = new ArrayList<>();
   private boolean missingIncludeWarningsEnabled = true;
   private String jsonCompilationDatabaseFile;
   private boolean scanOnlySpecifiedSources;
   private CxxCompilationUnitSettings globalCompilationUnitSettings;
   private final HashMap<String, CxxCompilationUnitSettings> compilationUnitSettings = new HashMap<>();
+  private int fileTokenBudget;
+  private long fileTimeBudget;
+  private int macroExpansionMaxDepth;
+  private int macroExpansionMaxTokens;
+  private long macroExpansionTimeBudget;
+  private String visitorProfileReportFile;
+  private String includeProfileReportFile;
+  private int includeProfileTopCount = CxxIncludeProfiler.DEFAULT_TOP_COUNT;
+  private long generatedFileMaxSize;
+  private List<String> generatedCodeMarkers = new ArrayList<>();
+  private int generatedFileMaxTokensPerLine;
 
   private final CxxVCppBuildLogParser cxxVCppParser;
 
@@ -195,6 +210,46 @@ public class CxxConfiguration extends SquidConfiguration {
     }
   }
 
+  public void setLexerOnlyFilesPatterns(@Nullable String[] lexerOnlyFilesPatterns) {
+    if (lexerOnlyFilesPatterns != null) {
+      this.lexerOnlyFilesPatterns = new ArrayList<>();
+      for (String pattern : lexerOnlyFilesPatterns) {
+        if (!pattern.trim().isEmpty()) {
+          this.lexerOnlyFilesPatterns.add(WildcardPattern.create(pattern.trim()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Files matching one of the lexer-only patterns are not preprocessed and parsed, only tokenized. The patterns are
+   * matched against the path relative to the base directory and against the absolute path. Files classified as
+   * generated code or exceeding their budget during a scan are recorded in the data of the scan, see
+   * {@link org.sonar.cxx.parser.CxxLexerOnlyFiles}.
+   *
+   * @param file to check
+   * @return true if the file should be analysed in lexer-only mode
+   */
+  public boolean isLexerOnlyFile(File file) {
+    if (lexerOnlyFilesPatterns.isEmpty()) {
+      return false;
+    }
+    String absolutePath = file.getAbsolutePath().replace('\\', '/');
+    String relativePath = absolutePath;
+    if (baseDir != null) {
+      String base = baseDir.replace('\\', '/');
+      if (absolutePath.startsWith(base + "/")) {
+        relativePath = absolutePath.substring(base.length() + 1);
+      }
+    }
+    for (WildcardPattern pattern : lexerOnlyFilesPatterns) {
+      if (pattern.match(relativePath) || pattern.match(absolutePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void setHeaderFileSuffixes(List<String> headerFileSuffixes) {
     this.headerFileSuffixes = new ArrayList<>(headerFileSuffixes);
   }
@@ -233,6 +288,148 @@ public class CxxConfiguration extends SquidConfiguration {
     this.scanOnlySpecifiedSources = scanOnlySpecifiedSources;
   }
 
+  /**
+   * Maximum number of tokens of a file for a full analysis, 0 means unlimited. Files exceeding the budget are analysed
+   * with lexer-only metrics.
+   */
+  public int getFileTokenBudget() {
+    return fileTokenBudget;
+  }
+
+  public void setFileTokenBudget(int fileTokenBudget) {
+    this.fileTokenBudget = Math.max(0, fileTokenBudget);
+  }
+
+  /**
+   * Maximum time in milliseconds to preprocess a file for a full analysis, 0 means unlimited. Files exceeding the
+   * budget are analysed with lexer-only metrics.
+   */
+  public long getFileTimeBudget() {
+    return fileTimeBudget;
+  }
+
+  public void setFileTimeBudget(long fileTimeBudget) {
+    this.fileTimeBudget = Math.max(0, fileTimeBudget);
+  }
+
+  /**
+   * Maximum nesting depth of macro expansions, 0 means unlimited. Macros exceeding the limit are not expanded.
+   */
+  public int getMacroExpansionMaxDepth() {
+    return macroExpansionMaxDepth;
+  }
+
+  public void setMacroExpansionMaxDepth(int macroExpansionMaxDepth) {
+    this.macroExpansionMaxDepth = Math.max(0, macroExpansionMaxDepth);
+  }
+
+  /**
+   * Maximum number of tokens created by macro expansions in a file, 0 means unlimited. Macros used after the limit is
+   * reached are not expanded.
+   */
+  public int getMacroExpansionMaxTokens() {
+    return macroExpansionMaxTokens;
+  }
+
+  public void setMacroExpansionMaxTokens(int macroExpansionMaxTokens) {
+    this.macroExpansionMaxTokens = Math.max(0, macroExpansionMaxTokens);
+  }
+
+  /**
+   * Maximum time in milliseconds to expand the macros of a file, 0 means unlimited. Macros used after the budget is
+   * spent are not expanded.
+   */
+  public long getMacroExpansionTimeBudget() {
+    return macroExpansionTimeBudget;
+  }
+
+  public void setMacroExpansionTimeBudget(long macroExpansionTimeBudget) {
+    this.macroExpansionTimeBudget = Math.max(0, macroExpansionTimeBudget);
+  }
+
+  /**
+   * Files larger than this size in bytes are treated as generated code, 0 means unlimited.
+   */
+  public long getGeneratedFileMaxSize() {
+    return generatedFileMaxSize;
+  }
+
+  public void setGeneratedFileMaxSize(long generatedFileMaxSize) {
+    this.generatedFileMaxSize = Math.max(0, generatedFileMaxSize);
+  }
+
+  /**
+   * Files containing one of these markers near the top are treated as generated code (e.g. '@generated').
+   */
+  public List<String> getGeneratedCodeMarkers() {
+    return Collections.unmodifiableList(generatedCodeMarkers);
+  }
+
+  public void setGeneratedCodeMarkers(@Nullable String[] generatedCodeMarkers) {
+    if (generatedCodeMarkers != null) {
+      this.generatedCodeMarkers = new ArrayList<>();
+      for (String marker : generatedCodeMarkers) {
+        if (!marker.trim().isEmpty()) {
+          this.generatedCodeMarkers.add(marker.trim());
+        }
+      }
+    }
+  }
+
+  /**
+   * Files with more tokens per line on average are treated as generated code (e.g. embedded resource arrays), 0
+   * means unlimited.
+   */
+  public int getGeneratedFileMaxTokensPerLine() {
+    return generatedFileMaxTokensPerLine;
+  }
+
+  public void setGeneratedFileMaxTokensPerLine(int generatedFileMaxTokensPerLine) {
+    this.generatedFileMaxTokensPerLine = Math.max(0, generatedFileMaxTokensPerLine);
+  }
+
+  /**
+   * @return true if the policy for generated files is enabled
+   */
+  public boolean isGeneratedFilesPolicyEnabled() {
+    return generatedFileMaxSize > 0 || !generatedCodeMarkers.isEmpty() || generatedFileMaxTokensPerLine > 0;
+  }
+
+  /**
+   * Path of the JSON report of the visitor profiler, profiling is disabled if not set.
+   */
+  @Nullable
+  public String getVisitorProfileReportFile() {
+    return visitorProfileReportFile;
+  }
+
+  public void setVisitorProfileReportFile(@Nullable String visitorProfileReportFile) {
+    this.visitorProfileReportFile = visitorProfileReportFile;
+  }
+
+  /**
+   * Path of the JSON report of the include profiler, profiling is disabled if not set.
+   */
+  @Nullable
+  public String getIncludeProfileReportFile() {
+    return includeProfileReportFile;
+  }
+
+  public void setIncludeProfileReportFile(@Nullable String includeProfileReportFile) {
+    this.includeProfileReportFile = includeProfileReportFile;
+  }
+
+  /**
+   * Number of the most expensive includes written to the log by the include profiler.
+   */
+  public int getIncludeProfileTopCount() {
+    return includeProfileTopCount;
+  }
+
+  public void setIncludeProfileTopCount(int includeProfileTopCount) {
+    this.includeProfileTopCount = includeProfileTopCount;
+  }
+
   public CxxCompilationUnitSettings getGlobalCompilationUnitSettings() {
     return globalCompilationUnitSettings;
   }
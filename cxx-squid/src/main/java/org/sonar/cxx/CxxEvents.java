@@ -0,0 +1,284 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Java Flight Recorder events of the expensive analysis stages.
+ * <p>
+ * The event types are defined at runtime with the jdk.jfr API if the JVM provides it; on other JVMs all events are
+ * no-ops. The events are disabled by default and have to be enabled in the settings of a recording, e.g. with
+ * {@code <event name="org.sonar.cxx.Parse"><setting name="enabled">true</setting></event>} in a .jfc file. As long as
+ * no running recording enables an event type, {@link #begin(Type)} only checks its enabled state.
+ *
+ * <pre>
+ * CxxEvents.Event event = CxxEvents.begin(CxxEvents.Type.PARSE);
+ * try {
+ *   ...
+ * } finally {
+ *   event.commit(file.getPath());
+ * }
+ * </pre>
+ */
+public final class CxxEvents {
+
+  private static final Logger LOG = Loggers.get(CxxEvents.class);
+
+  private static final Event NO_EVENT = new Event(null);
+
+  /**
+   * Event types, the values of an event are its string fields followed by its integer fields.
+   */
+  public enum Type {
+    INCLUDE("Include", "Include", "Resolution and inclusion of an included file by the preprocessor",
+      new String[]{"path"}, "depth"),
+    MACRO_EXPANSION("MacroExpansion", "Macro Expansion", "Expansion of a macro by the preprocessor",
+      new String[]{"macro"}, "depth"),
+    PARSE("Parse", "Parse", "Preprocessing and parsing of a source file", new String[]{"file"}),
+    VISITORS("Visitors", "Visitors", "Metric and check visitors of a source file", new String[]{"file"}),
+    REPORT("Report", "Report", "Parsing of an external report by a sensor", new String[]{"sensor", "report"});
+
+    private final String name;
+    private final String label;
+    private final String description;
+    private final String[] stringFields;
+    private final String[] intFields;
+
+    Type(String name, String label, String description, String[] stringFields, String... intFields) {
+      this.name = name;
+      this.label = label;
+      this.description = description;
+      this.stringFields = stringFields;
+      this.intFields = intFields;
+    }
+
+    /**
+     * @return name of the event type in a recording
+     */
+    public String getEventName() {
+      return "org.sonar.cxx." + name;
+    }
+  }
+
+  private CxxEvents() {
+  }
+
+  /**
+   * @return true if the JVM supports Java Flight Recorder events
+   */
+  public static boolean isAvailable() {
+    return Jfr.AVAILABLE;
+  }
+
+  /**
+   * Starts the timing of an event.
+   *
+   * @param type of the event
+   * @return the event, a no-op event if the type is not enabled in a running recording
+   */
+  public static Event begin(Type type) {
+    if (!Jfr.AVAILABLE || !Jfr.isEnabled(type)) {
+      return NO_EVENT;
+    }
+    Object event = Jfr.newEvent(type);
+    Jfr.begin(event);
+    return new Event(event);
+  }
+
+  /**
+   * Event started by {@link CxxEvents#begin(Type)}.
+   */
+  public static final class Event {
+
+    private final Object jfrEvent;
+
+    private Event(Object jfrEvent) {
+      this.jfrEvent = jfrEvent;
+    }
+
+    /**
+     * @return false for the no-op event of a disabled type
+     */
+    public boolean isRecording() {
+      return jfrEvent != null;
+    }
+
+    public void commit(String value) {
+      if (jfrEvent != null) {
+        Jfr.commit(jfrEvent, value);
+      }
+    }
+
+    public void commit(String value, int number) {
+      if (jfrEvent != null) {
+        Jfr.commit(jfrEvent, value, number);
+      }
+    }
+
+    public void commit(String value1, String value2) {
+      if (jfrEvent != null) {
+        Jfr.commit(jfrEvent, value1, value2);
+      }
+    }
+  }
+
+  /**
+   * Access to the jdk.jfr API by method handles, the API is not available on all Java 8 runtimes.
+   */
+  private static final class Jfr {
+
+    private static final boolean AVAILABLE;
+    private static final MethodHandle[] NEW_EVENT = new MethodHandle[Type.values().length];
+    private static final MethodHandle[] IS_ENABLED = new MethodHandle[Type.values().length];
+    private static final MethodHandle BEGIN;
+    private static final MethodHandle END;
+    private static final MethodHandle SHOULD_COMMIT;
+    private static final MethodHandle SET;
+    private static final MethodHandle COMMIT;
+
+    static {
+      boolean available = false;
+      MethodHandle begin = null;
+      MethodHandle end = null;
+      MethodHandle shouldCommit = null;
+      MethodHandle set = null;
+      MethodHandle commit = null;
+      try {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+        Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+        Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+        Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+        MethodHandle annotation = lookup.findConstructor(annotationClass,
+          MethodType.methodType(void.class, Class.class, Object.class));
+        MethodHandle descriptor = lookup.findConstructor(descriptorClass,
+          MethodType.methodType(void.class, Class.class, String.class, List.class));
+        MethodHandle create = lookup.findStatic(factoryClass, "create",
+          MethodType.methodType(factoryClass, List.class, List.class));
+        MethodHandle newEvent = lookup.findVirtual(factoryClass, "newEvent", MethodType.methodType(eventClass));
+        MethodHandle getEventType = lookup.findVirtual(factoryClass, "getEventType",
+          MethodType.methodType(eventTypeClass));
+        MethodHandle isEnabled = lookup.findVirtual(eventTypeClass, "isEnabled", MethodType.methodType(boolean.class));
+        Class<?> labelClass = Class.forName("jdk.jfr.Label");
+
+        for (Type type : Type.values()) {
+          List<Object> annotations = Arrays.asList(
+            annotation.invoke(Class.forName("jdk.jfr.Name"), type.getEventName()),
+            annotation.invoke(labelClass, type.label),
+            annotation.invoke(Class.forName("jdk.jfr.Description"), type.description),
+            annotation.invoke(Class.forName("jdk.jfr.Category"), new String[]{"SonarQube C++"}),
+            annotation.invoke(Class.forName("jdk.jfr.Enabled"), Boolean.FALSE),
+            annotation.invoke(Class.forName("jdk.jfr.StackTrace"), Boolean.FALSE));
+          List<Object> fields = new ArrayList<>();
+          for (String field : type.stringFields) {
+            fields.add(descriptor.invoke(String.class, field,
+              Collections.singletonList(annotation.invoke(labelClass, field))));
+          }
+          for (String field : type.intFields) {
+            fields.add(descriptor.invoke(int.class, field,
+              Collections.singletonList(annotation.invoke(labelClass, field))));
+          }
+          Object factory = create.invoke(annotations, fields);
+          NEW_EVENT[type.ordinal()] = newEvent.bindTo(factory).asType(MethodType.methodType(Object.class));
+          IS_ENABLED[type.ordinal()] = isEnabled.bindTo(getEventType.invoke(factory));
+        }
+
+        MethodType generic = MethodType.methodType(void.class, Object.class);
+        begin = lookup.findVirtual(eventClass, "begin", MethodType.methodType(void.class)).asType(generic);
+        end = lookup.findVirtual(eventClass, "end", MethodType.methodType(void.class)).asType(generic);
+        commit = lookup.findVirtual(eventClass, "commit", MethodType.methodType(void.class)).asType(generic);
+        shouldCommit = lookup.findVirtual(eventClass, "shouldCommit", MethodType.methodType(boolean.class))
+          .asType(MethodType.methodType(boolean.class, Object.class));
+        set = lookup.findVirtual(eventClass, "set", MethodType.methodType(void.class, int.class, Object.class))
+          .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+        available = true;
+      } catch (Throwable e) { // NOSONAR method handles throw Throwable, events are optional
+        LOG.debug("Java Flight Recorder events are not available: {}", e.toString());
+      }
+      AVAILABLE = available;
+      BEGIN = begin;
+      END = end;
+      SHOULD_COMMIT = shouldCommit;
+      SET = set;
+      COMMIT = commit;
+    }
+
+    private Jfr() {
+    }
+
+    static boolean isEnabled(Type type) {
+      try {
+        return (boolean) IS_ENABLED[type.ordinal()].invokeExact();
+      } catch (Throwable e) { // NOSONAR
+        throw propagate(e);
+      }
+    }
+
+    static Object newEvent(Type type) {
+      try {
+        return (Object) NEW_EVENT[type.ordinal()].invokeExact();
+      } catch (Throwable e) { // NOSONAR
+        throw propagate(e);
+      }
+    }
+
+    static void begin(Object event) {
+      try {
+        BEGIN.invokeExact(event);
+      } catch (Throwable e) { // NOSONAR
+        throw propagate(e);
+      }
+    }
+
+    static void commit(Object event, Object... values) {
+      try {
+        END.invokeExact(event);
+        if ((boolean) SHOULD_COMMIT.invokeExact(event)) {
+          for (int i = 0; i < values.length; i++) {
+            SET.invokeExact(event, i, values[i]);
+          }
+          COMMIT.invokeExact(event);
+        }
+      } catch (Throwable e) { // NOSONAR
+        throw propagate(e);
+      }
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+      if (e instanceof Error) {
+        throw (Error) e;
+      }
+      if (e instanceof RuntimeException) {
+        return (RuntimeException) e;
+      }
+      return new IllegalStateException(e);
+    }
+  }
+}
@@ -66,6 +66,15 @@ public abstract class CxxLanguage extends AbstractLanguage {
     return "";
   }
 
+  /**
+   * Plain C language: all files are preprocessed in C mode and parsed with the (lighter) C grammar.
+   *
+   * @return true for C, false for C++ (default)
+   */
+  public boolean isCLanguage() {
+    return false;
+  }
+
   public String getPluginProperty(String key) {
     return "sonar." + getPropertiesKey() + "." + key;
   }
@@ -74,6 +83,14 @@ public abstract class CxxLanguage extends AbstractLanguage {
     return this.settings.getBoolean(getPluginProperty(key));
   }
 
+  public Optional<Integer> getIntegerOption(String key) {
+    return this.settings.getInt(getPluginProperty(key));
+  }
+
+  public Optional<Long> getLongOption(String key) {
+    return this.settings.getLong(getPluginProperty(key));
+  }
+
   public Optional<String> getStringOption(String key) {
     return this.settings.get(getPluginProperty(key));
   }
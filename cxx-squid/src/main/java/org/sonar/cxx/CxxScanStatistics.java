@@ -0,0 +1,172 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx;
+
+import javax.annotation.Nullable;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Counters and stage times of one scan, collected by the preprocessor, the parser and the scanner.
+ * <p>
+ * The preprocessor runs inside the lexer: the file is split into tokens first, then the tokens are preprocessed. The
+ * start and the end of the preprocessing of the main file split the time of a parse into lexing, preprocessing and
+ * parsing.
+ */
+public class CxxScanStatistics {
+
+  private long files;
+  private long lines;
+  private long lexNanos;
+  private long preprocessNanos;
+  private long parseNanos;
+  private long visitorNanos;
+  private long includeHits;
+  private long includeMisses;
+  private long macroExpansions;
+  private long parseErrors;
+  private long preprocessStart;
+  private long preprocessEnd;
+
+  /**
+   * Returns the statistics of the scan of the context, they are kept in the data of the scan.
+   *
+   * @param context context of the scan, can be null
+   * @return statistics of the scan, a new instance outside of a CxxAstScanner
+   */
+  public static CxxScanStatistics of(@Nullable SquidAstVisitorContext<?> context) {
+    if (context instanceof CxxSquidAstVisitorContext) {
+      return ((CxxSquidAstVisitorContext<?>) context).getScanData(CxxScanStatistics.class, CxxScanStatistics::new);
+    }
+    return new CxxScanStatistics();
+  }
+
+  /**
+   * Called by the preprocessor with the first token of the main file.
+   */
+  public void startPreprocessing(long nanoTime) {
+    preprocessStart = nanoTime;
+    preprocessEnd = 0;
+  }
+
+  /**
+   * Called by the preprocessor with the last token of the main file.
+   */
+  public void endPreprocessing(long nanoTime) {
+    preprocessEnd = nanoTime;
+  }
+
+  /**
+   * Adds the time of the parse of a file, including lexing and preprocessing.
+   *
+   * @param start time the parse started
+   * @param end time the parse ended
+   */
+  public void addParse(long start, long end) {
+    if (preprocessStart >= start && preprocessEnd >= preprocessStart && preprocessEnd <= end) {
+      lexNanos += preprocessStart - start;
+      preprocessNanos += preprocessEnd - preprocessStart;
+      parseNanos += end - preprocessEnd;
+    } else {
+      parseNanos += end - start;
+    }
+    preprocessStart = 0;
+    preprocessEnd = 0;
+  }
+
+  /**
+   * Adds the time of a lexer-only analysis of a file.
+   */
+  public void addLexing(long nanos) {
+    lexNanos += nanos;
+  }
+
+  /**
+   * Adds a file after all visitors have left it.
+   *
+   * @param fileLines lines of the file
+   * @param nanos time of the visitors
+   */
+  public void addFile(int fileLines, long nanos) {
+    files++;
+    lines += fileLines;
+    visitorNanos += nanos;
+  }
+
+  public void addIncludeHit() {
+    includeHits++;
+  }
+
+  public void addIncludeMiss() {
+    includeMisses++;
+  }
+
+  public void addMacroExpansion() {
+    macroExpansions++;
+  }
+
+  public void addParseError() {
+    parseErrors++;
+  }
+
+  public long getFiles() {
+    return files;
+  }
+
+  public long getLines() {
+    return lines;
+  }
+
+  public long getLexNanos() {
+    return lexNanos;
+  }
+
+  public long getPreprocessNanos() {
+    return preprocessNanos;
+  }
+
+  public long getParseNanos() {
+    return parseNanos;
+  }
+
+  public long getVisitorNanos() {
+    return visitorNanos;
+  }
+
+  public long getIncludeHits() {
+    return includeHits;
+  }
+
+  public long getIncludeMisses() {
+    return includeMisses;
+  }
+
+  public long getMacroExpansions() {
+    return macroExpansions;
+  }
+
+  /**
+   * @return files which could not be parsed plus declarations skipped by the error recovery
+   */
+  public long getParseErrors() {
+    return parseErrors;
+  }
+
+}
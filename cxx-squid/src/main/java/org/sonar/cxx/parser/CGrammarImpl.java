@@ -0,0 +1,130 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import static org.sonar.cxx.parser.CxxGrammarImpl.aliasDeclaration;
+import static org.sonar.cxx.parser.CxxGrammarImpl.baseClause;
+import static org.sonar.cxx.parser.CxxGrammarImpl.classVirtSpecifier;
+import static org.sonar.cxx.parser.CxxGrammarImpl.cliAttributes;
+import static org.sonar.cxx.parser.CxxGrammarImpl.cliDelegateSpecifier;
+import static org.sonar.cxx.parser.CxxGrammarImpl.cliEventDefinition;
+import static org.sonar.cxx.parser.CxxGrammarImpl.cliGenericDeclaration;
+import static org.sonar.cxx.parser.CxxGrammarImpl.cliPropertyDefinition;
+import static org.sonar.cxx.parser.CxxGrammarImpl.conversionFunctionId;
+import static org.sonar.cxx.parser.CxxGrammarImpl.ctorInitializer;
+import static org.sonar.cxx.parser.CxxGrammarImpl.decltypeSpecifier;
+import static org.sonar.cxx.parser.CxxGrammarImpl.deductionGuide;
+import static org.sonar.cxx.parser.CxxGrammarImpl.deleteExpression;
+import static org.sonar.cxx.parser.CxxGrammarImpl.explicitInstantiation;
+import static org.sonar.cxx.parser.CxxGrammarImpl.explicitSpecialization;
+import static org.sonar.cxx.parser.CxxGrammarImpl.foldExpression;
+import static org.sonar.cxx.parser.CxxGrammarImpl.functionTryBlock;
+import static org.sonar.cxx.parser.CxxGrammarImpl.lambdaExpression;
+import static org.sonar.cxx.parser.CxxGrammarImpl.literalOperatorId;
+import static org.sonar.cxx.parser.CxxGrammarImpl.namespaceAliasDefinition;
+import static org.sonar.cxx.parser.CxxGrammarImpl.namespaceDefinition;
+import static org.sonar.cxx.parser.CxxGrammarImpl.nestedNameSpecifier;
+import static org.sonar.cxx.parser.CxxGrammarImpl.newExpression;
+import static org.sonar.cxx.parser.CxxGrammarImpl.noexceptExpression;
+import static org.sonar.cxx.parser.CxxGrammarImpl.noexceptSpecifier;
+import static org.sonar.cxx.parser.CxxGrammarImpl.operatorFunctionId;
+import static org.sonar.cxx.parser.CxxGrammarImpl.pseudoDestructorName;
+import static org.sonar.cxx.parser.CxxGrammarImpl.simpleTemplateId;
+import static org.sonar.cxx.parser.CxxGrammarImpl.templateDeclaration;
+import static org.sonar.cxx.parser.CxxGrammarImpl.templateId;
+import static org.sonar.cxx.parser.CxxGrammarImpl.throwExpression;
+import static org.sonar.cxx.parser.CxxGrammarImpl.tryBlock;
+import static org.sonar.cxx.parser.CxxGrammarImpl.typenameSpecifier;
+import static org.sonar.cxx.parser.CxxGrammarImpl.usingDeclaration;
+import static org.sonar.cxx.parser.CxxGrammarImpl.usingDirective;
+import static org.sonar.cxx.parser.CxxGrammarImpl.virtSpecifierSeq;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerfulGrammarBuilder;
+
+/**
+ * C dialect of {@link CxxGrammarImpl}.
+ *
+ * The C grammar uses the same rule keys (AST node types) as the C++ grammar, so all checks and visitors work
+ * unchanged. Rules which can only match C++ (templates, namespaces, lambdas, exception handling, C++/CLI, ...) are
+ * replaced by an expression which never matches: the parser does not try these alternatives anymore and fails
+ * faster on the remaining ones. C++ keywords are mapped to identifiers by the preprocessor (see
+ * {@link org.sonar.cxx.preprocessor.StandardDefinitions#compatibilityMacros()}).
+ */
+final class CGrammarImpl {
+
+  private static final GrammarRuleKey[] CXX_ONLY_RULES = {
+    // Expressions
+    nestedNameSpecifier,
+    lambdaExpression,
+    foldExpression,
+    pseudoDestructorName,
+    newExpression,
+    deleteExpression,
+    noexceptExpression,
+    // Declarations
+    aliasDeclaration,
+    decltypeSpecifier,
+    namespaceDefinition,
+    namespaceAliasDefinition,
+    usingDeclaration,
+    usingDirective,
+    // Classes
+    classVirtSpecifier,
+    virtSpecifierSeq,
+    baseClause,
+    ctorInitializer,
+    conversionFunctionId,
+    operatorFunctionId,
+    literalOperatorId,
+    // Templates
+    templateDeclaration,
+    simpleTemplateId,
+    templateId,
+    typenameSpecifier,
+    explicitInstantiation,
+    explicitSpecialization,
+    deductionGuide,
+    // Exception handling
+    tryBlock,
+    functionTryBlock,
+    throwExpression,
+    noexceptSpecifier,
+    // Microsoft Extension: C++/CLI
+    cliAttributes,
+    cliDelegateSpecifier,
+    cliEventDefinition,
+    cliGenericDeclaration,
+    cliPropertyDefinition
+  };
+
+  private CGrammarImpl() {
+  }
+
+  /**
+   * Restricts a fully defined C++ grammar to C.
+   *
+   * @param b builder with all rules of {@link CxxGrammarImpl} defined
+   */
+  static void restrict(LexerfulGrammarBuilder b) {
+    for (GrammarRuleKey rule : CXX_ONLY_RULES) {
+      b.rule(rule).override(b.nothing());
+    }
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Rule;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxEvents;
+import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.CxxScanStatistics;
+import org.sonar.cxx.lexer.CxxLexer;
+import org.sonar.cxx.preprocessor.FileBudgetExceededException;
+import org.sonar.cxx.preprocessor.JoinStringsPreprocessor;
+import org.sonar.cxx.preprocessor.SkipDirectivesPreprocessor;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Parser decorator which degrades gracefully: if a file exceeds its token or time budget
+ * ({@link FileBudgetExceededException}) or matches one of the lexer-only file patterns
+ * ({@link CxxConfiguration#isLexerOnlyFile(File)}) the file is tokenized only and a flat, lexer-only AST is returned.
+ * Token based visitors (lines, comments, highlighting, CPD) still work on this AST, visitors subscribed to grammar
+ * rules do not see any nodes.
+ * <p>
+ * If the policy for generated files is configured, files are classified by size, generated code markers at the top
+ * of the file and token density before they are preprocessed. Generated files take the same lexer-only path and are
+ * recorded in the data of the scan ({@link CxxLexerOnlyFiles}). Files exceeding their budget are recorded too, all
+ * lexer-only files are analysed alike.
+ * <p>
+ * The time budget is checked by the preprocessor and while parsing: SSLR cannot interrupt a running parse, so the
+ * rules of a private grammar check the deadline of the file ({@link #create}).
+ */
+public class CxxFallbackParser extends Parser<Grammar> {
+
+  private static final Logger LOG = Loggers.get(CxxFallbackParser.class);
+
+  /**
+   * Root node type of a lexer-only AST
+   */
+  public enum LexerOnlyNode implements AstNodeType {
+    UNIT,
+    GENERATED_UNIT
+  }
+
+  /**
+   * Number of characters searched for generated code markers
+   */
+  private static final int MARKER_SEARCH_LENGTH = 4096;
+
+  private final Parser<Grammar> delegate;
+  private final CxxConfiguration conf;
+  private final CxxLexerOnlyFiles lexerOnlyFiles;
+  private final CxxScanStatistics statistics;
+  private final Lexer lexer;
+  @Nullable
+  private final Deadline deadline;
+  private final Map<String, String> degradedFiles = new LinkedHashMap<>();
+  private final Map<String, String> generatedFiles = new LinkedHashMap<>();
+  private long parsedBytes;
+  private long parsedNanos;
+  private long generatedBytes;
+  private long generatedNanos;
+
+  public CxxFallbackParser(Parser<Grammar> delegate, CxxConfiguration conf) {
+    this(delegate, conf, null, null);
+  }
+
+  private CxxFallbackParser(Parser<Grammar> delegate, CxxConfiguration conf,
+    @Nullable SquidAstVisitorContext<Grammar> context, @Nullable Deadline deadline) {
+    super(delegate.getGrammar());
+    this.delegate = delegate;
+    this.conf = conf;
+    this.lexerOnlyFiles = CxxLexerOnlyFiles.of(context);
+    this.statistics = CxxScanStatistics.of(context);
+    this.deadline = deadline;
+    this.lexer = CxxLexer.create(conf, new SkipDirectivesPreprocessor(), new JoinStringsPreprocessor());
+  }
+
+  /**
+   * Creates a parser for the context of a scan. If a time budget is configured the parse of a file is aborted as soon
+   * as the budget is exceeded: the rules of the grammar are instrumented with a deadline check, a private grammar is
+   * built for it instead of using the shared one.
+   *
+   * @param grammar private grammar to parse with, null to use the shared grammar of the language
+   */
+  public static CxxFallbackParser create(SquidAstVisitorContext<Grammar> context, CxxConfiguration conf,
+    CxxLanguage language, @Nullable Grammar grammar) {
+    Grammar parseGrammar = grammar;
+    Deadline deadline = null;
+    if (conf.getFileTimeBudget() > 0) {
+      if (parseGrammar == null) {
+        parseGrammar = CxxGrammarImpl.build(conf.getErrorRecoveryEnabled(), language.isCLanguage());
+      }
+      deadline = new Deadline(conf.getFileTimeBudget());
+      deadline.instrument(parseGrammar);
+    } else if (parseGrammar == null) {
+      parseGrammar = CxxGrammarImpl.create(conf, language);
+    }
+    return new CxxFallbackParser(CxxParser.create(context, conf, language, parseGrammar), conf, context, deadline);
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    CxxEvents.Event event = CxxEvents.begin(CxxEvents.Type.PARSE);
+    try {
+      return parseFile(file);
+    } finally {
+      event.commit(file.getPath());
+    }
+  }
+
+  private AstNode parseFile(File file) {
+    if (conf.isLexerOnlyFile(file) || lexerOnlyFiles.contains(file)) {
+      LOG.debug("Lexer-only analysis of file '{}'", file);
+      return lexerOnlyAst(LexerOnlyNode.UNIT, lex(file));
+    }
+    if (!conf.isGeneratedFilesPolicyEnabled()) {
+      return parseWithFallback(file);
+    }
+
+    long start = System.nanoTime();
+    List<Token> tokens = null;
+    String reason = classifyBySource(file);
+    if (reason == null && conf.getGeneratedFileMaxTokensPerLine() > 0) {
+      tokens = lex(file);
+      reason = classifyByDensity(tokens);
+    }
+    if (reason != null) {
+      if (tokens == null) {
+        tokens = lex(file);
+      }
+      AstNode root = lexerOnlyAst(LexerOnlyNode.GENERATED_UNIT, tokens);
+      LOG.debug("Generated file '{}' ({}), lexer-only analysis", file, reason);
+      lexerOnlyFiles.add(file);
+      generatedFiles.put(file.getPath(), reason);
+      generatedBytes += file.length();
+      generatedNanos += System.nanoTime() - start;
+      return root;
+    }
+
+    AstNode root = parseWithFallback(file);
+    if (!isLexerOnly(root)) {
+      parsedBytes += file.length();
+      parsedNanos += System.nanoTime() - start;
+    }
+    return root;
+  }
+
+  private AstNode parseWithFallback(File file) {
+    long start = System.nanoTime();
+    if (deadline != null) {
+      deadline.start(start);
+    }
+    try {
+      AstNode root = delegate.parse(file);
+      statistics.addParse(start, System.nanoTime());
+      return root;
+    } catch (RecognitionException | FileBudgetExceededException e) {
+      statistics.addParse(start, System.nanoTime());
+      FileBudgetExceededException budgetException = getBudgetException(e);
+      if (budgetException == null) {
+        statistics.addParseError();
+        throw e;
+      }
+      LOG.warn("Budget exceeded for file '{}', fallback to lexer-only analysis: {}", file,
+        budgetException.getMessage());
+      degradedFiles.put(file.getPath(), budgetException.getMessage());
+      lexerOnlyFiles.add(file);
+      return lexerOnlyAst(LexerOnlyNode.UNIT, lex(file));
+    } finally {
+      if (deadline != null) {
+        deadline.stop();
+      }
+    }
+  }
+
+  private List<Token> lex(File file) {
+    long start = System.nanoTime();
+    List<Token> tokens = lexer.lex(file);
+    statistics.addLexing(System.nanoTime() - start);
+    return tokens;
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    return delegate.parse(source);
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    return delegate.parse(tokens);
+  }
+
+  @Override
+  public void setRootRule(Rule rootRule) {
+    delegate.setRootRule(rootRule);
+  }
+
+  @Override
+  public RuleDefinition getRootRule() {
+    return delegate.getRootRule();
+  }
+
+  /**
+   * @return files analyzed in lexer-only mode with the reason
+   */
+  public Map<String, String> getDegradedFiles() {
+    return Collections.unmodifiableMap(degradedFiles);
+  }
+
+  /**
+   * @return files classified as generated code with the reason
+   */
+  public Map<String, String> getGeneratedFiles() {
+    return Collections.unmodifiableMap(generatedFiles);
+  }
+
+  /**
+   * Estimated preprocessing and parsing time saved by the lexer-only analysis of generated files, based on the
+   * throughput of the fully parsed files.
+   *
+   * @return saved time in milliseconds, 0 if there is nothing to compare with
+   */
+  public long getEstimatedSavedMillis() {
+    if (parsedBytes == 0 || generatedBytes == 0) {
+      return 0;
+    }
+    double estimatedNanos = (double) parsedNanos / parsedBytes * generatedBytes;
+    return Math.max(0, TimeUnit.NANOSECONDS.toMillis((long) estimatedNanos - generatedNanos));
+  }
+
+  public void logSummary() {
+    if (!degradedFiles.isEmpty()) {
+      LOG.warn("{} file(s) exceeded the parse budget and were analyzed in lexer-only mode", degradedFiles.size());
+      for (Map.Entry<String, String> entry : degradedFiles.entrySet()) {
+        LOG.info("  '{}': {}", entry.getKey(), entry.getValue());
+      }
+    }
+    if (!generatedFiles.isEmpty()) {
+      LOG.info("{} file(s) ({} KB) classified as generated code and analyzed in lexer-only mode in {} ms, an"
+        + " estimated {} ms of preprocessing and parsing saved (based on the throughput of the parsed files)",
+        generatedFiles.size(), generatedBytes / 1024, TimeUnit.NANOSECONDS.toMillis(generatedNanos),
+        getEstimatedSavedMillis());
+      for (Map.Entry<String, String> entry : generatedFiles.entrySet()) {
+        LOG.debug("  '{}': {}", entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * @return true if the AST was created in lexer-only mode
+   */
+  public static boolean isLexerOnly(AstNode node) {
+    return node != null && node.is(LexerOnlyNode.UNIT, LexerOnlyNode.GENERATED_UNIT);
+  }
+
+  /**
+   * @return true if the AST is the lexer-only AST of a file classified as generated code
+   */
+  public static boolean isGenerated(AstNode node) {
+    return node != null && node.is(LexerOnlyNode.GENERATED_UNIT);
+  }
+
+  /**
+   * Classification which does not need the tokens of the file: size and generated code markers.
+   *
+   * @return the reason if the file is generated code, null otherwise
+   */
+  @CheckForNull
+  private String classifyBySource(File file) {
+    long maxSize = conf.getGeneratedFileMaxSize();
+    if (maxSize > 0) {
+      long size = file.length();
+      if (size > maxSize) {
+        return "size of " + size + " bytes exceeds " + maxSize + " bytes";
+      }
+    }
+    List<String> markers = conf.getGeneratedCodeMarkers();
+    if (!markers.isEmpty()) {
+      String head = readHead(file);
+      for (String marker : markers) {
+        if (head.contains(marker)) {
+          return "generated code marker '" + marker + "'";
+        }
+      }
+    }
+    return null;
+  }
+
+  @CheckForNull
+  private String classifyByDensity(List<Token> tokens) {
+    // the last token is EOF, its line is the number of lines of the file
+    int lines = Math.max(1, tokens.get(tokens.size() - 1).getLine());
+    int count = tokens.size() - 1;
+    int maxTokensPerLine = conf.getGeneratedFileMaxTokensPerLine();
+    if (count > (long) maxTokensPerLine * lines) {
+      return count + " tokens in " + lines + " lines exceed " + maxTokensPerLine + " tokens per line";
+    }
+    return null;
+  }
+
+  private String readHead(File file) {
+    char[] buffer = new char[MARKER_SEARCH_LENGTH];
+    int length = 0;
+    try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), conf.getCharset())) {
+      int read;
+      while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) != -1) {
+        length += read;
+      }
+    } catch (IOException e) {
+      LOG.debug("Cannot read file '{}': {}", file, e.getMessage());
+    }
+    return new String(buffer, 0, length);
+  }
+
+  static AstNode lexerOnlyAst(LexerOnlyNode type, List<Token> tokens) {
+    AstNode root = new AstNode(type, "lexerOnlyUnit", tokens.get(0));
+    for (Token token : tokens) {
+      root.addChild(new AstNode(token));
+    }
+    return root;
+  }
+
+  @CheckForNull
+  private static FileBudgetExceededException getBudgetException(Throwable e) {
+    Throwable cause = e;
+    while (cause != null) {
+      if (cause instanceof FileBudgetExceededException) {
+        return (FileBudgetExceededException) cause;
+      }
+      cause = cause.getCause();
+    }
+    return null;
+  }
+
+  /**
+   * Deadline check added in front of the expression of every rule. The (more expensive) clock is only read for every
+   * 256th rule execution.
+   */
+  static final class Deadline implements CxxGrammarInstrumentation.RuleCheck {
+
+    private final long budgetMillis;
+    private final long budget;
+    private long deadline = Long.MAX_VALUE;
+    private int checks;
+
+    Deadline(long budgetMillis) {
+      this.budgetMillis = budgetMillis;
+      this.budget = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    void instrument(Grammar grammar) {
+      CxxGrammarInstrumentation.addCheck(grammar, this);
+    }
+
+    void start(long startTime) {
+      deadline = startTime + budget;
+    }
+
+    void stop() {
+      deadline = Long.MAX_VALUE;
+    }
+
+    @Override
+    public void check(Token token) {
+      if ((++checks & 0xFF) == 0 && System.nanoTime() > deadline) {
+        throw new FileBudgetExceededException("time budget of " + budgetMillis + " ms exceeded at line "
+          + token.getLine());
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Deadline " + budgetMillis + " ms";
+    }
+  }
+}
@@ -22,7 +22,10 @@ package org.sonar.cxx.parser;
 import static com.sonar.sslr.api.GenericTokenType.EOF;
 import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
 import com.sonar.sslr.api.Grammar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxLanguage;
 import org.sonar.cxx.api.CxxKeyword;
 import static org.sonar.cxx.api.CxxTokenType.CHARACTER;
 import static org.sonar.cxx.api.CxxTokenType.NUMBER;
@@ -350,10 +353,53 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
   // CUDA extension
   cudaKernel;
 
+  /**
+   * Returns the C++ grammar for the given configuration.
+   *
+   * Building the rule graph is expensive, so fully built grammars are cached per grammar relevant setting (error
+   * recovery on/off, C or C++) and shared between all parsers and threads. The returned instance must be treated as
+   * immutable: use {@link #build(boolean, boolean)} if rules have to be mocked or overridden (e.g. in tests).
+   *
+   * @param conf the configuration to use
+   * @return shared grammar instance
+   */
   public static Grammar create(CxxConfiguration conf) {
+    return GrammarCache.get(conf.getErrorRecoveryEnabled(), false);
+  }
+
+  /**
+   * Returns the grammar for the given configuration and language: the C grammar ({@link CGrammarImpl}) if
+   * {@link CxxLanguage#isCLanguage()}, otherwise the C++ grammar.
+   *
+   * @param conf the configuration to use
+   * @param language the language to parse
+   * @return shared grammar instance
+   */
+  public static Grammar create(CxxConfiguration conf, CxxLanguage language) {
+    return GrammarCache.get(conf.getErrorRecoveryEnabled(), language.isCLanguage());
+  }
+
+  /**
+   * Builds a new, private C++ grammar instance.
+   *
+   * @param errorRecoveryEnabled create grammar with error recovery rules
+   * @return new grammar instance
+   */
+  public static Grammar build(boolean errorRecoveryEnabled) {
+    return build(errorRecoveryEnabled, false);
+  }
+
+  /**
+   * Builds a new, private grammar instance.
+   *
+   * @param errorRecoveryEnabled create grammar with error recovery rules
+   * @param cGrammar create the C instead of the C++ grammar
+   * @return new grammar instance
+   */
+  public static Grammar build(boolean errorRecoveryEnabled, boolean cGrammar) {
     LexerfulGrammarBuilder b = LexerfulGrammarBuilder.create();
 
-    toplevel(b, conf);
+    toplevel(b, errorRecoveryEnabled);
     expressions(b);
     statements(b);
     declarations(b);
@@ -371,6 +417,10 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
     misc(b);
     vcAttributedAtl(b);
 
+    if (cGrammar) {
+      CGrammarImpl.restrict(b);
+    }
+
     b.setRootRule(translationUnit);
 
     return b.buildWithMemoizationOfMatchesForAllRules();
@@ -417,9 +467,9 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
 
   // A.3 Basic concepts
   //
-  private static void toplevel(LexerfulGrammarBuilder b, CxxConfiguration conf) {
+  private static void toplevel(LexerfulGrammarBuilder b, boolean errorRecoveryEnabled) {
 
-    if (conf.getErrorRecoveryEnabled()) {
+    if (errorRecoveryEnabled) {
       b.rule(translationUnit).is(
         b.zeroOrMore(
           b.firstOf(
@@ -2156,4 +2206,20 @@ public enum CxxGrammarImpl implements GrammarRuleKey {
     );
 
   }
+  /**
+   * Lazily built, shared grammar instances. The grammar is only read while parsing (each parser compiles its own
+   * matcher state), so one instance per setting can be used by any number of parsers concurrently.
+   */
+  private static final class GrammarCache {
+
+    private static final ConcurrentMap<Integer, Grammar> GRAMMARS = new ConcurrentHashMap<>();
+
+    private GrammarCache() {
+    }
+
+    static Grammar get(boolean errorRecoveryEnabled, boolean cGrammar) {
+      int key = (errorRecoveryEnabled ? 1 : 0) | (cGrammar ? 2 : 0);
+      return GRAMMARS.computeIfAbsent(key, k -> build(errorRecoveryEnabled, cGrammar));
+    }
+  }
 }
@@ -0,0 +1,230 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Rule;
+import com.sonar.sslr.api.Token;
+import java.util.function.Function;
+import javax.annotation.CheckForNull;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.FirstOfExpression;
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.NativeExpression;
+import org.sonar.sslr.internal.vm.SequenceExpression;
+
+/**
+ * Instruments the rules of a {@link CxxGrammarImpl} grammar with hooks executed by the parser.
+ *
+ * SSLR has no public API to observe the execution of a rule, the hooks are native expressions wrapped around the
+ * expressions of the rules. This is the only class depending on the internal parsing machine of SSLR
+ * ({@code org.sonar.sslr.internal.vm}), it is written against SSLR 1.22: revisit it when updating SSLR,
+ * CxxGrammarInstrumentationTest fails if the rules cannot be instrumented anymore.
+ *
+ * The rules of the grammar are modified, only private grammars ({@link CxxGrammarImpl#build}) may be instrumented.
+ */
+public final class CxxGrammarInstrumentation {
+
+  /**
+   * Check executed before every execution of a rule.
+   */
+  @FunctionalInterface
+  public interface RuleCheck {
+
+    /**
+     * @param token next token of the input
+     */
+    void check(Token token);
+  }
+
+  /**
+   * Listener of the executions of one rule.
+   */
+  public interface RuleListener {
+
+    /**
+     * Start of an execution.
+     *
+     * @param tokenIndex index of the next token of the input
+     */
+    void enter(int tokenIndex);
+
+    /**
+     * Successful end of an execution.
+     *
+     * @param tokenIndex index of the token following the match
+     */
+    void match(int tokenIndex);
+
+    /**
+     * Failed end of an execution, the parser backtracks.
+     *
+     * @param tokenIndex index of the next token of the input
+     */
+    void fail(int tokenIndex);
+  }
+
+  private CxxGrammarInstrumentation() {
+  }
+
+  /**
+   * Adds a check in front of every rule of the grammar.
+   *
+   * @param grammar private grammar to instrument
+   * @param check check to execute
+   * @return number of instrumented rules
+   * @throws IllegalStateException if a rule cannot be instrumented
+   */
+  public static int addCheck(Grammar grammar, RuleCheck check) {
+    NativeExpression expression = new Check(check);
+    int count = 0;
+    for (CxxGrammarImpl key : CxxGrammarImpl.values()) {
+      CompilableGrammarRule rule = compilableRule(grammar, key);
+      if (rule != null) {
+        rule.setExpression(new SequenceExpression(expression, rule.getExpression()));
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Adds a listener to every rule of the grammar.
+   *
+   * @param grammar private grammar to instrument
+   * @param listeners creates the listener of a rule
+   * @return number of instrumented rules
+   * @throws IllegalStateException if a rule cannot be instrumented
+   */
+  public static int addListeners(Grammar grammar, Function<CxxGrammarImpl, RuleListener> listeners) {
+    int count = 0;
+    for (CxxGrammarImpl key : CxxGrammarImpl.values()) {
+      CompilableGrammarRule rule = compilableRule(grammar, key);
+      if (rule != null) {
+        RuleListener listener = listeners.apply(key);
+        rule.setExpression(new FirstOfExpression(
+          new SequenceExpression(new Enter(key, listener), rule.getExpression(), new Match(listener)),
+          new Fail(listener)));
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return rule to instrument, null if the grammar does not define the rule
+   */
+  @CheckForNull
+  private static CompilableGrammarRule compilableRule(Grammar grammar, CxxGrammarImpl key) {
+    Rule rule = grammar.rule(key);
+    if (rule == null) {
+      return null;
+    }
+    if (!(rule instanceof CompilableGrammarRule)) {
+      throw new IllegalStateException("Rule '" + key + "' cannot be instrumented, " + rule.getClass().getName()
+        + " is not a CompilableGrammarRule of SSLR 1.22");
+    }
+    CompilableGrammarRule compilable = (CompilableGrammarRule) rule;
+    return compilable.getExpression() == null ? null : compilable;
+  }
+
+  private static final class Check extends NativeExpression {
+
+    private final RuleCheck check;
+
+    Check(RuleCheck check) {
+      this.check = check;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      check.check(machine.tokenAt(0));
+      machine.jump(1);
+    }
+
+    @Override
+    public String toString() {
+      return "Check " + check;
+    }
+  }
+
+  private static final class Enter extends NativeExpression {
+
+    private final CxxGrammarImpl rule;
+    private final RuleListener listener;
+
+    Enter(CxxGrammarImpl rule, RuleListener listener) {
+      this.rule = rule;
+      this.listener = listener;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      listener.enter(machine.getIndex());
+      machine.jump(1);
+    }
+
+    @Override
+    public String toString() {
+      return "Enter " + rule;
+    }
+  }
+
+  private static final class Match extends NativeExpression {
+
+    private final RuleListener listener;
+
+    Match(RuleListener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      listener.match(machine.getIndex());
+      machine.jump(1);
+    }
+
+    @Override
+    public String toString() {
+      return "Match";
+    }
+  }
+
+  private static final class Fail extends NativeExpression {
+
+    private final RuleListener listener;
+
+    Fail(RuleListener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      listener.fail(machine.getIndex());
+      machine.backtrack();
+    }
+
+    @Override
+    public String toString() {
+      return "Fail";
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Files of a scan which were analysed in lexer-only mode although they do not match the lexer-only patterns of the
+ * configuration: files classified as generated code and files exceeding their token or time budget. The files are
+ * recorded by the {@link CxxFallbackParser} in the data of the scan, the configuration is not changed by a scan.
+ */
+public final class CxxLexerOnlyFiles {
+
+  private final Set<String> files = new HashSet<>();
+
+  /**
+   * Returns the lexer-only files recorded by the scan of the context.
+   *
+   * @param context context of the scan, can be null
+   * @return lexer-only files of the scan, an empty set outside of a CxxAstScanner
+   */
+  public static CxxLexerOnlyFiles of(@Nullable SquidAstVisitorContext<?> context) {
+    if (context instanceof CxxSquidAstVisitorContext) {
+      return ((CxxSquidAstVisitorContext<?>) context).getScanData(CxxLexerOnlyFiles.class, CxxLexerOnlyFiles::new);
+    }
+    return new CxxLexerOnlyFiles();
+  }
+
+  /**
+   * Records a file classified as generated code or exceeding its budget. It is analysed like a lexer-only file from
+   * then on.
+   */
+  void add(File file) {
+    files.add(file.getAbsolutePath());
+  }
+
+  /**
+   * @param file to check
+   * @return true if the file was analysed in lexer-only mode by the scan
+   */
+  public boolean contains(File file) {
+    return !files.isEmpty() && files.contains(file.getAbsolutePath());
+  }
+
+}
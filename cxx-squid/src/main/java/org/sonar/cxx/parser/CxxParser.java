@@ -23,32 +23,59 @@ import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.impl.Parser;
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
+import javax.annotation.CheckForNull;
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.CxxLanguage;
 import org.sonar.cxx.lexer.CxxLexer;
 import org.sonar.cxx.preprocessor.CxxPreprocessor;
 import org.sonar.cxx.preprocessor.JoinStringsPreprocessor;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
 import org.sonar.squidbridge.SquidAstVisitorContext;
 import org.sonar.squidbridge.SquidAstVisitorContextImpl;
 import org.sonar.squidbridge.api.SourceProject;
 
+/**
+ * Creates C++ parsers.
+ *
+ * Thread-safety: a parser and its preprocessor belong to one scan and must be used by one thread at a time. Parallel
+ * analyses use one parser per scan; only the grammars, which are immutable once built, are shared. The preprocessor of
+ * a parser created for a {@link CxxSquidAstVisitorContext} is kept in that context, the methods reading it take the
+ * context of the scan.
+ */
 public final class CxxParser {
 
-  private static volatile CxxPreprocessor cxxpp;
-
   private CxxParser() {
   }
 
-  public static void finishedParsing(File path) {
-    cxxpp.finishedPreprocessing(path);
+  /**
+   * @param context context the parser was created for
+   * @return preprocessor of the parser, null if the context does not keep it
+   */
+  @CheckForNull
+  public static CxxPreprocessor getPreprocessor(SquidAstVisitorContext<?> context) {
+    if (context instanceof CxxSquidAstVisitorContext) {
+      return ((CxxSquidAstVisitorContext<?>) context).getPreprocessor();
+    }
+    return null;
+  }
+
+  public static void finishedParsing(SquidAstVisitorContext<?> context) {
+    CxxPreprocessor cxxpp = getPreprocessor(context);
+    if (cxxpp != null) {
+      cxxpp.finishedPreprocessing(context.getFile());
+    }
   }
 
-  public static Collection<CxxPreprocessor.Include> getIncludedFiles(File path) {
-    return cxxpp.getIncludedFiles(path);
+  public static Collection<CxxPreprocessor.Include> getIncludedFiles(SquidAstVisitorContext<?> context, File path) {
+    CxxPreprocessor cxxpp = getPreprocessor(context);
+    return cxxpp != null ? cxxpp.getIncludedFiles(path) : Collections.<CxxPreprocessor.Include>emptyList();
   }
 
-  public static Collection<CxxPreprocessor.Include> getMissingIncludeFiles(File path) {
-    return cxxpp.getMissingIncludeFiles(path);
+  public static Collection<CxxPreprocessor.Include> getMissingIncludeFiles(SquidAstVisitorContext<?> context,
+    File path) {
+    CxxPreprocessor cxxpp = getPreprocessor(context);
+    return cxxpp != null ? cxxpp.getMissingIncludeFiles(path) : Collections.<CxxPreprocessor.Include>emptyList();
   }
 
   public static Parser<Grammar> create(CxxLanguage language) {
@@ -62,8 +89,21 @@ public final class CxxParser {
 
   public static Parser<Grammar> create(SquidAstVisitorContext<Grammar> context, CxxConfiguration conf,
     CxxLanguage language) {
-    cxxpp = new CxxPreprocessor(context, conf, language);
-    return Parser.builder(CxxGrammarImpl.create(conf))
+    return create(context, conf, language, CxxGrammarImpl.create(conf, language));
+  }
+
+  /**
+   * Create a parser with an explicit grammar instance. Used to get a parser with a private (mutable) grammar, e.g. the
+   * instrumented grammar of the grammar profiler, otherwise the shared grammar from
+   * {@link CxxGrammarImpl#create(CxxConfiguration, CxxLanguage)} is used.
+   */
+  public static Parser<Grammar> create(SquidAstVisitorContext<Grammar> context, CxxConfiguration conf,
+    CxxLanguage language, Grammar grammar) {
+    CxxPreprocessor cxxpp = new CxxPreprocessor(context, conf, language);
+    if (context instanceof CxxSquidAstVisitorContext) {
+      ((CxxSquidAstVisitorContext<?>) context).setPreprocessor(cxxpp);
+    }
+    return Parser.builder(grammar)
       .withLexer(CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor()))
       .build();
   }
@@ -0,0 +1,271 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.text.JsonWriter;
+
+/**
+ * Collects the preprocessing cost of included files.
+ *
+ * The preprocessor reports the start and the end of the processing of an included file, the tokens it processes and
+ * the macros it defines. Each file gets its own cost (self) and the cost of its include subtree (total). A file is
+ * processed at most once per translation unit, the number of processings is the number of translation units which
+ * pulled the file in. Only preprocessor directives reach the preprocessor from an included file, the include lexer
+ * drops everything else.
+ */
+public class CxxIncludeProfiler {
+
+  private static final Logger LOG = Loggers.get(CxxIncludeProfiler.class);
+  private static final double NANOS_PER_MILLI = 1000000.0;
+  public static final int DEFAULT_TOP_COUNT = 20;
+
+  private final Map<String, IncludeStatistics> statistics = new HashMap<>();
+  private final Deque<Frame> stack = new ArrayDeque<>();
+
+  /**
+   * Statistics of one included file.
+   */
+  public static final class IncludeStatistics {
+
+    private final String path;
+    private long translationUnits;
+    private long chars;
+    private long selfTime;
+    private long totalTime;
+    private long selfTokens;
+    private long totalTokens;
+    private long selfMacros;
+    private long totalMacros;
+
+    IncludeStatistics(String path) {
+      this.path = path;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * @return number of translation units which included the file
+     */
+    public long getTranslationUnits() {
+      return translationUnits;
+    }
+
+    /**
+     * @return cumulative size in characters of the file
+     */
+    public long getChars() {
+      return chars;
+    }
+
+    /**
+     * @return cumulative time in nanoseconds spent in the file itself
+     */
+    public long getSelfTime() {
+      return selfTime;
+    }
+
+    /**
+     * @return cumulative time in nanoseconds spent in the file and in the files it includes
+     */
+    public long getTotalTime() {
+      return totalTime;
+    }
+
+    public long getSelfTokens() {
+      return selfTokens;
+    }
+
+    public long getTotalTokens() {
+      return totalTokens;
+    }
+
+    public long getSelfMacros() {
+      return selfMacros;
+    }
+
+    public long getTotalMacros() {
+      return totalMacros;
+    }
+  }
+
+  /**
+   * An included file under processing.
+   */
+  private static final class Frame {
+
+    private final IncludeStatistics stats;
+    private final long start;
+    private long childTime;
+    private long tokens;
+    private long childTokens;
+    private long macros;
+    private long childMacros;
+
+    Frame(IncludeStatistics stats, long start) {
+      this.stats = stats;
+      this.start = start;
+    }
+  }
+
+  /**
+   * Called before an included file is processed.
+   *
+   * @param file the included file
+   * @param chars size of the file in characters
+   */
+  public void enter(File file, long chars) {
+    IncludeStatistics stats = statistics.computeIfAbsent(file.getAbsolutePath(), IncludeStatistics::new);
+    stats.translationUnits++;
+    stats.chars += chars;
+    stack.push(new Frame(stats, System.nanoTime()));
+  }
+
+  /**
+   * Called after an included file is processed, also if the processing failed.
+   */
+  public void leave() {
+    Frame frame = stack.pop();
+    long time = System.nanoTime() - frame.start;
+    IncludeStatistics stats = frame.stats;
+    stats.totalTime += time;
+    stats.selfTime += time - frame.childTime;
+    stats.selfTokens += frame.tokens;
+    stats.totalTokens += frame.tokens + frame.childTokens;
+    stats.selfMacros += frame.macros;
+    stats.totalMacros += frame.macros + frame.childMacros;
+
+    Frame parent = stack.peek();
+    if (parent != null) {
+      parent.childTime += time;
+      parent.childTokens += frame.tokens + frame.childTokens;
+      parent.childMacros += frame.macros + frame.childMacros;
+    }
+  }
+
+  /**
+   * Counts a token processed in the current included file, ignored outside of included files.
+   */
+  public void addToken() {
+    Frame frame = stack.peek();
+    if (frame != null) {
+      frame.tokens++;
+    }
+  }
+
+  /**
+   * Counts a macro defined in the current included file, ignored outside of included files.
+   */
+  public void addMacroDefinition() {
+    Frame frame = stack.peek();
+    if (frame != null) {
+      frame.macros++;
+    }
+  }
+
+  /**
+   * @return statistics of all included files, sorted by descending total time
+   */
+  public List<IncludeStatistics> getStatistics() {
+    List<IncludeStatistics> result = new ArrayList<>(statistics.values());
+    Collections.sort(result, (a, b) -> Long.compare(b.getTotalTime(), a.getTotalTime()));
+    return result;
+  }
+
+  /**
+   * Write the most expensive files as a table sorted by descending total time.
+   *
+   * @param writer target of the table
+   * @param topCount maximum number of files
+   * @throws IOException in case of write errors
+   */
+  public void writeTable(Writer writer, int topCount) throws IOException {
+    writer.write(String.format(Locale.ENGLISH, "%12s %12s %8s %10s %10s %s%n",
+      "total[ms]", "self[ms]", "units", "tokens", "macros", "file"));
+    List<IncludeStatistics> sorted = getStatistics();
+    for (IncludeStatistics stats : sorted.subList(0, Math.min(topCount, sorted.size()))) {
+      writer.write(String.format(Locale.ENGLISH, "%12.1f %12.1f %8d %10d %10d %s%n",
+        stats.getTotalTime() / NANOS_PER_MILLI, stats.getSelfTime() / NANOS_PER_MILLI, stats.getTranslationUnits(),
+        stats.getTotalTokens(), stats.getTotalMacros(), stats.getPath()));
+    }
+  }
+
+  /**
+   * Write the statistics of all files in JSON format sorted by descending total time.
+   *
+   * @param writer target of the report
+   */
+  public void writeJson(Writer writer) {
+    JsonWriter json = JsonWriter.of(writer);
+    json.beginObject().name("includes").beginArray();
+    for (IncludeStatistics stats : getStatistics()) {
+      json.beginObject()
+        .prop("path", stats.getPath())
+        .prop("translationUnits", stats.getTranslationUnits())
+        .prop("chars", stats.getChars())
+        .prop("selfTimeNanos", stats.getSelfTime())
+        .prop("totalTimeNanos", stats.getTotalTime())
+        .prop("selfTokens", stats.getSelfTokens())
+        .prop("totalTokens", stats.getTotalTokens())
+        .prop("selfMacros", stats.getSelfMacros())
+        .prop("totalMacros", stats.getTotalMacros())
+        .endObject();
+    }
+    json.endArray().endObject();
+    json.close();
+  }
+
+  /**
+   * Write the most expensive files to the log and the statistics of all files in JSON format to a file.
+   *
+   * @param report path of the JSON report
+   * @param topCount maximum number of files in the log
+   * @throws IOException in case of write errors
+   */
+  public void writeReport(Path report, int topCount) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+      writeJson(writer);
+    }
+
+    StringWriter table = new StringWriter();
+    writeTable(table, topCount);
+    LOG.info("Include profile written to '{}', the {} most expensive includes:{}{}", report,
+      Math.min(topCount, statistics.size()), System.lineSeparator(), table);
+  }
+
+}
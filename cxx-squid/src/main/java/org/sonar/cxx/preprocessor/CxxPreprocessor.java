@@ -51,13 +51,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.cxx.CxxCompilationUnitSettings;
 import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxEvents;
 import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.CxxScanStatistics;
 import static org.sonar.cxx.api.CppKeyword.IFDEF;
 import static org.sonar.cxx.api.CppKeyword.IFNDEF;
 import static org.sonar.cxx.api.CppPunctuator.BR_RIGHT;
@@ -235,6 +238,23 @@ public class CxxPreprocessor extends Preprocessor {
   private State currentFileState = new State(null);
   private final Deque<State> globalStateStack = new LinkedList<>();
 
+  private final int fileTokenBudget;
+  private final long fileTimeBudget;
+  private int fileTokens;
+  private int budgetChecks;
+  private long fileStartTime;
+  private boolean budgetExceeded;
+  private boolean keepSkippedText = true;
+  private int nestedLexing;
+  private final CxxIncludeProfiler includeProfiler;
+  private final CxxScanStatistics statistics;
+  private final int maxExpansionDepth;
+  private final int maxExpandedTokens;
+  private final long expansionTimeBudget;
+  private MacroExpansionStatistics expansionStatistics = new MacroExpansionStatistics();
+  private int expansionDepth;
+  private long expansionStart;
+
   public CxxPreprocessor(SquidAstVisitorContext<Grammar> context, CxxLanguage language) {
     this(context, new CxxConfiguration(), language);
   }
@@ -252,6 +272,13 @@ public class CxxPreprocessor extends Preprocessor {
     this.cFilesPatterns = conf.getCFilesPatterns();
     this.conf = conf;
     this.language = language;
+    this.fileTokenBudget = conf.getFileTokenBudget();
+    this.fileTimeBudget = TimeUnit.MILLISECONDS.toNanos(conf.getFileTimeBudget());
+    this.maxExpansionDepth = conf.getMacroExpansionMaxDepth();
+    this.maxExpandedTokens = conf.getMacroExpansionMaxTokens();
+    this.expansionTimeBudget = TimeUnit.MILLISECONDS.toNanos(conf.getMacroExpansionTimeBudget());
+    this.includeProfiler = conf.getIncludeProfileReportFile() != null ? new CxxIncludeProfiler() : null;
+    this.statistics = CxxScanStatistics.of(context);
 
     codeProvider = sourceCodeProvider;
     codeProvider.setIncludeRoots(conf.getIncludeDirectories(), conf.getBaseDir());
@@ -306,6 +333,31 @@ public class CxxPreprocessor extends Preprocessor {
     }
   }
 
+  /**
+   * @return profiler of the included files, null if include profiling is disabled
+   */
+  @Nullable
+  public CxxIncludeProfiler getIncludeProfiler() {
+    return includeProfiler;
+  }
+
+  /**
+   * Skipped text trivia of inactive code and of the original macro invocations is only needed by few visitors,
+   * without it the tokens of the AST need less memory. The skipped text of preprocessor directives is always kept.
+   *
+   * @param enabled false to drop the skipped text of inactive code and macro invocations, default is true
+   */
+  public void setSkippedTextTriviaEnabled(boolean enabled) {
+    keepSkippedText = enabled;
+  }
+
+  /**
+   * @return macro expansions of the file under analysis, or of the last analysed file
+   */
+  public MacroExpansionStatistics getMacroExpansionStatistics() {
+    return expansionStatistics;
+  }
+
   public Collection<Include> getIncludedFiles(File file) {
     return includedFiles.get(file.getPath());
   }
@@ -328,6 +380,15 @@ public class CxxPreprocessor extends Preprocessor {
 
   @Override
   public PreprocessorAction process(List<Token> tokens) { //TODO: deprecated PreprocessorAction
+    PreprocessorAction action = processTokens(tokens);
+    if (fileTokenBudget > 0 && currentContextFile != null && nestedLexing == 0
+      && currentFileState.includeUnderAnalysis == null) {
+      countTokens(tokens.get(0), action);
+    }
+    return action;
+  }
+
+  private PreprocessorAction processTokens(List<Token> tokens) { //TODO: deprecated PreprocessorAction
     Token token = tokens.get(0);
     TokenType ttype = token.getType();
 
@@ -336,6 +397,15 @@ public class CxxPreprocessor extends Preprocessor {
 
     if (context.getFile() != currentContextFile) {
       currentContextFile = context.getFile();
+      fileTokens = 0;
+      fileStartTime = System.nanoTime();
+      statistics.startPreprocessing(fileStartTime);
+      expansionStatistics = new MacroExpansionStatistics();
+      if (budgetExceeded) {
+        // analysis of the previous file was aborted, conditional compilation state is undefined
+        currentFileState.reset();
+        budgetExceeded = false;
+      }
       compilationUnitSettings = conf.getCompilationUnitSettings(currentContextFile.getAbsolutePath());
 
       if (compilationUnitSettings != null) {
@@ -402,7 +472,7 @@ public class CxxPreprocessor extends Preprocessor {
       } else {
         // Use global settings
         LOG.debug("global settings for: '{}'", rootFilePath);
-        if (isCFile(currentContextFile.getAbsolutePath())) {
+        if (language.isCLanguage() || isCFile(currentContextFile.getAbsolutePath())) {
           //Create macros to replace C++ keywords when parsing C files
           registerMacros(StandardDefinitions.compatibilityMacros());
           fixedMacros.disable(CPLUSPLUS);
@@ -412,6 +482,13 @@ public class CxxPreprocessor extends Preprocessor {
       }
     }
 
+    if (currentContextFile != null) {
+      checkBudget(token);
+    }
+    if (includeProfiler != null && currentFileState.includeUnderAnalysis != null) {
+      includeProfiler.addToken();
+    }
+
     if (ttype.equals(PREPROCESSOR)) {
 
       AstNode lineAst;
@@ -420,7 +497,7 @@ public class CxxPreprocessor extends Preprocessor {
       } catch (com.sonar.sslr.api.RecognitionException re) {
         LOG.warn("Cannot parse '{}', ignoring...", token.getValue());
         LOG.debug("Parser exception: '{}'", re);
-        return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+        return new PreprocessorAction(1, skippedText(token),
           new ArrayList<Token>()); //TODO: deprecated PreprocessorAction
       }
 
@@ -439,7 +516,7 @@ public class CxxPreprocessor extends Preprocessor {
       }
 
       if (currentFileState.skipPreprocessorDirectives) {
-        return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+        return new PreprocessorAction(1, skippedText(token),
           new ArrayList<Token>()); //TODO: deprecated PreprocessorAction
       }
 
@@ -453,13 +530,17 @@ public class CxxPreprocessor extends Preprocessor {
 
       // Ignore all other preprocessor directives (which are not handled explicitly)
       // and strip them from the stream
-      return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+      return new PreprocessorAction(1, skippedText(token),
         new ArrayList<Token>()); //TODO: deprecated PreprocessorAction
     }
 
-    if (!ttype.equals(EOF)) {
+    if (ttype.equals(EOF)) {
+      if (nestedLexing == 0 && globalStateStack.isEmpty()) {
+        statistics.endPreprocessing(System.nanoTime());
+      }
+    } else {
       if (currentFileState.skipPreprocessorDirectives) {
-        return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+        return new PreprocessorAction(1, skippedText(token),
           new ArrayList<Token>()); //TODO: deprecated PreprocessorAction
       }
 
@@ -471,13 +552,57 @@ public class CxxPreprocessor extends Preprocessor {
     return PreprocessorAction.NO_OPERATION; //TODO: deprecated PreprocessorAction
   }
 
+  /**
+   * The token budget limits the tokens the parser has to match: the tokens of the file itself after macro expansion.
+   * A token passed through counts once, a replaced token (macro invocation, directive) counts with its replacement.
+   */
+  private void countTokens(Token token, PreprocessorAction action) {
+    fileTokens += action.getNumberOfConsumedTokens() == 0 ? 1 : action.getTokensToInject().size();
+    if (fileTokens > fileTokenBudget) {
+      budgetExceeded = true;
+      throw new FileBudgetExceededException("token budget of " + fileTokenBudget + " tokens exceeded at line "
+        + token.getLine());
+    }
+  }
+
+  /**
+   * Cheap check of the time budget of a file: it is only done for every 256th token including the tokens of included
+   * files. The parser checks the same budget while parsing ({@link org.sonar.cxx.parser.CxxFallbackParser}).
+   */
+  private void checkBudget(Token token) {
+    if (fileTimeBudget > 0 && (++budgetChecks & 0xFF) == 0 && System.nanoTime() - fileStartTime > fileTimeBudget) {
+      budgetExceeded = true;
+      throw new FileBudgetExceededException("time budget of " + conf.getFileTimeBudget() + " ms exceeded at line "
+        + token.getLine());
+    }
+  }
+
+  /**
+   * Skipped text (directives, inactive code, macro invocations) is attached as trivia to the following token. The
+   * skipped text of inactive code and macro invocations is dropped if no visitor needs it, except while lexing macro
+   * bodies: the concatenation of tokens depends on it.
+   */
+  private List<Trivia> skippedText(Token token) {
+    if (keepSkippedText || nestedLexing > 0 || token.getType().equals(PREPROCESSOR)) {
+      return Collections.singletonList(Trivia.createSkippedText(token));
+    }
+    return Collections.emptyList();
+  }
+
+  private List<Trivia> skippedText(List<Token> tokens) {
+    if (keepSkippedText || nestedLexing > 0) {
+      return Collections.singletonList(Trivia.createSkippedText(tokens));
+    }
+    return Collections.emptyList();
+  }
+
   public void finishedPreprocessing(File file) {
     // From 16.3.5 "Scope of macro definitions":
     // A macro definition lasts (independent of block structure) until
     // a corresponding #undef directive is encountered or (if none
     // is encountered) until the end of the translation unit.
 
-    LOG.debug("finished preprocessing '{}'", file);
+    LOG.debug("finished preprocessing '{}', macro expansions: {}", file, expansionStatistics);
 
     analysedFiles.clear();
     fixedMacros.clearLowPrio();
@@ -538,7 +663,7 @@ public class CxxPreprocessor extends Preprocessor {
       currentFileState.conditionalInclusionCounter++;
     }
 
-    return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+    return new PreprocessorAction(1, skippedText(token),
       new ArrayList<Token>()); //TODO: deprecated PreprocessorAction
   }
 
@@ -577,7 +702,7 @@ public class CxxPreprocessor extends Preprocessor {
       }
     }
 
-    return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+    return new PreprocessorAction(1, skippedText(token),
       new ArrayList<Token>()); //TODO: deprecated PreprocessorAction
   }
 
@@ -598,7 +723,7 @@ public class CxxPreprocessor extends Preprocessor {
       currentFileState.conditionalInclusionCounter++;
     }
 
-    return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+    return new PreprocessorAction(1, skippedText(token),
       new ArrayList<Token>()); //TODO: deprecated PreprocessorAction
   }
 
@@ -618,7 +743,7 @@ public class CxxPreprocessor extends Preprocessor {
       }
     }
 
-    return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+    return new PreprocessorAction(1, skippedText(token),
       new ArrayList<Token>()); //TODO: deprecated PreprocessorAction
   }
 
@@ -635,7 +760,7 @@ public class CxxPreprocessor extends Preprocessor {
       currentFileState.conditionWasTrue = false;
     }
 
-    return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+    return new PreprocessorAction(1, skippedText(token),
       new ArrayList<Token>()); //TODO: deprecated PreprocessorAction
   }
 
@@ -647,8 +772,11 @@ public class CxxPreprocessor extends Preprocessor {
       LOG.trace("[{}:{}]: storing macro: '{}'", filename, token.getLine(), macro);
     }
     getMacros().put(macro.name, macro);
+    if (includeProfiler != null) {
+      includeProfiler.addMacroDefinition();
+    }
 
-    return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+    return new PreprocessorAction(1, skippedText(token),
       new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
   }
 
@@ -669,14 +797,26 @@ public class CxxPreprocessor extends Preprocessor {
     // c) if not done yet, process it using a special lexer, which calls back only
     //    if it finds relevant preprocessor directives (currently: include's and define's)
 
+    CxxEvents.Event event = CxxEvents.begin(CxxEvents.Type.INCLUDE);
     File includedFile = findIncludedFile(ast, token, filename);
+    try {
+      includeFile(includedFile, token, filename, charset);
+    } finally {
+      event.commit(includedFile != null ? includedFile.getPath() : token.getValue(), globalStateStack.size());
+    }
+
+    return new PreprocessorAction(1, skippedText(token),
+      new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
+  }
 
+  private void includeFile(@Nullable File includedFile, Token token, String filename, Charset charset) {
     File currentFile = this.getFileUnderAnalysis();
     if (currentFile != null && includedFile != null) {
       includedFiles.put(currentFile.getPath(), new Include(token.getLine(), includedFile.getAbsolutePath()));
     }
 
     if (includedFile == null) {
+      statistics.addIncludeMiss();
       if (conf.getMissingIncludeWarningsEnabled()) {
         LOG.warn("[" + filename + ":" + token.getLine() + "]: cannot find the sources for '"
           + token.getValue() + "'");
@@ -684,7 +824,11 @@ public class CxxPreprocessor extends Preprocessor {
       if (currentFile != null) {
         missingIncludeFiles.put(currentFile.getPath(), new Include(token.getLine(), token.getValue()));
       }
-    } else if (!analysedFiles.contains(includedFile)) {
+      return;
+    }
+
+    statistics.addIncludeHit();
+    if (!analysedFiles.contains(includedFile)) {
       analysedFiles.add(includedFile.getAbsoluteFile());
       if (LOG.isTraceEnabled()) {
         LOG.trace("[{}:{}]: processing {}, resolved to file '{}'",
@@ -695,22 +839,29 @@ public class CxxPreprocessor extends Preprocessor {
       currentFileState = new State(includedFile);
 
       try {
-        IncludeLexer.create(this).lex(getCodeProvider().getSourceCode(includedFile, charset));
+        String source = getCodeProvider().getSourceCode(includedFile, charset);
+        if (includeProfiler != null) {
+          includeProfiler.enter(includedFile, source.length());
+        }
+        try {
+          IncludeLexer.create(this).lex(source);
+        } finally {
+          if (includeProfiler != null) {
+            includeProfiler.leave();
+          }
+        }
       } catch (IOException ex) {
         LOG.error("[{}: Cannot read file]: {}", includedFile.getAbsoluteFile(), ex);
       } finally {
         currentFileState = globalStateStack.pop();
       }
     }
-
-    return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
-      new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
   }
 
   PreprocessorAction handleUndefLine(AstNode ast, Token token) { //@todo: deprecated PreprocessorAction
     String macroName = ast.getFirstDescendant(IDENTIFIER).getTokenValue();
     getMacros().removeLowPrio(macroName);
-    return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+    return new PreprocessorAction(1, skippedText(token),
       new ArrayList<Token>()); //@todo: deprecated PreprocessorAction
   }
 
@@ -720,30 +871,118 @@ public class CxxPreprocessor extends Preprocessor {
     // Pipe the resulting string through a lexer to create proper Tokens
     // and to expand recursively all macros which may be in there.
     //
+    Macro macro = getMacro(curr.getValue());
+    if (macro == null) {
+      return PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
+    }
+    if (expansionDepth > 0) {
+      // nested expansion: a limit stops the expansion of the macro used in the source
+      String limit = exceededExpansionLimit();
+      if (limit != null) {
+        throw new ExpansionLimitExceededException(macro.name, limit);
+      }
+      expansionDepth++;
+      try {
+        return expandMacroInstance(tokens, curr, filename, macro);
+      } finally {
+        expansionDepth--;
+      }
+    }
 
+    String limit = exceededExpansionLimit();
+    if (limit != null) {
+      stopExpansion(macro.name, macro.name, limit, curr, filename);
+      return PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
+    }
+    expansionStart = System.nanoTime();
+    expansionDepth = 1;
+    try {
+      return expandMacroInstance(tokens, curr, filename, macro);
+    } catch (RuntimeException e) {
+      ExpansionLimitExceededException limitException = getExpansionLimitException(e);
+      if (limitException == null) {
+        throw e;
+      }
+      stopExpansion(macro.name, limitException.macroName, limitException.limit, curr, filename);
+      return PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
+    } finally {
+      expansionDepth = 0;
+      expansionStatistics.addTime(System.nanoTime() - expansionStart);
+    }
+  }
+
+  /**
+   * Limits of the macro expansions: the nesting depth, the number of tokens created by the expansions of the file and
+   * the time spent expanding the macros of the file.
+   *
+   * @return description of the exceeded limit, null if no limit is exceeded
+   */
+  @Nullable
+  private String exceededExpansionLimit() {
+    if (maxExpansionDepth > 0 && expansionDepth >= maxExpansionDepth) {
+      return "depth limit of " + maxExpansionDepth;
+    }
+    if (maxExpandedTokens > 0 && expansionStatistics.getExpandedTokens() >= maxExpandedTokens) {
+      return "limit of " + maxExpandedTokens + " expanded tokens";
+    }
+    if (expansionTimeBudget > 0 && expansionStatistics.getTime()
+      + (expansionDepth > 0 ? System.nanoTime() - expansionStart : 0) > expansionTimeBudget) {
+      return "time budget of " + conf.getMacroExpansionTimeBudget() + " ms";
+    }
+    return null;
+  }
+
+  /**
+   * The macro used in the source is not expanded and stays an identifier. The first stopped expansion of a file is
+   * logged as warning, the following ones on debug level.
+   */
+  private void stopExpansion(String macroName, String limitMacroName, String limit, Token token, String filename) {
+    if (expansionStatistics.addStoppedExpansion(macroName)) {
+      LOG.warn("[{}:{}]: macro expansion {} exceeded by '{}', '{}' and all following macros exceeding a limit are"
+        + " not expanded", filename, token.getLine(), limit, limitMacroName, macroName);
+    } else if (LOG.isDebugEnabled()) {
+      LOG.debug("[{}:{}]: macro expansion {} exceeded by '{}', '{}' is not expanded", filename, token.getLine(),
+        limit, limitMacroName, macroName);
+    }
+  }
+
+  @Nullable
+  private static ExpansionLimitExceededException getExpansionLimitException(Throwable e) {
+    Throwable cause = e;
+    while (cause != null) {
+      if (cause instanceof ExpansionLimitExceededException) {
+        return (ExpansionLimitExceededException) cause;
+      }
+      cause = cause.getCause();
+    }
+    return null;
+  }
+
+  private PreprocessorAction expandMacroInstance(List<Token> tokens, Token curr, String filename, Macro macro) {
     PreprocessorAction ppaction = PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
-    Macro macro = getMacro(curr.getValue());
-    if (macro != null) {
-      List<Token> replTokens = new LinkedList<>();
-      int tokensConsumed = 0;
+    List<Token> replTokens = new LinkedList<>();
+    int tokensConsumed = 0;
 
-      if (macro.params == null) {
-        tokensConsumed = 1;
-        replTokens = new LinkedList<>(expandMacro(macro.name, serialize(evaluateHashhashOperators(macro.body))));
-      } else {
-        int tokensConsumedMatchingArgs = expandFunctionLikeMacro(macro.name,
-          tokens.subList(1, tokens.size()),
-          replTokens);
-        if (tokensConsumedMatchingArgs > 0) {
-          tokensConsumed = 1 + tokensConsumedMatchingArgs;
-        }
+    if (macro.params == null) {
+      tokensConsumed = 1;
+      replTokens = new LinkedList<>(expandMacro(macro.name, serialize(evaluateHashhashOperators(macro.body))));
+    } else {
+      int tokensConsumedMatchingArgs = expandFunctionLikeMacro(macro.name,
+        tokens.subList(1, tokens.size()),
+        replTokens);
+      if (tokensConsumedMatchingArgs > 0) {
+        tokensConsumed = 1 + tokensConsumedMatchingArgs;
       }
+    }
 
-      if (tokensConsumed > 0) {
+    if (tokensConsumed > 0) {
+      statistics.addMacroExpansion();
+      expansionStatistics.addExpansion(expansionDepth);
 
-        // Rescanning to expand function like macros, in case it requires consuming more tokens
-        List<Token> outTokens = new LinkedList<>();
-        getMacros().disable(macro.name);
+      // Rescanning to expand function like macros, in case it requires consuming more tokens
+      List<Token> outTokens = new LinkedList<>();
+      getMacros().disable(macro.name);
+      try {
         while (!replTokens.isEmpty()) {
           Token c = replTokens.get(0);
           PreprocessorAction action = PreprocessorAction.NO_OPERATION; //@todo: deprecated PreprocessorAction
@@ -766,24 +1005,25 @@ public class CxxPreprocessor extends Preprocessor {
             }
           }
         }
-        replTokens = outTokens;
+      } finally {
         getMacros().enable(macro.name);
+      }
+      replTokens = outTokens;
 
-        replTokens = reallocate(replTokens, curr);
-
-        if (LOG.isTraceEnabled()) {
-          LOG.trace("[{}:{}]: replacing '" + curr.getValue()
-            + (tokensConsumed == 1
-              ? ""
-              : serialize(tokens.subList(1, tokensConsumed))) + "' -> '" + serialize(replTokens) + '\'',
-            filename, curr.getLine());
-        }
+      replTokens = reallocate(replTokens, curr);
 
-        ppaction = new PreprocessorAction( //@todo: deprecated PreprocessorAction
-          tokensConsumed,
-          Collections.singletonList(Trivia.createSkippedText(tokens.subList(0, tokensConsumed))),
-          replTokens);
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("[{}:{}]: replacing '" + curr.getValue()
+          + (tokensConsumed == 1
+            ? ""
+            : serialize(tokens.subList(1, tokensConsumed))) + "' -> '" + serialize(replTokens) + '\'',
+          filename, curr.getLine());
       }
+
+      ppaction = new PreprocessorAction( //@todo: deprecated PreprocessorAction
+        tokensConsumed,
+        skippedText(tokens.subList(0, tokensConsumed)),
+        replTokens);
     }
 
     return ppaction;
@@ -831,11 +1071,19 @@ public class CxxPreprocessor extends Preprocessor {
   private List<Token> expandMacro(String macroName, String macroExpression) {
     // C++ standard 16.3.4/2 Macro Replacement - Rescanning and further replacement
     List<Token> tokens = null;
+    CxxEvents.Event event = CxxEvents.begin(CxxEvents.Type.MACRO_EXPANSION);
     getMacros().disable(macroName);
+    long expandedTokens = expansionStatistics.getExpandedTokens();
     try {
+      nestedLexing++;
       tokens = stripEOF(CxxLexer.create(this).lex(macroExpression));
+      // the tokens injected by nested expansions are already counted by them
+      long nestedTokens = expansionStatistics.getExpandedTokens() - expandedTokens;
+      expansionStatistics.addExpandedTokens(Math.max(0, tokens.size() - nestedTokens));
     } finally {
+      nestedLexing--;
       getMacros().enable(macroName);
+      event.commit(macroName, nestedLexing);
     }
     return tokens;
   }
@@ -1009,7 +1257,10 @@ public class CxxPreprocessor extends Preprocessor {
             } else {
               // otherwise the arguments have to be fully expanded before
               // expanding the body of the macro
+              long expandedTokens = expansionStatistics.getExpandedTokens();
               newValue = serialize(expandMacro("", replacement.getValue()));
+              // the tokens of the argument are counted when the body is lexed
+              expansionStatistics.setExpandedTokens(expandedTokens);
             }
           }
 
@@ -1259,7 +1510,13 @@ public class CxxPreprocessor extends Preprocessor {
     } else if ((node = ast.getFirstDescendant(CppGrammar.includeBodyFreeform)) != null) {
       // expand and recurse
       String includeBody = serialize(stripEOF(node.getTokens()), "");
-      String expandedIncludeBody = serialize(stripEOF(CxxLexer.create(this).lex(includeBody)), "");
+      String expandedIncludeBody;
+      nestedLexing++;
+      try {
+        expandedIncludeBody = serialize(stripEOF(CxxLexer.create(this).lex(includeBody)), "");
+      } finally {
+        nestedLexing--;
+      }
       if (LOG.isTraceEnabled()) {
         LOG.trace("Include resolve macros: includeBody '{}' - expandedIncludeBody: '{}'",
           includeBody, expandedIncludeBody);
@@ -1334,4 +1591,20 @@ public class CxxPreprocessor extends Preprocessor {
       super(message, throwable);
     }
   }
+
+  /**
+   * Stops a macro expansion exceeding a limit, caught by the expansion of the macro used in the source.
+   */
+  private static class ExpansionLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 4204389416735744932L;
+    private final String macroName;
+    private final String limit;
+
+    ExpansionLimitExceededException(String macroName, String limit) {
+      super("macro expansion " + limit + " exceeded by '" + macroName + "'", null, false, false);
+      this.macroName = macroName;
+      this.limit = limit;
+    }
+  }
 }
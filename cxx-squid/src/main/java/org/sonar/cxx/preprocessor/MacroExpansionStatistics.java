@@ -0,0 +1,109 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Macro expansions of one file: number of expansions, created tokens, nesting depth, time and the expansions stopped
+ * by the limits of the configuration.
+ */
+public final class MacroExpansionStatistics {
+
+  private long expansions;
+  private long expandedTokens;
+  private int maxDepth;
+  private long time;
+  private long stoppedExpansions;
+  private final Set<String> stoppedMacros = new LinkedHashSet<>();
+
+  void addExpansion(int depth) {
+    expansions++;
+    maxDepth = Math.max(maxDepth, depth);
+  }
+
+  void addExpandedTokens(long tokens) {
+    expandedTokens += tokens;
+  }
+
+  void setExpandedTokens(long tokens) {
+    expandedTokens = tokens;
+  }
+
+  void addTime(long nanos) {
+    time += nanos;
+  }
+
+  /**
+   * @return true if this is the first expansion stopped in the file
+   */
+  boolean addStoppedExpansion(String macro) {
+    stoppedMacros.add(macro);
+    return ++stoppedExpansions == 1;
+  }
+
+  public long getExpansions() {
+    return expansions;
+  }
+
+  /**
+   * @return tokens created by the expansions, each token is counted once even if it results from nested expansions
+   */
+  public long getExpandedTokens() {
+    return expandedTokens;
+  }
+
+  /**
+   * @return maximum nesting depth of the expansions
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * @return time in nanoseconds spent in macro expansions
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * @return macro uses which were not expanded because a limit was exceeded
+   */
+  public long getStoppedExpansions() {
+    return stoppedExpansions;
+  }
+
+  /**
+   * @return names of the macros which were not expanded because a limit was exceeded
+   */
+  public Set<String> getStoppedMacros() {
+    return Collections.unmodifiableSet(stoppedMacros);
+  }
+
+  @Override
+  public String toString() {
+    return "expansions=" + expansions + ", expandedTokens=" + expandedTokens + ", maxDepth=" + maxDepth
+      + ", time=" + time / 1000000 + "ms, stoppedExpansions=" + stoppedExpansions;
+  }
+
+}
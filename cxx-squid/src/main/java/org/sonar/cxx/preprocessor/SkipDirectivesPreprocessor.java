@@ -0,0 +1,47 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+//@todo: deprecated, see http://javadocs.sonarsource.org/4.5.2/apidocs/deprecated-list.html
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import java.util.Collections;
+import java.util.List;
+import org.sonar.cxx.api.CxxTokenType;
+
+/**
+ * Lightweight replacement of the {@link CxxPreprocessor}: preprocessor directives are not evaluated, they are only
+ * moved to the trivia of the following token. Used to get a plain token stream for files which are not parsed.
+ */
+public class SkipDirectivesPreprocessor extends Preprocessor { //@todo deprecated Preprocessor
+
+  @Override
+  public PreprocessorAction process(List<Token> tokens) { //@todo deprecated PreprocessorAction
+    Token token = tokens.get(0);
+    if (token.getType().equals(CxxTokenType.PREPROCESSOR)) {
+      //@todo deprecated PreprocessorAction
+      return new PreprocessorAction(1, Collections.singletonList(Trivia.createSkippedText(token)),
+        Collections.emptyList());
+    }
+    return PreprocessorAction.NO_OPERATION; //@todo deprecated PreprocessorAction
+  }
+}
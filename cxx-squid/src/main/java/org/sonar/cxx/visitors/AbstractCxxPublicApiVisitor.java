@@ -89,6 +89,12 @@ public abstract class AbstractCxxPublicApiVisitor<GRAMMAR extends Grammar>
 
   private boolean skipFile = true;
 
+  /**
+   * Ancestors of the visited node. The other ancestor queries start at descendants or ancestors of the visited node,
+   * or look for several node types; they walk the parent chain.
+   */
+  private CxxAncestors ancestors;
+
   protected abstract void onPublicApi(AstNode node, String id, List<Token> comments);
 
   public interface PublicApiHandler {
@@ -104,6 +110,9 @@ public abstract class AbstractCxxPublicApiVisitor<GRAMMAR extends Grammar>
     subscribeTo(CxxGrammarImpl.enumSpecifier);
     subscribeTo(CxxGrammarImpl.initDeclaratorList);
     subscribeTo(CxxGrammarImpl.aliasDeclaration);
+    ancestors = CxxAncestors.of(getContext());
+    ancestors.track(CxxGrammarImpl.functionBody, CxxGrammarImpl.memberDeclaration, CxxGrammarImpl.declaration,
+      CxxGrammarImpl.simpleDeclaration, CxxGrammarImpl.templateDeclaration, CxxGrammarImpl.declSpecifier);
   }
 
   @Override
@@ -191,16 +200,14 @@ public abstract class AbstractCxxPublicApiVisitor<GRAMMAR extends Grammar>
   private void visitDeclaratorList(AstNode declaratorList) {
 
     // do not handle declaration in function body
-    AstNode functionBody = declaratorList
-      .getFirstAncestor(CxxGrammarImpl.functionBody);
+    AstNode functionBody = ancestors.getFirstAncestor(declaratorList, CxxGrammarImpl.functionBody);
 
     if (functionBody != null) {
       return;
     }
 
     // do not handle member declarations here
-    AstNode memberDeclaration = declaratorList
-      .getFirstAncestor(CxxGrammarImpl.memberDeclaration);
+    AstNode memberDeclaration = ancestors.getFirstAncestor(declaratorList, CxxGrammarImpl.memberDeclaration);
 
     if (memberDeclaration != null) {
       return;
@@ -216,8 +223,7 @@ public abstract class AbstractCxxPublicApiVisitor<GRAMMAR extends Grammar>
       return;
     }
 
-    AstNode declaration = declaratorList
-      .getFirstAncestor(CxxGrammarImpl.declaration);
+    AstNode declaration = ancestors.getFirstAncestor(declaratorList, CxxGrammarImpl.declaration);
 
     List<AstNode> declarators = declaratorList
       .getChildren(CxxGrammarImpl.initDeclarator);
@@ -256,9 +262,8 @@ public abstract class AbstractCxxPublicApiVisitor<GRAMMAR extends Grammar>
     return false;
   }
 
-  private static boolean isFriendDeclarationList(AstNode declaratorList) {
-    AstNode simpleDeclNode = declaratorList
-      .getFirstAncestor(CxxGrammarImpl.simpleDeclaration);
+  private boolean isFriendDeclarationList(AstNode declaratorList) {
+    AstNode simpleDeclNode = ancestors.getFirstAncestor(declaratorList, CxxGrammarImpl.simpleDeclaration);
 
     if (simpleDeclNode == null) {
       LOG.warn("No simple declaration found for declarator list at {}",
@@ -347,8 +352,8 @@ public abstract class AbstractCxxPublicApiVisitor<GRAMMAR extends Grammar>
     }
   }
 
-  private static AstNode getTypedefNode(AstNode classSpecifier) {
-    AstNode declSpecifier = classSpecifier.getFirstAncestor(CxxGrammarImpl.declSpecifier);
+  private AstNode getTypedefNode(AstNode classSpecifier) {
+    AstNode declSpecifier = ancestors.getFirstAncestor(classSpecifier, CxxGrammarImpl.declSpecifier);
     if (declSpecifier != null) {
       declSpecifier = declSpecifier.getPreviousSibling();
       if (declSpecifier != null) {
@@ -364,7 +369,7 @@ public abstract class AbstractCxxPublicApiVisitor<GRAMMAR extends Grammar>
   private void visitClassSpecifier(AstNode classSpecifier) {
 
     // check if this is a template specification to adjust documentation node
-    AstNode docNode = classSpecifier.getFirstAncestor(CxxGrammarImpl.templateDeclaration);
+    AstNode docNode = ancestors.getFirstAncestor(classSpecifier, CxxGrammarImpl.templateDeclaration);
     if (docNode == null) {
       // check if this is a typedef to adjust documentation node
       docNode = getTypedefNode(classSpecifier);
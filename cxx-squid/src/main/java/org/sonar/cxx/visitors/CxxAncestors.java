@@ -0,0 +1,194 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Ancestors of the node currently visited, by node type.
+ *
+ * A CxxAstScanner maintains a stack of the open nodes of every tracked node type while it traverses the AST, so
+ * ancestor queries are lookups instead of walks up the parent chain. Checks declare the node types they query in
+ * {@link SquidAstVisitor#init()}, see {@link #track(AstNodeType...)}. Queries are only valid for the node currently
+ * visited: the ancestors between a descendant and the current node are not known yet. Queries for types which are
+ * not tracked, and all queries outside of a CxxAstScanner, walk the parent chain.
+ */
+public final class CxxAncestors {
+
+  private final Map<AstNodeType, Deque<AstNode>> stacks = new IdentityHashMap<>();
+  private final Tracker tracker = new Tracker();
+  private boolean active;
+  private boolean walking;
+
+  /**
+   * Returns the ancestors maintained by the scan of the context. Outside of a CxxAstScanner queries walk the parent
+   * chain.
+   *
+   * @param context context of the visitor, can be null
+   * @return ancestors of the scan
+   */
+  public static CxxAncestors of(@Nullable SquidAstVisitorContext<?> context) {
+    if (context instanceof CxxSquidAstVisitorContext) {
+      return ((CxxSquidAstVisitorContext<?>) context).getScanData(CxxAncestors.class, CxxAncestors::new);
+    }
+    return new CxxAncestors();
+  }
+
+  /**
+   * Visitor maintaining the stacks, to be registered at the scanner before the visitors using the ancestors.
+   */
+  public <G extends Grammar> SquidAstVisitor<G> getVisitor() {
+    @SuppressWarnings("unchecked")
+    SquidAstVisitor<G> visitor = (SquidAstVisitor<G>) tracker;
+    return visitor;
+  }
+
+  /**
+   * Track the open nodes of node types. Types must be added before the first file is visited, typically in
+   * {@link SquidAstVisitor#init()}.
+   *
+   * @param types node types to track
+   */
+  public void track(AstNodeType... types) {
+    if (walking) {
+      return;
+    }
+    for (AstNodeType type : types) {
+      if (!stacks.containsKey(type)) {
+        stacks.put(type, new ArrayDeque<>());
+        tracker.subscribeTo(type);
+      }
+    }
+  }
+
+  /**
+   * @return true if an ancestor of the node is of the given type
+   */
+  public boolean hasAncestor(AstNode node, AstNodeType type) {
+    return getFirstAncestor(node, type) != null;
+  }
+
+  /**
+   * @return nearest ancestor of the node of the given type, null if there is none
+   */
+  @CheckForNull
+  public AstNode getFirstAncestor(AstNode node, AstNodeType type) {
+    Deque<AstNode> stack = stack(type);
+    if (stack == null) {
+      return node.getFirstAncestor(type);
+    }
+    for (AstNode ancestor : stack) {
+      if (ancestor != node) {
+        return ancestor;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Nearest ancestor of a descendant of the node currently visited: the nodes between them are walked, the ancestors
+   * of the current node are looked up.
+   *
+   * @param current node currently visited
+   * @param descendant node in the subtree of the current node
+   * @param type node type of the ancestor
+   * @return nearest ancestor of the descendant of the given type, null if there is none
+   */
+  @CheckForNull
+  public AstNode getFirstAncestor(AstNode current, AstNode descendant, AstNodeType type) {
+    if (descendant == current) {
+      return getFirstAncestor(current, type);
+    }
+    for (AstNode ancestor = descendant.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+      if (ancestor.is(type)) {
+        return ancestor;
+      }
+      if (ancestor == current) {
+        return getFirstAncestor(current, type);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return number of ancestors of the node of the given type
+   */
+  public int getAncestorCount(AstNode node, AstNodeType type) {
+    Deque<AstNode> stack = stack(type);
+    if (stack == null) {
+      int count = 0;
+      for (AstNode ancestor = node.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+        if (ancestor.is(type)) {
+          count++;
+        }
+      }
+      return count;
+    }
+    int count = stack.size();
+    Iterator<AstNode> top = stack.iterator();
+    if (top.hasNext() && top.next() == node) {
+      count--;
+    }
+    return count;
+  }
+
+  @CheckForNull
+  private Deque<AstNode> stack(AstNodeType type) {
+    return active && walking ? stacks.get(type) : null;
+  }
+
+  private final class Tracker extends SquidAstVisitor<Grammar> {
+
+    @Override
+    public void init() {
+      active = true;
+    }
+
+    @Override
+    public void visitFile(@Nullable AstNode astNode) {
+      walking = true;
+      for (Deque<AstNode> stack : stacks.values()) {
+        stack.clear();
+      }
+    }
+
+    @Override
+    public void visitNode(AstNode astNode) {
+      stacks.get(astNode.getType()).push(astNode);
+    }
+
+    @Override
+    public void leaveNode(AstNode astNode) {
+      stacks.get(astNode.getType()).pop();
+    }
+  }
+
+}
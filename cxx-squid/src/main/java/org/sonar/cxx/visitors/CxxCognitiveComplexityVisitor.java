@@ -23,17 +23,15 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.AstNodeType;
-import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
 import com.sonar.sslr.api.Grammar;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import org.sonar.cxx.api.CxxKeyword;
 import org.sonar.cxx.api.CxxPunctuator;
 import org.sonar.cxx.parser.CxxGrammarImpl;
 import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.measures.MetricDef;
 
 public final class CxxCognitiveComplexityVisitor<G extends Grammar> extends SquidAstVisitor<G> {
@@ -70,19 +68,6 @@ public final class CxxCognitiveComplexityVisitor<G extends Grammar> extends Squi
 
   }
 
-  private static final AstNodeType[] DESCENDANT_TYPES = new AstNodeType[]{
-    CxxGrammarImpl.handler,
-    CxxGrammarImpl.iterationStatement,
-    CxxGrammarImpl.lambdaExpression,
-    CxxGrammarImpl.logicalAndExpression,
-    CxxGrammarImpl.logicalOrExpression,
-    CxxGrammarImpl.selectionStatement,
-    CxxKeyword.ELSE,
-    CxxKeyword.GOTO,
-    CxxPunctuator.QUEST,
-    IDENTIFIER
-  };
-
   private static final AstNodeType[] INCREMENT_TYPES = new AstNodeType[]{
     CxxGrammarImpl.handler,
     CxxGrammarImpl.iterationStatement,
@@ -109,14 +94,15 @@ public final class CxxCognitiveComplexityVisitor<G extends Grammar> extends Squi
     CxxPunctuator.QUEST
   };
 
+  private final AstNodeType[] rootTypes;
+  private AstNode root;
+  private SourceCode rootSourceCode;
   private int nesting;
-  private final Set<AstNode> checkedNodes;
 
   private CxxCognitiveComplexityVisitor(Builder<G> builder) {
     this.metric = builder.metric;
     this.astNodeTypes = ImmutableSet.copyOf(builder.astNodeTypes);
-    nesting = 0;
-    checkedNodes = new HashSet<>();
+    this.rootTypes = astNodeTypes.toArray(new AstNodeType[astNodeTypes.size()]);
   }
 
   public static <G extends Grammar> Builder<G> builder() {
@@ -125,48 +111,62 @@ public final class CxxCognitiveComplexityVisitor<G extends Grammar> extends Squi
 
   @Override
   public void init() {
-    for (AstNodeType astNodeType : astNodeTypes) {
-      subscribeTo(astNodeType);
+    // the walker calls a visitor once per subscription of a type
+    Set<AstNodeType> types = Sets.newHashSet(astNodeTypes);
+    types.addAll(Arrays.asList(INCREMENT_TYPES));
+    types.addAll(Arrays.asList(NESTING_LEVEL_TYPES));
+    for (AstNodeType type : types) {
+      subscribeTo(type);
     }
   }
 
+  /**
+   * The complexity of a subscribed node is computed in one pass with the AST walker: the nesting level is increased
+   * on entering and decreased on leaving a nesting node. Subscribed nodes inside of a subscribed node (e.g. a local
+   * class method in a function) are accounted to the outer one.
+   */
   @Override
   public void visitNode(AstNode node) {
-    if (checkedNodes.contains(node)) {
-      return;
+    if (root == null) {
+      if (!node.is(rootTypes)) {
+        return;
+      }
+      root = node;
+      rootSourceCode = getContext().peekSourceCode();
+      nesting = 0;
     }
-    checkedNodes.add(node);
-
-    List<AstNode> watchedDescendants = node.getDescendants(DESCENDANT_TYPES);
 
-    if (Arrays.asList(NESTING_LEVEL_TYPES).contains(node.getType())
-      && !isElseIf(node)) {
-      nesting++;
+    if (isElseIf(node)) {
+      return;
     }
 
-    visitChildren(watchedDescendants);
-
-    if (Arrays.asList(NESTING_LEVEL_TYPES).contains(node.getType())
-      && !isElseIf(node)) {
-      nesting--;
+    int increment = 0;
+    if (node.is(INCREMENT_TYPES)) {
+      increment++;
     }
-
-    checkedNodes.addAll(watchedDescendants);
-
-    if (Arrays.asList(INCREMENT_TYPES).contains(node.getType())
-      && !isElseIf(node)) {
-      getContext().peekSourceCode().add(metric, 1);
+    if (node.is(NESTING_INCREMENTS_TYPES)) {
+      increment += nesting;
+    }
+    if (increment > 0) {
+      rootSourceCode.add(metric, increment);
     }
 
-    if (Arrays.asList(NESTING_INCREMENTS_TYPES).contains(node.getType())
-      && !isElseIf(node)) {
-      getContext().peekSourceCode().add(metric, nesting);
+    if (node.is(NESTING_LEVEL_TYPES)) {
+      nesting++;
     }
   }
 
-  private void visitChildren(List<AstNode> watchedDescendants) {
-    for (AstNode descendant : watchedDescendants) {
-      visitNode(descendant);
+  @Override
+  public void leaveNode(AstNode node) {
+    if (root == null) {
+      return;
+    }
+    if (node.is(NESTING_LEVEL_TYPES) && !isElseIf(node)) {
+      nesting--;
+    }
+    if (node == root) {
+      root = null;
+      rootSourceCode = null;
     }
   }
 
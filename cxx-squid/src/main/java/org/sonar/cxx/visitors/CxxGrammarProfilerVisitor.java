@@ -0,0 +1,319 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.cxx.parser.CxxGrammarInstrumentation;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+/**
+ * Visitor collecting parse cost statistics per {@link CxxGrammarImpl} rule.
+ *
+ * The visitor owns a private grammar in which the expression of every rule is wrapped with instructions recording
+ * the start, the match and the failure of the rule. {@link org.sonar.cxx.CxxAstScanner} parses the files with this
+ * grammar if the visitor is registered, so the statistics are collected during the regular parse: every execution of
+ * a rule is counted, matches taken from the memoization table are not. The self time of a rule is its time minus the
+ * time of the nested rules, the time of failed executions is the cost of backtracking. The inclusive time of
+ * recursive rules contains the nested executions of the same rule again.
+ *
+ * Profiling adds two clock readings per rule execution, it is a diagnostic tool only.
+ */
+public class CxxGrammarProfilerVisitor<GRAMMAR extends Grammar> extends SquidAstVisitor<GRAMMAR> {
+
+  private static final Logger LOG = Loggers.get(CxxGrammarProfilerVisitor.class);
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  private final Grammar grammar;
+  private final List<RuleStatistics> statistics = new ArrayList<>();
+  private int files;
+  private int skippedFiles;
+  private long tokens;
+  private long parseTime;
+
+  // rules currently executed by the parser
+  private RuleStatistics[] stackRules = new RuleStatistics[64];
+  private long[] stackStart = new long[64];
+  private long[] stackChildren = new long[64];
+  private int[] stackIndex = new int[64];
+  private int depth;
+
+  /**
+   * Statistics of one grammar rule.
+   */
+  public static final class RuleStatistics {
+
+    private final CxxGrammarImpl rule;
+    private long matches;
+    private long failures;
+    private long tokens;
+    private long inclusiveTime;
+    private long selfTime;
+    private long failureTime;
+
+    RuleStatistics(CxxGrammarImpl rule) {
+      this.rule = rule;
+    }
+
+    public CxxGrammarImpl getRule() {
+      return rule;
+    }
+
+    /**
+     * @return number of executions of the rule
+     */
+    public long getInvocations() {
+      return matches + failures;
+    }
+
+    /**
+     * @return number of successful executions
+     */
+    public long getMatches() {
+      return matches;
+    }
+
+    /**
+     * @return number of failed executions, the parser backtracked to try another alternative
+     */
+    public long getFailures() {
+      return failures;
+    }
+
+    /**
+     * @return number of tokens matched by the successful executions
+     */
+    public long getTokens() {
+      return tokens;
+    }
+
+    /**
+     * @return cumulative time in nanoseconds including nested rules
+     */
+    public long getInclusiveTime() {
+      return inclusiveTime;
+    }
+
+    /**
+     * @return cumulative time in nanoseconds excluding nested rules
+     */
+    public long getSelfTime() {
+      return selfTime;
+    }
+
+    /**
+     * @return cumulative time in nanoseconds of the failed executions including nested rules
+     */
+    public long getFailureTime() {
+      return failureTime;
+    }
+  }
+
+  public CxxGrammarProfilerVisitor(CxxConfiguration conf) {
+    this(CxxGrammarImpl.build(conf.getErrorRecoveryEnabled()));
+  }
+
+  public CxxGrammarProfilerVisitor(CxxConfiguration conf, CxxLanguage language) {
+    this(CxxGrammarImpl.build(conf.getErrorRecoveryEnabled(), language.isCLanguage()));
+  }
+
+  private CxxGrammarProfilerVisitor(Grammar grammar) {
+    this.grammar = grammar;
+    CxxGrammarInstrumentation.addListeners(grammar, key -> {
+      RuleStatistics ruleStatistics = new RuleStatistics(key);
+      statistics.add(ruleStatistics);
+      return new RuleProbe(ruleStatistics);
+    });
+  }
+
+  /**
+   * @return instrumented grammar the files have to be parsed with
+   */
+  public Grammar getGrammar() {
+    return grammar;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void visitFile(@Nullable AstNode astNode) {
+    // a parse aborted by an exception leaves its rules on the stack
+    depth = 0;
+    if (astNode == null) {
+      skippedFiles++;
+      return;
+    }
+    files++;
+    tokens += astNode.getTokens().size();
+  }
+
+  private void enter(RuleStatistics rule, int index) {
+    if (depth == stackRules.length) {
+      int size = depth * 2;
+      stackRules = Arrays.copyOf(stackRules, size);
+      stackStart = Arrays.copyOf(stackStart, size);
+      stackChildren = Arrays.copyOf(stackChildren, size);
+      stackIndex = Arrays.copyOf(stackIndex, size);
+    }
+    stackRules[depth] = rule;
+    stackChildren[depth] = 0;
+    stackIndex[depth] = index;
+    stackStart[depth++] = System.nanoTime();
+  }
+
+  private void leave(boolean matched, int index) {
+    if (depth == 0) {
+      return;
+    }
+    long time = System.nanoTime() - stackStart[--depth];
+    RuleStatistics rule = stackRules[depth];
+    stackRules[depth] = null;
+    if (matched) {
+      rule.matches++;
+      rule.tokens += index - stackIndex[depth];
+    } else {
+      rule.failures++;
+      rule.failureTime += time;
+    }
+    rule.inclusiveTime += time;
+    rule.selfTime += Math.max(0, time - stackChildren[depth]);
+    if (depth > 0) {
+      stackChildren[depth - 1] += time;
+    } else {
+      parseTime += time;
+    }
+  }
+
+  /**
+   * @return statistics of all executed rules, sorted by descending self time
+   */
+  public List<RuleStatistics> getStatistics() {
+    List<RuleStatistics> result = new ArrayList<>();
+    for (RuleStatistics rule : statistics) {
+      if (rule.getInvocations() > 0) {
+        result.add(rule);
+      }
+    }
+    Collections.sort(result, (a, b) -> Long.compare(b.getSelfTime(), a.getSelfTime()));
+    return result;
+  }
+
+  public int getFiles() {
+    return files;
+  }
+
+  /**
+   * @return files without AST (parse error)
+   */
+  public int getSkippedFiles() {
+    return skippedFiles;
+  }
+
+  /**
+   * @return time in nanoseconds to parse the token streams of all files (without lexing and preprocessing)
+   */
+  public long getParseTime() {
+    return parseTime;
+  }
+
+  /**
+   * Write the statistics sorted by descending self time.
+   *
+   * @param writer target of the report
+   * @throws IOException in case of write errors
+   */
+  public void writeReport(Writer writer) throws IOException {
+    writer.write(String.format(Locale.ENGLISH, "files: %d, skipped files: %d, tokens: %d, parse time: %.1f ms%n%n",
+      files, skippedFiles, tokens, parseTime / NANOS_PER_MILLI));
+    writer.write(String.format(Locale.ENGLISH, "%-40s %12s %12s %12s %14s %14s %14s%n",
+      "rule", "matches", "failures", "tokens", "inclusive[ms]", "self[ms]", "failures[ms]"));
+    for (RuleStatistics rule : getStatistics()) {
+      writer.write(String.format(Locale.ENGLISH, "%-40s %12d %12d %12d %14.1f %14.1f %14.1f%n",
+        rule.getRule(), rule.getMatches(), rule.getFailures(), rule.getTokens(),
+        rule.getInclusiveTime() / NANOS_PER_MILLI, rule.getSelfTime() / NANOS_PER_MILLI,
+        rule.getFailureTime() / NANOS_PER_MILLI));
+    }
+  }
+
+  /**
+   * Write the statistics to a file and the top rules to the log.
+   *
+   * @param report path of the report file
+   * @param top number of rules to log
+   * @throws IOException in case of write errors
+   */
+  public void writeReport(Path report, int top) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+      writeReport(writer);
+    }
+
+    LOG.info("Grammar profile of {} files written to '{}'", files, report);
+    List<RuleStatistics> rules = getStatistics();
+    for (RuleStatistics rule : rules.subList(0, Math.min(top, rules.size()))) {
+      LOG.info("  {}: self {} ms, inclusive {} ms, matches {}, failures {}", rule.getRule(),
+        rule.getSelfTime() / 1000000, rule.getInclusiveTime() / 1000000, rule.getMatches(), rule.getFailures());
+    }
+  }
+
+  /**
+   * Records the executions of one rule.
+   */
+  private final class RuleProbe implements CxxGrammarInstrumentation.RuleListener {
+
+    private final RuleStatistics rule;
+
+    RuleProbe(RuleStatistics rule) {
+      this.rule = rule;
+    }
+
+    @Override
+    public void enter(int tokenIndex) {
+      CxxGrammarProfilerVisitor.this.enter(rule, tokenIndex);
+    }
+
+    @Override
+    public void match(int tokenIndex) {
+      leave(true, tokenIndex);
+    }
+
+    @Override
+    public void fail(int tokenIndex) {
+      leave(false, tokenIndex);
+    }
+  }
+
+}
@@ -57,12 +57,16 @@ public class CxxLinesOfCodeVisitor<GRAMMAR extends Grammar>
   public void visitToken(Token token) {
     if (!token.getType().equals(EOF)) {
       /* Handle all the lines of the token */
-      String[] tokenLines = token.getValue().split("\n", -1);
+      int tokenLines = 1;
+      String value = token.getValue();
+      for (int i = value.indexOf('\n'); i >= 0; i = value.indexOf('\n', i + 1)) {
+        tokenLines++;
+      }
 
       int firstLineAlreadyCounted = lastTokenLine == token.getLine() ? 1 : 0;
-      getContext().peekSourceCode().add(metric, (double) tokenLines.length - firstLineAlreadyCounted);
+      getContext().peekSourceCode().add(metric, (double) tokenLines - firstLineAlreadyCounted);
 
-      lastTokenLine = token.getLine() + tokenLines.length - 1;
+      lastTokenLine = token.getLine() + tokenLines - 1;
     }
   }
 
@@ -0,0 +1,235 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Content of a source file, read and decoded once and shared by all checks which evaluate the raw text of a file.
+ *
+ * Lines are split on "\n", "\r\n" and "\r" without the line terminators. A line terminator at the end of the file
+ * does not start an additional empty line.
+ */
+public final class CxxSourceSnapshot {
+
+  private final File file;
+  private final Charset charset;
+  private final byte[] bytes;
+  private final String text;
+  private final boolean decodingError;
+  private final int[] lineStarts;
+  private final int[] lineEnds;
+  private final int lineCount;
+
+  private CxxSourceSnapshot(File file, Charset charset, byte[] bytes) {
+    this.file = file;
+    this.charset = charset;
+    this.bytes = bytes;
+
+    boolean error = false;
+    String decoded;
+    try {
+      decoded = decode(bytes, charset, CodingErrorAction.REPORT);
+    } catch (CharacterCodingException e) {
+      error = true;
+      try {
+        decoded = decode(bytes, charset, CodingErrorAction.REPLACE);
+      } catch (CharacterCodingException e2) {
+        throw new IllegalStateException(e2);
+      }
+    }
+    this.text = decoded;
+    this.decodingError = error;
+
+    int[] starts = new int[16];
+    int[] ends = new int[16];
+    int count = 0;
+    int start = 0;
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '\n' || c == '\r') {
+        if (count == starts.length) {
+          starts = Arrays.copyOf(starts, count * 2);
+          ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = i;
+        count++;
+        if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+          i++;
+        }
+        start = i + 1;
+      }
+    }
+    if (start < length) {
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, count + 1);
+        ends = Arrays.copyOf(ends, count + 1);
+      }
+      starts[count] = start;
+      ends[count] = length;
+      count++;
+    }
+    this.lineStarts = starts;
+    this.lineEnds = ends;
+    this.lineCount = count;
+  }
+
+  /**
+   * Reads and decodes a file.
+   *
+   * @param file file to read
+   * @param charset charset of the file
+   * @return snapshot of the file content
+   * @throws IOException if the file cannot be read
+   */
+  public static CxxSourceSnapshot read(File file, Charset charset) throws IOException {
+    return new CxxSourceSnapshot(file, charset, Files.readAllBytes(file.toPath()));
+  }
+
+  /**
+   * Returns the snapshot of the file currently visited. If the context is the one of a CxxAstScanner and the charset
+   * is the one of the scan, the snapshot is shared with all other visitors of this file. Otherwise the file is read
+   * again.
+   *
+   * @param context context of the visitor
+   * @param charset charset of the file
+   * @return snapshot of the current file
+   * @throws IllegalStateException if the file cannot be read
+   */
+  public static CxxSourceSnapshot of(SquidAstVisitorContext<?> context, Charset charset) {
+    if (context instanceof CxxSquidAstVisitorContext) {
+      CxxSquidAstVisitorContext<?> cxxContext = (CxxSquidAstVisitorContext<?>) context;
+      if (cxxContext.getCharset().equals(charset)) {
+        return cxxContext.getSourceSnapshot();
+      }
+    }
+    try {
+      return read(context.getFile(), charset);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * Raw content of the file. The array is shared and must not be modified.
+   */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Decoded content of the file. Malformed input and unmappable characters are replaced.
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Returns true if the file content is not valid in the charset of the file.
+   */
+  public boolean hasDecodingError() {
+    return decodingError;
+  }
+
+  /**
+   * Returns true if the last byte of the file is a line terminator.
+   */
+  public boolean endsWithNewline() {
+    if (bytes.length == 0) {
+      return false;
+    }
+    byte last = bytes[bytes.length - 1];
+    return last == '\n' || last == '\r';
+  }
+
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * @param line line number, starting with 1
+   * @return content of the line without line terminator
+   */
+  public String getLine(int line) {
+    if (line < 1 || line > lineCount) {
+      throw new IndexOutOfBoundsException("line " + line + " of " + lineCount);
+    }
+    return text.substring(lineStarts[line - 1], lineEnds[line - 1]);
+  }
+
+  /**
+   * @param line line number, starting with 1
+   * @return offset of the first character of the line in {@link #getText()}
+   */
+  public int getLineOffset(int line) {
+    if (line < 1 || line > lineCount) {
+      throw new IndexOutOfBoundsException("line " + line + " of " + lineCount);
+    }
+    return lineStarts[line - 1];
+  }
+
+  /**
+   * Lines of the file, same result as Guava Files.readLines. The list is a view; lines are created on access.
+   */
+  public List<String> getLines() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return getLine(index + 1);
+      }
+
+      @Override
+      public int size() {
+        return lineCount;
+      }
+    };
+  }
+
+  private static String decode(byte[] bytes, Charset charset, CodingErrorAction action)
+    throws CharacterCodingException {
+    CharBuffer chars = charset.newDecoder()
+      .onMalformedInput(action)
+      .onUnmappableCharacter(action)
+      .decode(ByteBuffer.wrap(bytes));
+    return chars.toString();
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import com.sonar.sslr.api.Grammar;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import org.sonar.cxx.preprocessor.CxxPreprocessor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.SourceProject;
+import org.sonar.squidbridge.measures.MetricDef;
+
+/**
+ * Visitor context of a CxxAstScanner. In addition to the squid context it provides the content of the current file,
+ * see {@link CxxSourceSnapshot}, and data shared by the visitors of a scan or of a file.
+ */
+public class CxxSquidAstVisitorContext<G extends Grammar> extends SquidAstVisitorContextImpl<G> {
+
+  private final Charset charset;
+  private CxxSourceSnapshot sourceSnapshot;
+  private final Map<Object, Object> scanData = new HashMap<>();
+  private final Map<Object, Object> fileData = new HashMap<>();
+  private CxxPreprocessor preprocessor;
+
+  public CxxSquidAstVisitorContext(SourceProject project, Charset charset) {
+    super(project);
+    this.charset = charset;
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  @Override
+  public void setFile(File file, MetricDef filesMetric) {
+    sourceSnapshot = null;
+    fileData.clear();
+    super.setFile(file, filesMetric);
+  }
+
+  /**
+   * @return preprocessor of the parser of the scan, null if no parser was created for this context
+   */
+  @CheckForNull
+  public CxxPreprocessor getPreprocessor() {
+    return preprocessor;
+  }
+
+  public void setPreprocessor(CxxPreprocessor preprocessor) {
+    this.preprocessor = preprocessor;
+  }
+
+  /**
+   * Content of the current file. The file is read on first use.
+   *
+   * @throws IllegalStateException if the file cannot be read
+   */
+  public CxxSourceSnapshot getSourceSnapshot() {
+    File file = getFile();
+    if (sourceSnapshot == null || !sourceSnapshot.getFile().equals(file)) {
+      try {
+        sourceSnapshot = CxxSourceSnapshot.read(file, charset);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return sourceSnapshot;
+  }
+
+  /**
+   * Data shared by the visitors of one scan, e.g. to evaluate several checks of the same kind in one pass.
+   *
+   * @param key key of the data
+   * @param factory creates the data on first use
+   * @return data stored for the key
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getScanData(Object key, Supplier<T> factory) {
+    return (T) scanData.computeIfAbsent(key, k -> factory.get());
+  }
+
+  /**
+   * Data shared by the visitors of the current file, e.g. an index of its AST. The data is dropped after all visitors
+   * left the file.
+   *
+   * @param key key of the data
+   * @param factory creates the data on first use
+   * @return data stored for the key
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getFileData(Object key, Supplier<T> factory) {
+    return (T) fileData.computeIfAbsent(key, k -> factory.get());
+  }
+
+  /**
+   * Drops the data of the current file.
+   */
+  public void clearFileData() {
+    fileData.clear();
+  }
+
+}
@@ -0,0 +1,355 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.AnnotationUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.check.Rule;
+import org.sonar.squidbridge.AstScannerExceptionHandler;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+/**
+ * Collects the execution cost of AST visitors (checks and metrics) per rule key.
+ *
+ * Visitors are measured by wrapping them with {@link #wrap(SquidAstVisitor)} before they are registered at the
+ * scanner; without profiling the visitors are registered unwrapped and nothing is measured. Wall time and CPU time
+ * (if supported by the JVM) of the visitor callbacks are accumulated together with their invocation counts. Visitors
+ * without a rule key are identified by their class name, instances of the same rule are summed up.
+ */
+public class CxxVisitorProfiler {
+
+  private static final Logger LOG = Loggers.get(CxxVisitorProfiler.class);
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  /**
+   * Visitor callbacks which are measured.
+   */
+  public enum Callback {
+    VISIT_FILE, VISIT_NODE, VISIT_TOKEN, LEAVE_NODE, LEAVE_FILE
+  }
+
+  private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private final boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+  private final Map<String, VisitorStatistics> statistics = new LinkedHashMap<>();
+
+  /**
+   * Statistics of one rule (or visitor class).
+   */
+  public static final class VisitorStatistics {
+
+    private final String key;
+    private final Map<Callback, long[]> callbacks = new EnumMap<>(Callback.class);
+    private long wallTime;
+    private long cpuTime;
+
+    VisitorStatistics(String key) {
+      this.key = key;
+      for (Callback callback : Callback.values()) {
+        // invocations, wall time, CPU time
+        callbacks.put(callback, new long[3]);
+      }
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public long getInvocations(Callback callback) {
+      return callbacks.get(callback)[0];
+    }
+
+    /**
+     * @return cumulative wall time in nanoseconds of the callback
+     */
+    public long getWallTime(Callback callback) {
+      return callbacks.get(callback)[1];
+    }
+
+    /**
+     * @return cumulative CPU time in nanoseconds of the callback, 0 if not supported by the JVM
+     */
+    public long getCpuTime(Callback callback) {
+      return callbacks.get(callback)[2];
+    }
+
+    /**
+     * @return cumulative wall time in nanoseconds of all callbacks
+     */
+    public long getWallTime() {
+      return wallTime;
+    }
+
+    /**
+     * @return cumulative CPU time in nanoseconds of all callbacks, 0 if not supported by the JVM
+     */
+    public long getCpuTime() {
+      return cpuTime;
+    }
+
+    public long getInvocations() {
+      long invocations = 0;
+      for (long[] values : callbacks.values()) {
+        invocations += values[0];
+      }
+      return invocations;
+    }
+
+    void add(Callback callback, long wall, long cpu) {
+      long[] values = callbacks.get(callback);
+      values[0]++;
+      values[1] += wall;
+      values[2] += cpu;
+      wallTime += wall;
+      cpuTime += cpu;
+    }
+  }
+
+  /**
+   * Wrap a visitor to measure its callbacks.
+   *
+   * @param visitor visitor to measure
+   * @return visitor to register at the scanner instead of the original one
+   */
+  public <G extends Grammar> SquidAstVisitor<G> wrap(SquidAstVisitor<G> visitor) {
+    VisitorStatistics stats = statistics.computeIfAbsent(keyOf(visitor), VisitorStatistics::new);
+    if (visitor instanceof AstAndTokenVisitor) {
+      return new ProfilingTokenVisitor<>(this, stats, visitor);
+    }
+    return new ProfilingVisitor<>(this, stats, visitor);
+  }
+
+  private static String keyOf(Object visitor) {
+    Rule rule = AnnotationUtils.getAnnotation(visitor, Rule.class);
+    if (rule != null && rule.key() != null && !rule.key().isEmpty()) {
+      return rule.key();
+    }
+    return visitor.getClass().getName();
+  }
+
+  long cpuTime() {
+    return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0L;
+  }
+
+  /**
+   * @return statistics of all visitors, sorted by descending wall time
+   */
+  public List<VisitorStatistics> getStatistics() {
+    List<VisitorStatistics> result = new ArrayList<>(statistics.values());
+    Collections.sort(result, (a, b) -> Long.compare(b.getWallTime(), a.getWallTime()));
+    return result;
+  }
+
+  /**
+   * Write the statistics as a table sorted by descending wall time.
+   *
+   * @param writer target of the table
+   * @throws IOException in case of write errors
+   */
+  public void writeTable(Writer writer) throws IOException {
+    writer.write(String.format(Locale.ENGLISH, "%-50s %12s %12s %12s %12s %12s %12s %12s%n",
+      "rule", "wall[ms]", "cpu[ms]", "visitFile", "visitNode", "visitToken", "leaveNode", "leaveFile"));
+    for (VisitorStatistics stats : getStatistics()) {
+      writer.write(String.format(Locale.ENGLISH, "%-50s %12.1f %12.1f %12d %12d %12d %12d %12d%n",
+        stats.getKey(), stats.getWallTime() / NANOS_PER_MILLI, stats.getCpuTime() / NANOS_PER_MILLI,
+        stats.getInvocations(Callback.VISIT_FILE), stats.getInvocations(Callback.VISIT_NODE),
+        stats.getInvocations(Callback.VISIT_TOKEN), stats.getInvocations(Callback.LEAVE_NODE),
+        stats.getInvocations(Callback.LEAVE_FILE)));
+    }
+  }
+
+  /**
+   * Write the statistics in JSON format sorted by descending wall time.
+   *
+   * @param writer target of the report
+   */
+  public void writeJson(Writer writer) {
+    JsonWriter json = JsonWriter.of(writer);
+    json.beginObject().prop("cpuTimeSupported", cpuTimeSupported).name("visitors").beginArray();
+    for (VisitorStatistics stats : getStatistics()) {
+      json.beginObject()
+        .prop("key", stats.getKey())
+        .prop("wallTimeNanos", stats.getWallTime())
+        .prop("cpuTimeNanos", stats.getCpuTime())
+        .prop("invocations", stats.getInvocations())
+        .name("callbacks").beginObject();
+      for (Callback callback : Callback.values()) {
+        json.name(callback.name()).beginObject()
+          .prop("invocations", stats.getInvocations(callback))
+          .prop("wallTimeNanos", stats.getWallTime(callback))
+          .prop("cpuTimeNanos", stats.getCpuTime(callback))
+          .endObject();
+      }
+      json.endObject().endObject();
+    }
+    json.endArray().endObject();
+    json.close();
+  }
+
+  /**
+   * Write the table to the log and the statistics in JSON format to a file.
+   *
+   * @param report path of the JSON report
+   * @throws IOException in case of write errors
+   */
+  public void writeReport(Path report) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+      writeJson(writer);
+    }
+
+    StringWriter table = new StringWriter();
+    writeTable(table);
+    LOG.info("Visitor profile written to '{}':{}{}", report, System.lineSeparator(), table);
+  }
+
+  /**
+   * Forwards all calls to the wrapped visitor and measures the visitor callbacks.
+   */
+  private static class ProfilingVisitor<G extends Grammar> extends SquidAstVisitor<G>
+    implements AstScannerExceptionHandler {
+
+    protected final CxxVisitorProfiler profiler;
+    private final VisitorStatistics stats;
+    protected final SquidAstVisitor<G> delegate;
+
+    ProfilingVisitor(CxxVisitorProfiler profiler, VisitorStatistics stats, SquidAstVisitor<G> delegate) {
+      this.profiler = profiler;
+      this.stats = stats;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void setContext(SquidAstVisitorContext<G> context) {
+      super.setContext(context);
+      delegate.setContext(context);
+    }
+
+    @Override
+    public List<AstNodeType> getAstNodeTypesToVisit() {
+      return delegate.getAstNodeTypesToVisit();
+    }
+
+    @Override
+    public void init() {
+      delegate.init();
+    }
+
+    @Override
+    public void visitFile(@Nullable AstNode astNode) {
+      long cpu = profiler.cpuTime();
+      long wall = System.nanoTime();
+      delegate.visitFile(astNode);
+      measure(Callback.VISIT_FILE, wall, cpu);
+    }
+
+    @Override
+    public void visitNode(AstNode astNode) {
+      long cpu = profiler.cpuTime();
+      long wall = System.nanoTime();
+      delegate.visitNode(astNode);
+      measure(Callback.VISIT_NODE, wall, cpu);
+    }
+
+    @Override
+    public void leaveNode(AstNode astNode) {
+      long cpu = profiler.cpuTime();
+      long wall = System.nanoTime();
+      delegate.leaveNode(astNode);
+      measure(Callback.LEAVE_NODE, wall, cpu);
+    }
+
+    @Override
+    public void leaveFile(@Nullable AstNode astNode) {
+      long cpu = profiler.cpuTime();
+      long wall = System.nanoTime();
+      delegate.leaveFile(astNode);
+      measure(Callback.LEAVE_FILE, wall, cpu);
+    }
+
+    @Override
+    public void destroy() {
+      delegate.destroy();
+    }
+
+    @Override
+    public void processException(Exception e) {
+      if (delegate instanceof AstScannerExceptionHandler) {
+        ((AstScannerExceptionHandler) delegate).processException(e);
+      }
+    }
+
+    @Override
+    public void processRecognitionException(RecognitionException e) {
+      if (delegate instanceof AstScannerExceptionHandler) {
+        ((AstScannerExceptionHandler) delegate).processRecognitionException(e);
+      }
+    }
+
+    protected final void measure(Callback callback, long wallStart, long cpuStart) {
+      // the wall time measurement is nested into the CPU time measurement, which is the more expensive call
+      long wall = System.nanoTime() - wallStart;
+      stats.add(callback, wall, profiler.cpuTime() - cpuStart);
+    }
+  }
+
+  /**
+   * Wrapper of visitors which are also visiting tokens.
+   */
+  private static class ProfilingTokenVisitor<G extends Grammar> extends ProfilingVisitor<G>
+    implements AstAndTokenVisitor {
+
+    ProfilingTokenVisitor(CxxVisitorProfiler profiler, VisitorStatistics stats, SquidAstVisitor<G> delegate) {
+      super(profiler, stats, delegate);
+    }
+
+    @Override
+    public void visitToken(Token token) {
+      long cpu = profiler.cpuTime();
+      long wall = System.nanoTime();
+      ((AstAndTokenVisitor) delegate).visitToken(token);
+      measure(Callback.VISIT_TOKEN, wall, cpu);
+    }
+  }
+
+}
@@ -19,18 +19,28 @@
  */
 package org.sonar.cxx;
 
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import javax.annotation.Nullable;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import org.assertj.core.api.SoftAssertions;
 import org.junit.Test;
+import org.sonar.check.Rule;
 import org.sonar.cxx.api.CxxMetric;
+import org.sonar.cxx.api.CxxTokenType;
+import org.sonar.cxx.parser.CxxLexerOnlyFiles;
+import org.sonar.cxx.visitors.CxxSkippedTextAwareVisitor;
 import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.QueryByType;
@@ -111,4 +121,204 @@ public class CxxAstScannerTest {
     SourceFile file = CxxAstScanner.scanSingleFile(tester.cxxFile, tester.sensorContext, CxxFileTesterHelper.mockCxxLanguage());
     assertThat(file.getInt(CxxMetric.FUNCTIONS)).isEqualTo(2);
   }
+
+  @Test
+  public void token_budget_exceeded() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/metrics/classes.cc", ".", "");
+    CxxConfiguration conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    conf.setFileTokenBudget(5);
+    ContextProbe probe = new ContextProbe();
+    SourceFile file = CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf,
+      probe);
+    SoftAssertions softly = new SoftAssertions();
+    softly.assertThat(file.getInt(CxxMetric.LINES)).isEqualTo(7);
+    softly.assertThat(file.getInt(CxxMetric.LINES_OF_CODE)).isEqualTo(5);
+    softly.assertThat(file.getInt(CxxMetric.COMMENT_LINES)).isEqualTo(1);
+    softly.assertThat(file.getInt(CxxMetric.CLASSES)).isEqualTo(0);
+    softly.assertThat(file.getInt(CxxMetric.FUNCTIONS)).isEqualTo(0);
+    softly.assertThat(CxxLexerOnlyFiles.of(probe.getContext()).contains(new File(file.getKey()))).isTrue();
+    softly.assertAll();
+  }
+
+  @Test
+  public void token_budget_counts_expanded_tokens() throws UnsupportedEncodingException, IOException {
+    // one macro invocation in the file, expanded to 30 tokens
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/metrics/macro_expansion.cc",
+      ".", "");
+    CxxConfiguration conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    conf.setFileTokenBudget(20);
+    ContextProbe probe = new ContextProbe();
+    SourceFile file = CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf,
+      probe);
+    assertThat(CxxLexerOnlyFiles.of(probe.getContext()).contains(new File(file.getKey()))).isTrue();
+
+    conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    conf.setFileTokenBudget(40);
+    probe = new ContextProbe();
+    file = CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf, probe);
+    assertThat(CxxLexerOnlyFiles.of(probe.getContext()).contains(new File(file.getKey()))).isFalse();
+  }
+
+  @Test
+  public void lexer_only_files() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/metrics/classes.cc", ".", "");
+    CxxConfiguration conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    conf.setLexerOnlyFilesPatterns(new String[]{"**/metrics/classes.cc"});
+    SourceFile file = CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf);
+    SoftAssertions softly = new SoftAssertions();
+    softly.assertThat(file.getInt(CxxMetric.LINES)).isEqualTo(7);
+    softly.assertThat(file.getInt(CxxMetric.LINES_OF_CODE)).isEqualTo(5);
+    softly.assertThat(file.getInt(CxxMetric.CLASSES)).isEqualTo(0);
+    softly.assertAll();
+  }
+
+  @Test
+  public void checks_skip_lexer_only_files() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/metrics/classes.cc", ".", "");
+    CxxConfiguration conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    conf.setLexerOnlyFilesPatterns(new String[]{"**/metrics/classes.cc"});
+    TokenCounter visitor = new TokenCounter();
+    TokenCounter check = new TokenCounterCheck();
+    CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf, visitor, check);
+    assertThat(visitor.files).isEqualTo(1);
+    assertThat(visitor.tokens).isPositive();
+    assertThat(check.files).isEqualTo(0);
+    assertThat(check.tokens).isEqualTo(0);
+
+    conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    check = new TokenCounterCheck();
+    CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf, check);
+    assertThat(check.files).isEqualTo(1);
+    assertThat(check.tokens).isPositive();
+  }
+
+  @Test
+  public void skipped_text_trivia() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/metrics/skipped_text.cc", ".",
+      "");
+
+    // directives are kept, inactive code and the macro invocation are dropped
+    SkippedTextCounter counter = new SkippedTextCounter();
+    CxxAstScanner.scanSingleFile(tester.cxxFile, tester.sensorContext, CxxFileTesterHelper.mockCxxLanguage(), counter);
+    assertThat(counter.directives).isEqualTo(3);
+    assertThat(counter.others).isEqualTo(0);
+
+    // everything is kept if a visitor needs it
+    SkippedTextCounter aware = new SkippedTextAwareCounter();
+    CxxAstScanner.scanSingleFile(tester.cxxFile, tester.sensorContext, CxxFileTesterHelper.mockCxxLanguage(), aware);
+    assertThat(aware.directives).isEqualTo(3);
+    assertThat(aware.others).isEqualTo(4);
+  }
+
+  @Test
+  public void scan_statistics() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester(
+      "src/test/resources/parser/examples/fo/compose1.cpp", ".", "");
+    CxxConfiguration conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    ContextProbe probe = new ContextProbe();
+    CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf, probe);
+    CxxScanStatistics statistics = CxxScanStatistics.of(probe.getContext());
+    SoftAssertions softly = new SoftAssertions();
+    softly.assertThat(statistics.getFiles()).isEqualTo(1);
+    softly.assertThat(statistics.getLines()).isEqualTo(37);
+    // print.hpp and compose11.hpp are found, the standard headers are not
+    softly.assertThat(statistics.getIncludeHits()).isEqualTo(2);
+    softly.assertThat(statistics.getIncludeMisses()).isEqualTo(7);
+    softly.assertThat(statistics.getParseErrors()).isEqualTo(0);
+    softly.assertThat(statistics.getLexNanos()).isPositive();
+    softly.assertThat(statistics.getPreprocessNanos()).isPositive();
+    softly.assertThat(statistics.getParseNanos()).isPositive();
+    softly.assertAll();
+  }
+
+  @Test
+  public void generated_files_by_size() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/metrics/classes.cc", ".", "");
+    CxxConfiguration conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    conf.setGeneratedFileMaxSize(10);
+    ContextProbe probe = new ContextProbe();
+    SourceFile file = CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf,
+      probe);
+    SoftAssertions softly = new SoftAssertions();
+    softly.assertThat(file.getInt(CxxMetric.LINES_OF_CODE)).isEqualTo(5);
+    softly.assertThat(file.getInt(CxxMetric.CLASSES)).isEqualTo(0);
+    softly.assertThat(CxxLexerOnlyFiles.of(probe.getContext()).contains(new File(file.getKey()))).isTrue();
+    softly.assertThat(conf.isLexerOnlyFile(new File(file.getKey()))).isFalse();
+    softly.assertAll();
+  }
+
+  @Test
+  public void generated_files_by_marker() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/metrics/classes.cc", ".", "");
+    CxxConfiguration conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    conf.setGeneratedCodeMarkers(new String[]{"@generated", "anonymous class"});
+    SourceFile file = CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf);
+    SoftAssertions softly = new SoftAssertions();
+    softly.assertThat(file.getInt(CxxMetric.LINES_OF_CODE)).isEqualTo(5);
+    softly.assertThat(file.getInt(CxxMetric.CLASSES)).isEqualTo(0);
+    softly.assertAll();
+  }
+
+  @Test
+  public void generated_files_by_token_density() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/metrics/classes.cc", ".", "");
+    // 20 tokens in 7 lines
+    CxxConfiguration conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    conf.setGeneratedFileMaxTokensPerLine(2);
+    SourceFile file = CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf);
+    assertThat(file.getInt(CxxMetric.CLASSES)).isEqualTo(0);
+
+    conf = new CxxConfiguration(tester.sensorContext.fileSystem().encoding());
+    conf.setGeneratedFileMaxTokensPerLine(3);
+    file = CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf);
+    assertThat(file.getInt(CxxMetric.CLASSES)).isEqualTo(2);
+  }
+
+  private static class SkippedTextCounter extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+
+    private int directives;
+    private int others;
+
+    @Override
+    public void visitToken(Token token) {
+      for (Trivia trivia : token.getTrivia()) {
+        if (trivia.isSkippedText()) {
+          if (trivia.getToken().getType().equals(CxxTokenType.PREPROCESSOR)) {
+            directives++;
+          } else {
+            others++;
+          }
+        }
+      }
+    }
+  }
+
+  private static class SkippedTextAwareCounter extends SkippedTextCounter implements CxxSkippedTextAwareVisitor {
+  }
+
+  private static class TokenCounter extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+
+    private int files;
+    private int tokens;
+
+    @Override
+    public void visitFile(@Nullable AstNode astNode) {
+      files++;
+    }
+
+    @Override
+    public void visitToken(Token token) {
+      tokens++;
+    }
+  }
+
+  @Rule(key = "TokenCounter")
+  private static class TokenCounterCheck extends TokenCounter {
+  }
+
+  /**
+   * Gives access to the visitor context of a scan.
+   */
+  private static class ContextProbe extends SquidAstVisitor<Grammar> {
+  }
 }
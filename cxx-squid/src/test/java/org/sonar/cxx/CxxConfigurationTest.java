@@ -370,4 +370,25 @@ public class CxxConfigurationTest {
       Assertions.assertThat(files).contains(file.getName()).as(file.getName());
     }
   }
+
+  @Test
+  public void lexerOnlyFilesPatterns() {
+    CxxConfiguration config = new CxxConfiguration();
+    config.setBaseDir(new File("/project").getAbsolutePath());
+    config.setLexerOnlyFilesPatterns(new String[]{"third_party/**", "**/*.pb.cc", ""});
+    SoftAssertions softly = new SoftAssertions();
+    softly.assertThat(config.isLexerOnlyFile(new File("/project/third_party/zlib/zlib.h"))).isTrue();
+    softly.assertThat(config.isLexerOnlyFile(new File("/project/src/message.pb.cc"))).isTrue();
+    softly.assertThat(config.isLexerOnlyFile(new File("/project/src/main.cpp"))).isFalse();
+    softly.assertAll();
+  }
+
+  @Test
+  public void generatedFilesPolicy() {
+    CxxConfiguration config = new CxxConfiguration();
+    assertThat(config.isGeneratedFilesPolicyEnabled()).isFalse();
+    config.setGeneratedCodeMarkers(new String[]{" @generated ", "", "DO NOT EDIT"});
+    assertThat(config.getGeneratedCodeMarkers()).containsExactly("@generated", "DO NOT EDIT");
+    assertThat(config.isGeneratedFilesPolicyEnabled()).isTrue();
+  }
 }
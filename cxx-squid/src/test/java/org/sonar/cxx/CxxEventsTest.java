@@ -0,0 +1,42 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class CxxEventsTest {
+
+  @Test
+  public void events_are_disabled_without_recording() {
+    for (CxxEvents.Type type : CxxEvents.Type.values()) {
+      CxxEvents.Event event = CxxEvents.begin(type);
+      assertThat(event.isRecording()).isFalse();
+      event.commit("file.cc", 1);
+    }
+  }
+
+  @Test
+  public void event_names() {
+    assertThat(CxxEvents.Type.PARSE.getEventName()).isEqualTo("org.sonar.cxx.Parse");
+    assertThat(CxxEvents.Type.MACRO_EXPANSION.getEventName()).isEqualTo("org.sonar.cxx.MacroExpansion");
+  }
+
+}
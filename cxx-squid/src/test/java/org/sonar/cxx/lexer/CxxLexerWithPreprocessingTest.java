@@ -674,4 +674,91 @@ public class CxxLexerWithPreprocessingTest {
       + "A");
     assertThat(tokens, hasToken("0xcf", CxxKeyword.INT));
   }
+
+  @Test
+  public void skipped_text_trivia_disabled() {
+    CxxConfiguration conf = new CxxConfiguration();
+    CxxPreprocessor cxxpp = new CxxPreprocessor(mock(SquidAstVisitorContext.class), conf, language);
+    cxxpp.setSkippedTextTriviaEnabled(false);
+    Lexer l = CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor());
+    List<Token> tokens = l.lex("#define A B\n// comment\nA");
+
+    // the directive is kept, the macro invocation is dropped
+    assertThat(tokens).hasSize(2);
+    assertThat(tokens.get(0).getValue()).isEqualTo("B");
+    assertThat(tokens.get(0).getTrivia()).hasSize(2);
+    assertThat(tokens.get(0).getTrivia().get(0).isSkippedText()).isTrue();
+    assertThat(tokens.get(0).getTrivia().get(0).getToken().getValue()).isEqualTo("#define A B");
+    assertThat(tokens.get(0).getTrivia().get(1).isComment()).isTrue();
+  }
+
+  @Test
+  public void macro_expansion_depth_limit() {
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setMacroExpansionMaxDepth(3);
+    CxxPreprocessor cxxpp = new CxxPreprocessor(mock(SquidAstVisitorContext.class), conf, language);
+    Lexer l = CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor());
+
+    // the expansion of A2 nests three expansions, the one of A3 four
+    List<Token> tokens = l.lex("#define A0 x\n"
+      + "#define A1 A0\n"
+      + "#define A2 A1\n"
+      + "#define A3 A2\n"
+      + "A2 A3");
+    assertThat(tokens).hasSize(3);
+    assertThat(tokens.get(0).getValue()).isEqualTo("x");
+    assertThat(tokens.get(1).getValue()).isEqualTo("A3");
+    assertThat(tokens.get(1).getType()).isEqualTo(GenericTokenType.IDENTIFIER);
+    assertThat(cxxpp.getMacroExpansionStatistics().getMaxDepth()).isEqualTo(3);
+    assertThat(cxxpp.getMacroExpansionStatistics().getStoppedExpansions()).isEqualTo(1);
+    assertThat(cxxpp.getMacroExpansionStatistics().getStoppedMacros()).containsExactly("A3");
+  }
+
+  @Test
+  public void macro_expansion_token_limit() {
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setMacroExpansionMaxTokens(3);
+    CxxPreprocessor cxxpp = new CxxPreprocessor(mock(SquidAstVisitorContext.class), conf, language);
+    Lexer l = CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor());
+
+    List<Token> tokens = l.lex("#define plus(a, b) a + b\n"
+      + "plus(1, 2) plus(3, 4)");
+    assertThat(tokens).hasSize(10);
+    assertThat(tokens.get(3).getValue()).isEqualTo("plus");
+    assertThat(tokens.get(4).getValue()).isEqualTo("(");
+    assertThat(cxxpp.getMacroExpansionStatistics().getExpansions()).isEqualTo(1);
+    // the expanded arguments are counted once, in the replacement list
+    assertThat(cxxpp.getMacroExpansionStatistics().getExpandedTokens()).isEqualTo(3);
+    assertThat(cxxpp.getMacroExpansionStatistics().getStoppedMacros()).containsExactly("plus");
+  }
+
+  @Test
+  public void macro_expansion_statistics() {
+    CxxConfiguration conf = new CxxConfiguration();
+    CxxPreprocessor cxxpp = new CxxPreprocessor(mock(SquidAstVisitorContext.class), conf, language);
+    Lexer l = CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor());
+
+    l.lex("#define A x y\n"
+      + "#define B A A\n"
+      + "B");
+    assertThat(cxxpp.getMacroExpansionStatistics().getExpansions()).isEqualTo(3);
+    // tokens of nested expansions are not counted again by the enclosing expansion
+    assertThat(cxxpp.getMacroExpansionStatistics().getExpandedTokens()).isEqualTo(4);
+    assertThat(cxxpp.getMacroExpansionStatistics().getMaxDepth()).isEqualTo(2);
+    assertThat(cxxpp.getMacroExpansionStatistics().getStoppedExpansions()).isEqualTo(0);
+  }
+
+  @Test
+  public void macro_expansion_statistics_expanded_arguments() {
+    CxxConfiguration conf = new CxxConfiguration();
+    CxxPreprocessor cxxpp = new CxxPreprocessor(mock(SquidAstVisitorContext.class), conf, language);
+    Lexer l = CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor());
+
+    List<Token> tokens = l.lex("#define A x y\n"
+      + "#define plus(a, b) a + b\n"
+      + "plus(A, 2)");
+    assertThat(tokens).hasSize(5);
+    // the expansion of A in the argument is counted once, in the replacement list of plus
+    assertThat(cxxpp.getMacroExpansionStatistics().getExpandedTokens()).isEqualTo(4);
+  }
 }
@@ -0,0 +1,47 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.lexer.CxxLexer;
+import org.sonar.cxx.preprocessor.FileBudgetExceededException;
+
+public class CxxFallbackParserTest {
+
+  private static final String SOURCE = new String(new char[100]).replace("\0", "int a;\n");
+
+  @Test(expected = FileBudgetExceededException.class)
+  public void deadline_aborts_parse() {
+    Grammar grammar = CxxGrammarImpl.build(false);
+    CxxFallbackParser.Deadline deadline = new CxxFallbackParser.Deadline(1);
+    deadline.instrument(grammar);
+    Parser<Grammar> parser = Parser.builder(grammar).withLexer(CxxLexer.create(new CxxConfiguration())).build();
+    assertThat(parser.parse(SOURCE).getNumberOfChildren()).isPositive();
+
+    deadline.start(System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+    parser.parse(SOURCE);
+  }
+
+}
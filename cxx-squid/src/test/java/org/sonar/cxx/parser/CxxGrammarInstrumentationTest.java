@@ -0,0 +1,115 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.parser;
+
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Parser;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import org.sonar.cxx.lexer.CxxLexer;
+
+public class CxxGrammarInstrumentationTest {
+
+  @Test
+  public void allRulesAreInstrumented() {
+    // fails with an IllegalStateException if SSLR changed the implementation of the rules
+    Grammar grammar = CxxGrammarImpl.build(true);
+    int count = CxxGrammarInstrumentation.addCheck(grammar, token -> {
+    });
+    assertThat(count).isEqualTo(definedRules(grammar)).isEqualTo(CxxGrammarImpl.values().length);
+
+    grammar = CxxGrammarImpl.build(false, true);
+    count = CxxGrammarInstrumentation.addListeners(grammar, key -> new Counter());
+    assertThat(count).isEqualTo(definedRules(grammar)).isPositive();
+  }
+
+  @Test
+  public void checksAreExecuted() {
+    Grammar grammar = CxxGrammarImpl.build(false);
+    List<Token> tokens = new ArrayList<>();
+    CxxGrammarInstrumentation.addCheck(grammar, tokens::add);
+
+    parser(grammar).parse("int a;");
+    assertThat(tokens).isNotEmpty();
+    assertThat(tokens.get(0).getValue()).isEqualTo("int");
+  }
+
+  @Test
+  public void listenersAreExecuted() {
+    Grammar grammar = CxxGrammarImpl.build(false);
+    Map<CxxGrammarImpl, Counter> counters = new EnumMap<>(CxxGrammarImpl.class);
+    CxxGrammarInstrumentation.addListeners(grammar, key -> counters.computeIfAbsent(key, k -> new Counter()));
+
+    parser(grammar).parse("int a;");
+    Counter translationUnit = counters.get(CxxGrammarImpl.translationUnit);
+    assertThat(translationUnit.enter).isEqualTo(1);
+    assertThat(translationUnit.match).isEqualTo(1);
+    assertThat(translationUnit.fail).isEqualTo(0);
+    assertThat(translationUnit.lastIndex).isEqualTo(4);
+    assertThat(counters.values().stream().mapToInt(c -> c.fail).sum()).isGreaterThan(0);
+    for (Counter counter : counters.values()) {
+      assertThat(counter.enter).isEqualTo(counter.match + counter.fail);
+    }
+  }
+
+  private static int definedRules(Grammar grammar) {
+    int count = 0;
+    for (CxxGrammarImpl key : CxxGrammarImpl.values()) {
+      if (grammar.rule(key) != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static Parser<Grammar> parser(Grammar grammar) {
+    return Parser.builder(grammar).withLexer(CxxLexer.create()).build();
+  }
+
+  private static class Counter implements CxxGrammarInstrumentation.RuleListener {
+
+    private int enter;
+    private int match;
+    private int fail;
+    private int lastIndex;
+
+    @Override
+    public void enter(int tokenIndex) {
+      enter++;
+    }
+
+    @Override
+    public void match(int tokenIndex) {
+      match++;
+      lastIndex = tokenIndex;
+    }
+
+    @Override
+    public void fail(int tokenIndex) {
+      fail++;
+    }
+  }
+
+}
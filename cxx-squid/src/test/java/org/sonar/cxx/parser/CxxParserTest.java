@@ -22,6 +22,7 @@ package org.sonar.cxx.parser;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,11 +32,15 @@ import org.apache.commons.io.FileUtils;
 
 import org.junit.Test;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.CxxFileTesterHelper;
+import org.sonar.cxx.CxxLanguage;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
 import org.sonar.squidbridge.SquidAstVisitorContext;
+import org.sonar.squidbridge.api.SourceProject;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -80,7 +85,7 @@ public class CxxParserTest extends ParserBaseTestHelper {
         }};
     for (File file : files) {
       AstNode root = p.parse(file);
-      CxxParser.finishedParsing(file);
+      CxxParser.finishedParsing(context);
       if (map.containsKey(file.getName())) {
         assertThat(root.getNumberOfChildren()).as("check number of nodes for file %s",file.getName()).isEqualTo(map.get(file.getName())); 
       } else {
@@ -118,11 +123,11 @@ public class CxxParserTest extends ParserBaseTestHelper {
         put("boost_macros.hpp", 1);
       }};
 
-    p = CxxParser.create(mock(SquidAstVisitorContext.class), conf, CxxFileTesterHelper.mockCxxLanguage());
+    p = CxxParser.create(context, conf, CxxFileTesterHelper.mockCxxLanguage());
     Collection<File> files = listFiles(preprocessorFiles, new String[]{"cc", "cpp", "hpp", "h"});
     for (File file : files) {
       AstNode root = p.parse(file);
-      CxxParser.finishedParsing(file);
+      CxxParser.finishedParsing(context);
       if (map.containsKey(file.getName())) {
         assertThat(root.getNumberOfChildren()).as("check number of nodes for file %s",file.getName()).isEqualTo(map.get(file.getName())); 
       } else {
@@ -176,6 +181,45 @@ public class CxxParserTest extends ParserBaseTestHelper {
     assertThat(root.getNumberOfChildren()).isEqualTo(6);
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testGrammarIsSharedPerConfiguration() {
+    CxxConfiguration withRecovery = new CxxConfiguration();
+    withRecovery.setErrorRecoveryEnabled(true);
+    CxxConfiguration withoutRecovery = new CxxConfiguration();
+    withoutRecovery.setErrorRecoveryEnabled(false);
+
+    Grammar g1 = CxxParser.create(mock(SquidAstVisitorContext.class), withRecovery,
+      CxxFileTesterHelper.mockCxxLanguage()).getGrammar();
+    Grammar g2 = CxxParser.create(mock(SquidAstVisitorContext.class), withRecovery,
+      CxxFileTesterHelper.mockCxxLanguage()).getGrammar();
+    Grammar g3 = CxxParser.create(mock(SquidAstVisitorContext.class), withoutRecovery,
+      CxxFileTesterHelper.mockCxxLanguage()).getGrammar();
+
+    assertThat(g1).isSameAs(g2);
+    assertThat(g1).isNotSameAs(g3);
+    assertThat(g3).isSameAs(CxxGrammarImpl.create(withoutRecovery));
+    assertThat(g).isNotSameAs(g3);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testCGrammar() {
+    CxxLanguage language = CxxFileTesterHelper.mockCxxLanguage();
+    when(language.isCLanguage()).thenReturn(true);
+    context = spy(new CxxSquidAstVisitorContext<>(new SourceProject(""), StandardCharsets.UTF_8));
+    p = CxxParser.create(context, conf, language);
+    assertThat(p.getGrammar()).isSameAs(CxxGrammarImpl.create(conf, language));
+    assertThat(p.getGrammar()).isNotSameAs(CxxGrammarImpl.create(conf));
+
+    for (File file : listFiles(cCompatibilityFiles, new String[]{"c", "cc"})) {
+      when(context.getFile()).thenReturn(file);
+      AstNode root = p.parse(file);
+      CxxParser.finishedParsing(context);
+      assertThat(root.hasDescendant(CxxGrammarImpl.recoveredDeclaration)).as(file.getName()).isFalse();
+    }
+  }
+
   private Collection<File> listFiles(String[] dirs, String[] extensions) {
     List<File> files = new ArrayList<>();
     for (String dir : dirs) {
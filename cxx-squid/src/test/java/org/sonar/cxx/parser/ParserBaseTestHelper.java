@@ -21,22 +21,27 @@ package org.sonar.cxx.parser;
 
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.impl.Parser;
-import static org.mockito.Mockito.mock;
+import java.nio.charset.StandardCharsets;
 import org.sonar.cxx.CxxConfiguration;
 import org.sonar.cxx.CxxFileTesterHelper;
-import org.sonar.squidbridge.SquidAstVisitorContext;
+import org.sonar.cxx.visitors.CxxSquidAstVisitorContext;
+import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.sslr.grammar.GrammarRuleKey;
 
 public class ParserBaseTestHelper {
 
   protected CxxConfiguration conf = null;
+  protected CxxSquidAstVisitorContext<Grammar> context = null;
   protected Parser<Grammar> p = null;
   protected Grammar g = null;
 
   public ParserBaseTestHelper() {
     conf = new CxxConfiguration();
     conf.setErrorRecoveryEnabled(false);
-    p = CxxParser.create(mock(SquidAstVisitorContext.class), conf, CxxFileTesterHelper.mockCxxLanguage());
+    // rules are mocked by the tests: use a private grammar instead of the shared one
+    context = new CxxSquidAstVisitorContext<>(new SourceProject(""), StandardCharsets.UTF_8);
+    p = CxxParser.create(context, conf, CxxFileTesterHelper.mockCxxLanguage(),
+      CxxGrammarImpl.build(conf.getErrorRecoveryEnabled()));
     g = p.getGrammar();
   }
 
@@ -0,0 +1,118 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.preprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxFileTesterHelper;
+import org.sonar.cxx.preprocessor.CxxIncludeProfiler.IncludeStatistics;
+
+public class CxxIncludeProfilerTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void subtreeCost() throws InterruptedException {
+    CxxIncludeProfiler profiler = new CxxIncludeProfiler();
+    profiler.addMacroDefinition();
+    profiler.enter(new File("a.h"), 10);
+    profiler.addToken();
+    profiler.enter(new File("b.h"), 20);
+    profiler.addToken();
+    profiler.addToken();
+    profiler.addMacroDefinition();
+    Thread.sleep(2);
+    profiler.leave();
+    profiler.addMacroDefinition();
+    profiler.leave();
+
+    List<IncludeStatistics> statistics = profiler.getStatistics();
+    assertThat(statistics).hasSize(2);
+    IncludeStatistics a = statistics.get(0).getPath().endsWith("a.h") ? statistics.get(0) : statistics.get(1);
+    IncludeStatistics b = statistics.get(0).getPath().endsWith("b.h") ? statistics.get(0) : statistics.get(1);
+    SoftAssertions softly = new SoftAssertions();
+    softly.assertThat(a.getPath()).isEqualTo(new File("a.h").getAbsolutePath());
+    softly.assertThat(a.getSelfTokens()).isEqualTo(1);
+    softly.assertThat(a.getTotalTokens()).isEqualTo(3);
+    softly.assertThat(a.getSelfMacros()).isEqualTo(1);
+    softly.assertThat(a.getTotalMacros()).isEqualTo(2);
+    softly.assertThat(a.getTotalTime()).isGreaterThanOrEqualTo(b.getTotalTime());
+    softly.assertThat(a.getSelfTime()).isEqualTo(a.getTotalTime() - b.getTotalTime());
+    softly.assertThat(b.getPath()).isEqualTo(new File("b.h").getAbsolutePath());
+    softly.assertThat(b.getChars()).isEqualTo(20);
+    softly.assertThat(b.getSelfTokens()).isEqualTo(2);
+    softly.assertThat(b.getSelfMacros()).isEqualTo(1);
+    softly.assertThat(b.getSelfTime()).isEqualTo(b.getTotalTime());
+    softly.assertAll();
+  }
+
+  @Test
+  public void report() throws IOException {
+    CxxIncludeProfiler profiler = new CxxIncludeProfiler();
+    profiler.enter(new File("a.h"), 10);
+    profiler.leave();
+    profiler.enter(new File("b.h"), 10);
+    profiler.leave();
+
+    StringWriter table = new StringWriter();
+    profiler.writeTable(table, 1);
+    assertThat(table.toString().split("\\R")).hasSize(2);
+
+    File report = tmp.newFile("include.json");
+    profiler.writeReport(report.toPath(), 1);
+    assertThat(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8))
+      .startsWith("{\"includes\":[{\"path\":")
+      .contains("\"translationUnits\":1,\"chars\":10,\"selfTimeNanos\":")
+      .contains(new File("a.h").getAbsolutePath())
+      .contains(new File("b.h").getAbsolutePath());
+  }
+
+  @Test
+  public void scan() throws IOException {
+    File report = new File(tmp.getRoot(), "include.json");
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setIncludeProfileReportFile(report.getAbsolutePath());
+    CxxAstScanner.create(CxxFileTesterHelper.mockCxxLanguage(), conf).scanFiles(Arrays.asList(
+      new File("src/test/resources/includeprofile/main.cc"),
+      new File("src/test/resources/includeprofile/other.cc")));
+
+    String json = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+    // a.h is included by main.cc and includes b.h, b.h is included by both files
+    assertThat(json)
+      .contains("a.h\",\"translationUnits\":1,")
+      .contains("\"selfMacros\":1,\"totalMacros\":3}")
+      .contains("b.h\",\"translationUnits\":2,")
+      .contains("\"selfMacros\":4,\"totalMacros\":4}");
+  }
+
+}
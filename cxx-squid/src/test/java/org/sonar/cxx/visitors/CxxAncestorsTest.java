@@ -0,0 +1,106 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import java.io.IOException;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxFileTester;
+import org.sonar.cxx.CxxFileTesterHelper;
+import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+public class CxxAncestorsTest {
+
+  private static class AncestorProbe extends SquidAstVisitor<Grammar> {
+
+    private CxxAncestors ancestors;
+    private int statements;
+    private int mismatches;
+
+    @Override
+    public void init() {
+      ancestors = CxxAncestors.of(getContext());
+      ancestors.track(CxxGrammarImpl.statement, CxxGrammarImpl.functionDefinition);
+      subscribeTo(CxxGrammarImpl.statement);
+    }
+
+    @Override
+    public void visitNode(AstNode astNode) {
+      statements++;
+      if (ancestors.getFirstAncestor(astNode, CxxGrammarImpl.statement) != astNode.getFirstAncestor(
+        CxxGrammarImpl.statement)
+        || ancestors.getFirstAncestor(astNode, CxxGrammarImpl.functionDefinition) != astNode.getFirstAncestor(
+          CxxGrammarImpl.functionDefinition)
+        || ancestors.getAncestorCount(astNode, CxxGrammarImpl.statement) != countAncestors(astNode,
+          CxxGrammarImpl.statement)) {
+        mismatches++;
+      }
+      AstNode token = astNode.getLastChild();
+      while (token.hasChildren()) {
+        token = token.getLastChild();
+      }
+      if (ancestors.getFirstAncestor(astNode, token, CxxGrammarImpl.statement) != token.getFirstAncestor(
+        CxxGrammarImpl.statement)) {
+        mismatches++;
+      }
+    }
+  }
+
+  private static int countAncestors(AstNode node, CxxGrammarImpl type) {
+    int count = 0;
+    for (AstNode ancestor = node.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+      if (ancestor.is(type)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void stacksMatchParentChain() throws IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/visitors/nesting.cc", ".", "");
+    AncestorProbe probe = new AncestorProbe();
+    CxxAstScanner.scanSingleFile(tester.cxxFile, tester.sensorContext, CxxFileTesterHelper.mockCxxLanguage(), probe);
+
+    assertThat(probe.statements).isGreaterThan(0);
+    assertThat(probe.mismatches).isEqualTo(0);
+  }
+
+  @Test
+  public void standaloneWalksParentChain() {
+    CxxAncestors ancestors = CxxAncestors.of(null);
+    AstNode root = new AstNode(CxxGrammarImpl.statement, "statement", null);
+    AstNode inner = new AstNode(CxxGrammarImpl.statement, "statement", null);
+    AstNode leaf = new AstNode(CxxGrammarImpl.expression, "expression", null);
+    root.addChild(inner);
+    inner.addChild(leaf);
+
+    assertThat(ancestors.hasAncestor(leaf, CxxGrammarImpl.statement)).isTrue();
+    assertThat(ancestors.getFirstAncestor(leaf, CxxGrammarImpl.statement)).isSameAs(inner);
+    assertThat(ancestors.getAncestorCount(leaf, CxxGrammarImpl.statement)).isEqualTo(2);
+    assertThat(ancestors.getFirstAncestor(inner, leaf, CxxGrammarImpl.statement)).isSameAs(inner);
+    assertThat(ancestors.hasAncestor(root, CxxGrammarImpl.statement)).isFalse();
+  }
+
+}
@@ -152,4 +152,10 @@ public class CxxCognitiveComplexityVisitorTest {
   public void to_regexp() throws UnsupportedEncodingException, IOException {
     assertThat(testFile("src/test/resources/visitors/to_regexp.cc") == 20).isTrue();
   }
+
+  @Test
+  public void nested_function() throws UnsupportedEncodingException, IOException {
+    assertThat(testFile("src/test/resources/visitors/nested_function.cc") == 10).isTrue();
+  }
+
 }
@@ -0,0 +1,75 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import com.sonar.sslr.api.Grammar;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxFileTester;
+import org.sonar.cxx.CxxFileTesterHelper;
+import org.sonar.cxx.parser.CxxGrammarImpl;
+import org.sonar.cxx.visitors.CxxGrammarProfilerVisitor.RuleStatistics;
+
+public class CxxGrammarProfilerVisitorTest {
+
+  @Test
+  public void collectsStatisticsPerRule() throws UnsupportedEncodingException, IOException {
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/visitors/nesting.cc", ".", "");
+    CxxGrammarProfilerVisitor<Grammar> profiler = new CxxGrammarProfilerVisitor<>(new CxxConfiguration());
+    CxxAstScanner.scanSingleFile(tester.cxxFile, tester.sensorContext, CxxFileTesterHelper.mockCxxLanguage(),
+      profiler);
+
+    assertThat(profiler.getFiles()).isEqualTo(1);
+    assertThat(profiler.getSkippedFiles()).isEqualTo(0);
+
+    List<RuleStatistics> statistics = profiler.getStatistics();
+    assertThat(statistics).isNotEmpty();
+    for (int i = 1; i < statistics.size(); i++) {
+      assertThat(statistics.get(i - 1).getSelfTime()).isGreaterThanOrEqualTo(statistics.get(i).getSelfTime());
+    }
+
+    RuleStatistics translationUnit = statistics.stream()
+      .filter(s -> s.getRule() == CxxGrammarImpl.translationUnit).findFirst().get();
+    assertThat(translationUnit.getMatches()).isEqualTo(1);
+    assertThat(translationUnit.getFailures()).isEqualTo(0);
+    assertThat(translationUnit.getInclusiveTime()).isEqualTo(profiler.getParseTime());
+    assertThat(statistics.stream().anyMatch(s -> s.getRule() == CxxGrammarImpl.functionDefinition)).isTrue();
+    // alternatives which are tried and dropped are counted as failures
+    assertThat(statistics.stream().mapToLong(RuleStatistics::getFailures).sum()).isGreaterThan(0);
+    for (RuleStatistics rule : statistics) {
+      assertThat(rule.getInvocations()).isEqualTo(rule.getMatches() + rule.getFailures());
+      assertThat(rule.getSelfTime()).isLessThanOrEqualTo(rule.getInclusiveTime());
+    }
+
+    // the shared grammar is not instrumented
+    assertThat(profiler.getGrammar()).isNotSameAs(CxxGrammarImpl.create(new CxxConfiguration()));
+
+    StringWriter writer = new StringWriter();
+    profiler.writeReport(writer);
+    assertThat(writer.toString()).contains("translationUnit").contains("functionDefinition");
+  }
+
+}
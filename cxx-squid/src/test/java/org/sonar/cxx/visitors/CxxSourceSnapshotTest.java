@@ -0,0 +1,98 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.squidbridge.api.SourceProject;
+
+public class CxxSourceSnapshotTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File createFile(byte[] content) throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), content);
+    return file;
+  }
+
+  @Test
+  public void lines() throws IOException {
+    File file = createFile("a\rb\r\nc\n\nd".getBytes(StandardCharsets.UTF_8));
+    CxxSourceSnapshot snapshot = CxxSourceSnapshot.read(file, StandardCharsets.UTF_8);
+
+    assertThat(snapshot.getLines()).containsExactly("a", "b", "c", "", "d");
+    assertThat(snapshot.getLineCount()).isEqualTo(5);
+    assertThat(snapshot.getLine(3)).isEqualTo("c");
+    assertThat(snapshot.getLineOffset(3)).isEqualTo(5);
+    assertThat(snapshot.getText()).isEqualTo("a\rb\r\nc\n\nd");
+    assertThat(snapshot.endsWithNewline()).isFalse();
+    assertThat(snapshot.hasDecodingError()).isFalse();
+  }
+
+  @Test
+  public void same_lines_as_guava() throws IOException {
+    File file = createFile("first\nsecond\n".getBytes(StandardCharsets.UTF_8));
+    CxxSourceSnapshot snapshot = CxxSourceSnapshot.read(file, StandardCharsets.UTF_8);
+
+    assertThat(snapshot.getLines())
+      .isEqualTo(com.google.common.io.Files.readLines(file, StandardCharsets.UTF_8));
+    assertThat(snapshot.endsWithNewline()).isTrue();
+  }
+
+  @Test
+  public void empty_file() throws IOException {
+    CxxSourceSnapshot snapshot = CxxSourceSnapshot.read(createFile(new byte[0]), StandardCharsets.UTF_8);
+
+    assertThat(snapshot.getLines()).isEmpty();
+    assertThat(snapshot.endsWithNewline()).isFalse();
+  }
+
+  @Test
+  public void decoding_error() throws IOException {
+    File file = createFile(new byte[]{'a', (byte) 0xff, '\n'});
+    CxxSourceSnapshot snapshot = CxxSourceSnapshot.read(file, StandardCharsets.UTF_8);
+
+    assertThat(snapshot.hasDecodingError()).isTrue();
+    assertThat(snapshot.getLines()).containsExactly("a\uFFFD");
+  }
+
+  @Test
+  public void shared_by_context() throws IOException {
+    File file = createFile("int a;\n".getBytes(StandardCharsets.UTF_8));
+    CxxSquidAstVisitorContext<?> context = new CxxSquidAstVisitorContext<>(new SourceProject(""),
+      StandardCharsets.UTF_8);
+    context.setFile(file, CxxMetric.FILES);
+
+    CxxSourceSnapshot snapshot = CxxSourceSnapshot.of(context, StandardCharsets.UTF_8);
+    assertThat(CxxSourceSnapshot.of(context, StandardCharsets.UTF_8)).isSameAs(snapshot);
+    assertThat(CxxSourceSnapshot.of(context, StandardCharsets.ISO_8859_1)).isNotSameAs(snapshot);
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.visitors;
+
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxFileTester;
+import org.sonar.cxx.CxxFileTesterHelper;
+import org.sonar.cxx.visitors.CxxVisitorProfiler.Callback;
+import org.sonar.cxx.visitors.CxxVisitorProfiler.VisitorStatistics;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+public class CxxVisitorProfilerTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @org.sonar.check.Rule(key = "TokenCounter")
+  public static class TokenCounter extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+
+    private int tokens;
+
+    @Override
+    public void visitToken(Token token) {
+      tokens++;
+    }
+  }
+
+  @Test
+  public void wrapsTokenVisitors() {
+    CxxVisitorProfiler profiler = new CxxVisitorProfiler();
+    assertThat(profiler.wrap(new TokenCounter())).isInstanceOf(AstAndTokenVisitor.class);
+    assertThat(profiler.wrap(new SquidAstVisitor<Grammar>() {
+    })).isNotInstanceOf(AstAndTokenVisitor.class);
+  }
+
+  @Test
+  public void collectsStatisticsPerRule() throws IOException {
+    File report = new File(tempFolder.getRoot(), "profile.json");
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setVisitorProfileReportFile(report.getAbsolutePath());
+    CxxFileTester tester = CxxFileTesterHelper.CreateCxxFileTester("src/test/resources/visitors/nesting.cc", ".", "");
+    TokenCounter counter = new TokenCounter();
+    CxxAstScanner.scanSingleFileConfig(CxxFileTesterHelper.mockCxxLanguage(), tester.cxxFile, conf, counter);
+
+    assertThat(counter.tokens).isGreaterThan(0);
+    assertThat(report).exists();
+    String json = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+    assertThat(json).contains("\"key\":\"TokenCounter\"").contains(CxxLinesOfCodeVisitor.class.getName());
+  }
+
+  @Test
+  public void countsInvocations() throws IOException {
+    CxxVisitorProfiler profiler = new CxxVisitorProfiler();
+    TokenCounter counter = new TokenCounter();
+    SquidAstVisitor<Grammar> wrapped = profiler.wrap(counter);
+    wrapped.visitFile(null);
+    ((AstAndTokenVisitor) wrapped).visitToken(null);
+    ((AstAndTokenVisitor) wrapped).visitToken(null);
+    wrapped.leaveFile(null);
+
+    List<VisitorStatistics> statistics = profiler.getStatistics();
+    assertThat(statistics).hasSize(1);
+    assertThat(statistics.get(0).getKey()).isEqualTo("TokenCounter");
+    assertThat(statistics.get(0).getInvocations(Callback.VISIT_FILE)).isEqualTo(1);
+    assertThat(statistics.get(0).getInvocations(Callback.VISIT_TOKEN)).isEqualTo(2);
+    assertThat(statistics.get(0).getInvocations()).isEqualTo(4);
+    assertThat(counter.tokens).isEqualTo(2);
+
+    StringWriter writer = new StringWriter();
+    profiler.writeTable(writer);
+    assertThat(writer.toString()).contains("TokenCounter");
+  }
+
+}
@@ -0,0 +1,2 @@
+#include "b.h"
+#define A1 1
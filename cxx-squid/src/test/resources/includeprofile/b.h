@@ -0,0 +1,2 @@
+#define B1 1
+#define B2 2
@@ -0,0 +1,2 @@
+#include "a.h"
+int x = A1 + B2;
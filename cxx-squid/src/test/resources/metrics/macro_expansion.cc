@@ -0,0 +1,2 @@
+#define DECLARATIONS int a; int b; int c; int d; int e; int f; int g; int h; int i; int j;
+DECLARATIONS
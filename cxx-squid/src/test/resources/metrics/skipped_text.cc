@@ -0,0 +1,5 @@
+#define VALUE 42
+#if 0
+int inactive;
+#endif
+int a = VALUE;
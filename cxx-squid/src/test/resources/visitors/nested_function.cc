@@ -0,0 +1,25 @@
+int outer(int a)
+{
+  struct Local {
+    int inner(int b)
+    {
+      if (b > 0) {                         // +1 (nesting 0)
+        return b;
+      }
+      return 0;
+    }
+  };
+
+  if (a > 0) {                             // +1
+    auto f = [](int c) {
+      for (int i = 0; i < c; ++i) {        // +3 (nesting 2)
+        if (i % 2 && c > 1) {              // +4 (nesting 3), +1 (&&)
+          return i;
+        }
+      }
+      return 0;
+    };
+    return f(a);
+  }
+  return Local().inner(a);
+}
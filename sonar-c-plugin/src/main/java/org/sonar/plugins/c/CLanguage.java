@@ -120,6 +120,11 @@ public class CLanguage extends CxxLanguage {
     fileSuffixes = mergeArrays(sourceSuffixes, headerSuffixes);
   }
 
+  @Override
+  public boolean isCLanguage() {
+    return true;
+  }
+
   @Override
   public String[] getFileSuffixes() {
     return fileSuffixes.clone();
@@ -25,6 +25,7 @@ import java.util.List;
 import javax.annotation.Nullable;
 import org.sonar.api.Plugin;
 import org.sonar.api.PropertyType;
+import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.rule.CheckFactory;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.config.Configuration;
@@ -58,6 +59,8 @@ import org.sonar.cxx.sensors.squid.CustomCxxRulesDefinition;
 import org.sonar.cxx.sensors.squid.CxxSquidSensor;
 import org.sonar.cxx.sensors.tests.xunit.CxxXunitSensor;
 import org.sonar.cxx.sensors.utils.CxxMetrics;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummary;
+import org.sonar.cxx.sensors.utils.CxxPerformanceSummaryPostJob;
 import org.sonar.cxx.sensors.valgrind.CxxValgrindRuleRepository;
 import org.sonar.cxx.sensors.valgrind.CxxValgrindSensor;
 import org.sonar.cxx.sensors.veraxx.CxxVeraxxRuleRepository;
@@ -87,6 +90,21 @@ public final class CPlugin implements Plugin {
   public static final String SCAN_ONLY_SPECIFIED_SOURCES_KEY = LANG_PROP_PREFIX + "scanOnlySpecifiedSources";
   public static final String CPD_IGNORE_LITERALS_KEY = LANG_PROP_PREFIX + "cpd.ignoreLiterals";
   public static final String CPD_IGNORE_IDENTIFIERS_KEY = LANG_PROP_PREFIX + "cpd.ignoreIdentifiers";
+  public static final String FILE_TOKEN_BUDGET_KEY = LANG_PROP_PREFIX + "fileTokenBudget";
+  public static final String FILE_TIME_BUDGET_KEY = LANG_PROP_PREFIX + "fileTimeBudget";
+  public static final String LEXER_ONLY_FILES_PATTERNS_KEY = LANG_PROP_PREFIX + "lexerOnlyFilesPatterns";
+  public static final String STREAMING_SAVE_KEY = LANG_PROP_PREFIX + "streamingSave";
+  public static final String VISITOR_PROFILE_REPORT_KEY = LANG_PROP_PREFIX + "visitorProfileReportPath";
+  public static final String GENERATED_FILES_MAX_SIZE_KEY = LANG_PROP_PREFIX + "generatedFiles.maxSize";
+  public static final String GENERATED_FILES_MARKERS_KEY = LANG_PROP_PREFIX + "generatedFiles.markers";
+  public static final String GENERATED_FILES_MAX_TOKENS_PER_LINE_KEY = LANG_PROP_PREFIX
+    + "generatedFiles.maxTokensPerLine";
+  public static final String GENERATED_FILES_CPD_KEY = LANG_PROP_PREFIX + "generatedFiles.cpd";
+  public static final String INCLUDE_PROFILE_REPORT_KEY = LANG_PROP_PREFIX + "includeProfileReportPath";
+  public static final String INCLUDE_PROFILE_TOP_COUNT_KEY = LANG_PROP_PREFIX + "includeProfileTopCount";
+  public static final String MACRO_EXPANSION_MAX_DEPTH_KEY = LANG_PROP_PREFIX + "macroExpansion.maxDepth";
+  public static final String MACRO_EXPANSION_MAX_TOKENS_KEY = LANG_PROP_PREFIX + "macroExpansion.maxTokens";
+  public static final String MACRO_EXPANSION_TIME_BUDGET_KEY = LANG_PROP_PREFIX + "macroExpansion.timeBudget";
 
   private static List<PropertyDefinition> generalProperties() {
     String subcateg = "(1) General";
@@ -179,6 +197,143 @@ public final class CPlugin implements Plugin {
         .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
         .type(PropertyType.BOOLEAN)
         .index(10)
+        .build(),
+      PropertyDefinition.builder(CPlugin.FILE_TOKEN_BUDGET_KEY)
+        .defaultValue("0")
+        .name("Token budget per file")
+        .description("Maximum number of tokens of a source file for a full analysis. Files exceeding the budget are"
+          + " analyzed in lexer-only mode (size, comment, duplication metrics and highlighting only). 0 means"
+          + " unlimited.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(11)
+        .build(),
+      PropertyDefinition.builder(CPlugin.FILE_TIME_BUDGET_KEY)
+        .defaultValue("0")
+        .name("Time budget per file")
+        .description("Maximum time in milliseconds to preprocess a source file for a full analysis. Files exceeding"
+          + " the budget are analyzed in lexer-only mode. 0 means unlimited.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(12)
+        .build(),
+      PropertyDefinition.builder(CPlugin.LEXER_ONLY_FILES_PATTERNS_KEY)
+        .multiValues(true)
+        .name("Lexer-only files patterns")
+        .description("Comma-separated list of wildcard patterns (e.g. '**/third_party/**') of files which are only"
+          + " tokenized: no preprocessing, no parsing and no issues. Size, comment and duplication metrics and"
+          + " highlighting are still computed.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .index(13)
+        .build(),
+      PropertyDefinition.builder(CPlugin.STREAMING_SAVE_KEY)
+        .defaultValue(Boolean.FALSE.toString())
+        .name("Save results per file")
+        .description("Save measures and issues of a source file as soon as it is analyzed and release its analysis"
+          + " data. Memory usage then depends on the largest file instead of the size of the project.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .index(14)
+        .build(),
+      PropertyDefinition.builder(CPlugin.VISITOR_PROFILE_REPORT_KEY)
+        .name("Visitor profile report")
+        .description("Measure the execution time of every rule and metric visitor and write the results to this JSON"
+          + " file (relative to the working directory of the analysis). A table of the results is also logged."
+          + " Profiling is disabled if empty.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .index(15)
+        .build(),
+      PropertyDefinition.builder(CPlugin.GENERATED_FILES_MAX_SIZE_KEY)
+        .defaultValue("0")
+        .name("Maximum size of hand-written files")
+        .description("Files larger than this size in KB are treated as generated code (e.g. amalgamated sources):"
+          + " they are only tokenized, no preprocessing, no parsing and no issues. 0 means unlimited.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(16)
+        .build(),
+      PropertyDefinition.builder(CPlugin.GENERATED_FILES_MARKERS_KEY)
+        .multiValues(true)
+        .name("Generated code markers")
+        .description("Comma-separated list of texts (e.g. '@generated', 'DO NOT EDIT') which mark a file as generated"
+          + " code if found in its first 4096 characters. Generated files are analyzed like lexer-only files.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .index(17)
+        .build(),
+      PropertyDefinition.builder(CPlugin.GENERATED_FILES_MAX_TOKENS_PER_LINE_KEY)
+        .defaultValue("0")
+        .name("Maximum token density of hand-written files")
+        .description("Files with more tokens per line on average are treated as generated code (e.g. embedded"
+          + " resource arrays). The check tokenizes every file once more. 0 means unlimited.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(18)
+        .build(),
+      PropertyDefinition.builder(CPlugin.GENERATED_FILES_CPD_KEY)
+        .defaultValue(Boolean.TRUE.toString())
+        .name("Duplications in generated files")
+        .description("Compute the duplication tokens of files treated as generated code.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .index(19)
+        .build(),
+      PropertyDefinition.builder(CPlugin.INCLUDE_PROFILE_REPORT_KEY)
+        .name("Include profile report")
+        .description("Measure the preprocessing time, tokens and macro definitions of every included file, with and"
+          + " without the files it includes, and count the translation units including it. The results are written"
+          + " to this JSON file (relative to the working directory of the analysis), the most expensive includes are"
+          + " also logged. Profiling is disabled if empty.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .index(20)
+        .build(),
+      PropertyDefinition.builder(CPlugin.INCLUDE_PROFILE_TOP_COUNT_KEY)
+        .defaultValue("20")
+        .name("Logged includes of the include profile")
+        .description("Number of the most expensive includes written to the log by the include profiler.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(21)
+        .build(),
+      PropertyDefinition.builder(CPlugin.MACRO_EXPANSION_MAX_DEPTH_KEY)
+        .defaultValue("0")
+        .name("Maximum macro expansion depth")
+        .description("Maximum nesting depth of macro expansions. If a nested expansion exceeds it, the macro used in"
+          + " the source is not expanded and a warning names the macro. 0 means unlimited.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(22)
+        .build(),
+      PropertyDefinition.builder(CPlugin.MACRO_EXPANSION_MAX_TOKENS_KEY)
+        .defaultValue("0")
+        .name("Maximum expanded tokens per file")
+        .description("Maximum number of tokens created by the macro expansions of a source file. Macros used after"
+          + " the limit is reached are not expanded, a warning names the first one. 0 means unlimited.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(23)
+        .build(),
+      PropertyDefinition.builder(CPlugin.MACRO_EXPANSION_TIME_BUDGET_KEY)
+        .defaultValue("0")
+        .name("Macro expansion time budget per file")
+        .description("Maximum time in milliseconds to expand the macros of a source file. Macros used after the"
+          + " budget is spent are not expanded, a warning names the first one. 0 means unlimited.")
+        .subCategory(subcateg)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .index(24)
         .build()
     ));
   }
@@ -485,6 +640,7 @@ public final class CPlugin implements Plugin {
 
     // utility classes
     l.add(CxxCoverageAggregator.class);
+    l.add(CxxPerformanceSummary.class);
 
     // metrics
     l.add(CxxMetricsImp.class);
@@ -506,6 +662,9 @@ public final class CPlugin implements Plugin {
     l.add(CxxXunitSensorImpl.class);
     l.add(CxxCoverageSensorImpl.class);
 
+    // post jobs
+    l.add(CxxPerformanceSummaryPostJobImpl.class);
+
     // rule provides
     l.add(CxxRatsRuleRepositoryImpl.class);
     l.add(CxxCppCheckRuleRepositoryImpl.class);
@@ -620,100 +779,110 @@ public final class CPlugin implements Plugin {
   public static class CxxSquidSensorImpl extends CxxSquidSensor {
 
     public CxxSquidSensorImpl(Configuration settings,
+      CxxPerformanceSummary summary,
       FileLinesContextFactory fileLinesContextFactory,
       CheckFactory checkFactory) {
-      super(new CLanguage(settings), fileLinesContextFactory, checkFactory);
+      super(summary, new CLanguage(settings), fileLinesContextFactory, checkFactory, null);
     }
 
     public CxxSquidSensorImpl(Configuration settings,
+      CxxPerformanceSummary summary,
       FileLinesContextFactory fileLinesContextFactory,
       CheckFactory checkFactory,
       @Nullable CustomCxxRulesDefinition[] customRulesDefinition) {
-      super(new CLanguage(settings), fileLinesContextFactory, checkFactory, customRulesDefinition);
+      super(summary, new CLanguage(settings), fileLinesContextFactory, checkFactory, customRulesDefinition);
     }
   }
 
   public static class CxxRatsSensorImpl extends CxxRatsSensor {
 
-    public CxxRatsSensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxRatsSensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxXunitSensorImpl extends CxxXunitSensor {
 
-    public CxxXunitSensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxXunitSensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxCoverageSensorImpl extends CxxCoverageSensor {
 
-    public CxxCoverageSensorImpl(Configuration settings, CxxCoverageAggregator cache, SensorContext context) {
-      super(cache, new CLanguage(settings), context);
+    public CxxCoverageSensorImpl(Configuration settings, CxxCoverageAggregator cache, CxxPerformanceSummary summary,
+      SensorContext context) {
+      super(cache, summary, new CLanguage(settings), context);
     }
   }
 
   public static class CxxCppCheckSensorImpl extends CxxCppCheckSensor {
 
-    public CxxCppCheckSensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxCppCheckSensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxPCLintSensorImpl extends CxxPCLintSensor {
 
-    public CxxPCLintSensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxPCLintSensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxDrMemorySensorImpl extends CxxDrMemorySensor {
 
-    public CxxDrMemorySensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxDrMemorySensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxCompilerSensorImpl extends CxxCompilerSensor {
 
-    public CxxCompilerSensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxCompilerSensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxVeraxxSensorImpl extends CxxVeraxxSensor {
 
-    public CxxVeraxxSensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxVeraxxSensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxValgrindSensorImpl extends CxxValgrindSensor {
 
-    public CxxValgrindSensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxValgrindSensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxClangTidySensorImpl extends CxxClangTidySensor {
 
-    public CxxClangTidySensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxClangTidySensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxClangSASensorImpl extends CxxClangSASensor {
 
-    public CxxClangSASensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxClangSASensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
     }
   }
 
   public static class CxxExternalRulesSensorImpl extends CxxOtherSensor {
 
-    public CxxExternalRulesSensorImpl(Configuration settings) {
-      super(new CLanguage(settings));
+    public CxxExternalRulesSensorImpl(Configuration settings, CxxPerformanceSummary summary) {
+      super(summary, new CLanguage(settings));
+    }
+  }
+
+  public static class CxxPerformanceSummaryPostJobImpl extends CxxPerformanceSummaryPostJob {
+
+    public CxxPerformanceSummaryPostJobImpl(Configuration settings, CxxPerformanceSummary summary, FileSystem fs) {
+      super(summary, new CLanguage(settings), fs);
     }
   }
 
@@ -35,6 +35,6 @@ public class CPluginTest {
     Plugin.Context context = new Plugin.Context(runtime);
     CPlugin plugin = new CPlugin();
     plugin.define(context);
-    assertThat(context.getExtensions()).hasSize(68);
+    assertThat(context.getExtensions()).hasSize(84);
   }
 }
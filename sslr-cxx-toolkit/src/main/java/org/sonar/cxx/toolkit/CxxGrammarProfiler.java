@@ -0,0 +1,93 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010-2018 SonarOpenCommunity
+ * http://github.com/SonarOpenCommunity/sonar-cxx
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.cxx.toolkit;
+
+import com.sonar.sslr.api.Grammar;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.visitors.CxxGrammarProfilerVisitor;
+import org.sonar.squidbridge.AstScanner;
+
+/**
+ * Headless grammar profiler: parses all C++ files of a directory and writes the cost per grammar rule into a report.
+ *
+ * Usage: {@code java -jar sslr-cxx-toolkit.jar -profile <directory> [<report>]}. The configuration is read from the
+ * same system properties as the toolkit (sonar.sourceEncoding, sonar.cxx.defines, ...).
+ */
+public final class CxxGrammarProfiler {
+
+  private static final Logger LOG = Loggers.get(CxxGrammarProfiler.class);
+  private static final String DEFAULT_REPORT = "cxx-grammar-profile.txt";
+  private static final int TOP_RULES = 20;
+
+  private CxxGrammarProfiler() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      LOG.error("Usage: -profile <directory> [<report>]");
+      return;
+    }
+    Path report = Paths.get(args.length > 1 ? args[1] : DEFAULT_REPORT);
+    profile(Paths.get(args[0]), report);
+  }
+
+  private static void profile(Path directory, Path report) throws IOException {
+    CppLanguage language = new CppLanguage(new MapSettings().asConfig());
+    CxxConfiguration conf = new CxxConfigurationModel().getConfiguration(language);
+    List<String> suffixes = Arrays.asList(language.getFileSuffixes());
+
+    List<File> files;
+    try (Stream<Path> paths = Files.walk(directory)) {
+      files = paths
+        .filter(Files::isRegularFile)
+        .filter(p -> suffixes.contains(extension(p)))
+        .map(Path::toFile)
+        .collect(Collectors.toList());
+    }
+    LOG.info("Profiling grammar on {} files in '{}'", files.size(), directory);
+
+    CxxGrammarProfilerVisitor<Grammar> profiler = new CxxGrammarProfilerVisitor<>(conf, language);
+    AstScanner<Grammar> scanner = CxxAstScanner.create(language, conf, profiler);
+    scanner.scanFiles(files);
+
+    profiler.writeReport(report, TOP_RULES);
+  }
+
+  private static String extension(Path path) {
+    String name = path.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ENGLISH);
+  }
+
+}
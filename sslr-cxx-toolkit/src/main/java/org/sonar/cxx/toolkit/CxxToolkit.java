@@ -19,6 +19,8 @@
  */
 package org.sonar.cxx.toolkit;
 
+import java.io.IOException;
+import java.util.Arrays;
 import org.sonar.sslr.toolkit.Toolkit;
 
 public final class CxxToolkit {
@@ -26,7 +28,11 @@ public final class CxxToolkit {
   private CxxToolkit() {
   }
 
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
+    if (args.length > 0 && "-profile".equals(args[0])) {
+      CxxGrammarProfiler.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
     Toolkit toolkit = new Toolkit("SSLR :: Cxx :: Toolkit", new CxxConfigurationModel());
     toolkit.run();
   }